@@ -95,6 +95,292 @@ publishing {
         assert pom.exists()
     }
 
+    def "test publish R.txt when the prepare task is up to date"() {
+        given:
+        buildFile """
+plugins {
+    id 'io.github.noproxy.tinker-maven-publish'
+    id 'com.android.application'
+}
+
+repositories {
+    jcenter()
+    google()
+}
+
+android {
+    defaultConfig {
+        applicationId "org.example.app"
+        compileSdkVersion 28
+    }
+}
+
+tinkerPublish {
+    version = "2.3"
+}
+
+publishing {
+    repositories {
+        maven {
+            name = 'BuildDir'
+            url = rootProject.file("build/repo")
+        }
+    }
+}
+
+"""
+        appSources()
+        def symbol = "build/repo/org/tinker/app/org.example.app/2.3-release/org.example.app-2.3-release-r.txt"
+
+        when:
+        run "publishAppReleasePublicationToBuildDirRepository"
+
+        then:
+        assert file(symbol).exists()
+
+        when:
+        file("build/repo").deleteDir()
+        run "publishAppReleasePublicationToBuildDirRepository"
+
+        then:
+        assert output.contains("> Task :tinkerPrepareReleasePublication UP-TO-DATE")
+        assert file(symbol).exists()
+    }
+
+    def "test publish without R.txt warns and leaves it out"() {
+        given:
+        buildFile """
+plugins {
+    id 'io.github.noproxy.tinker-maven-publish'
+    id 'com.android.application'
+}
+
+repositories {
+    jcenter()
+    google()
+}
+
+android {
+    defaultConfig {
+        applicationId "org.example.app"
+        compileSdkVersion 28
+    }
+}
+
+tinkerPublish {
+    version = "2.3"
+}
+
+publishing {
+    repositories {
+        maven {
+            name = 'BuildDir'
+            url = rootProject.file("build/repo")
+        }
+    }
+}
+
+tasks.matching { it.name == "tinkerPrepareReleasePublication" }.configureEach {
+    doFirst { delete "build/intermediates/runtime_symbol_list/release/R.txt" }
+}
+"""
+        appSources()
+        def version = "build/repo/org/tinker/app/org.example.app/2.3-release"
+
+        when:
+        run "publishAppReleasePublicationToBuildDirRepository"
+
+        then:
+        assert output.contains("TinkerMavenPublish: skip publish R.txt for 'tinkerPrepareReleasePublication' because file not exists")
+        assert file("$version/org.example.app-2.3-release.apk").exists()
+        assert !file("$version/org.example.app-2.3-release-r.txt").exists()
+        // nothing reads the checksums without the base version index
+        assert !file("build/tinker/publish/release/base.apk.sha256").exists()
+    }
+
+    def "test publish every abi split to maven"() {
+        given:
+        buildFile """
+plugins {
+    id 'io.github.noproxy.tinker-maven-publish'
+    id 'com.android.application'
+}
+
+repositories {
+    jcenter()
+    google()
+}
+
+android {
+    defaultConfig {
+        applicationId "org.example.app"
+        compileSdkVersion 28
+    }
+    splits {
+        abi {
+            enable true
+            reset()
+            include 'x86', 'armeabi-v7a'
+            universalApk true
+        }
+    }
+}
+
+tinkerPublish {
+    version = "2.3"
+}
+
+publishing {
+    repositories {
+        maven {
+            name = 'BuildDir'
+            url = rootProject.file("build/repo")
+        }
+    }
+}
+
+"""
+        appSources()
+
+        when:
+        run "assembleRelease", "publishAllTinkerVariantsToBuildDirRepository"
+
+        then:
+        def module = "build/repo/org/tinker/app/org.example.app"
+        assert file("$module/2.3-release/org.example.app-2.3-release.apk").exists()
+        assert file("$module/2.3-release-x86/org.example.app-2.3-release-x86.apk").exists()
+        assert file("$module/2.3-release-armeabi-v7a/org.example.app-2.3-release-armeabi-v7a.apk").exists()
+        assert file("$module/2.3-release-x86/org.example.app-2.3-release-x86.pom").exists()
+        assert output.contains("tinkerPrepareReleaseX86Publication")
+        assert output.contains("tinkerPrepareReleaseArmeabi-v7aPublication")
+    }
+
+    def "test publish all variants refuses published versions unless overwriting"() {
+        given:
+        buildFile """
+plugins {
+    id 'io.github.noproxy.tinker-maven-publish'
+    id 'com.android.application'
+}
+
+repositories {
+    jcenter()
+    google()
+}
+
+android {
+    defaultConfig {
+        applicationId "org.example.app"
+        compileSdkVersion 28
+    }
+}
+
+tinkerPublish {
+    version = "2.3"
+}
+
+publishing {
+    repositories {
+        maven {
+            name = 'BuildDir'
+            url = rootProject.file("build/repo")
+        }
+    }
+}
+
+"""
+        appSources()
+        def module = "build/repo/org/tinker/app/org.example.app"
+
+        when:
+        run "assembleRelease", "publishAllTinkerVariantsToBuildDirRepository"
+
+        then:
+        assert file("$module/2.3-release/org.example.app-2.3-release.apk").exists()
+        assert file("$module/2.3-release/org.example.app-2.3-release-r.txt").exists()
+        assert file("$module/maven-metadata.xml").text.contains("<version>2.3-release</version>")
+
+        when:
+        run "publishAllTinkerVariantsToBuildDirRepository"
+
+        then:
+        fail()
+        assert output.contains("release: version 2.3-release is already published")
+
+        when:
+        file("$module/2.3-release/org.example.app-2.3-release.apk").bytes = new byte[0]
+        run "publishAllTinkerVariantsToBuildDirRepository", "--overwrite"
+
+        then:
+        assert file("$module/2.3-release/org.example.app-2.3-release.apk").length() > 0
+
+        when:
+        file("build.gradle").text = file("build.gradle").text.replace('version = "2.3"', 'version = "2.4-SNAPSHOT"')
+        run "assembleRelease", "publishAllTinkerVariantsToBuildDirRepository"
+
+        then:
+        fail()
+        assert output.contains("release: snapshot version 2.4-SNAPSHOT-release is not supported")
+        assert !file("$module/maven-metadata.xml").text.contains("2.4-SNAPSHOT")
+    }
+
+    def "test resolution plan reports base artifacts without downloading"() {
+        given:
+        buildFile """
+plugins {
+    id 'io.github.noproxy.tinker-maven-publish'
+    id 'com.android.application'
+    id 'com.tencent.tinker.patch'
+}
+
+repositories {
+    jcenter()
+    google()
+    maven {
+        name = 'BuildDir'
+        url = rootProject.file("build/repo")
+    }
+}
+
+android {
+    defaultConfig {
+        applicationId "org.example.app"
+        compileSdkVersion 28
+    }
+}
+
+tinkerPublish {
+    version = "2.3"
+}
+
+tinkerResolver {
+    version = "1.1"
+}
+
+tinkerPatch {
+    buildConfig {
+        tinkerId = "2.3"
+    }
+    useSign = false
+}
+
+"""
+        appSources()
+        newFile("build/repo/org/tinker/app/org.example.app/1.1-release/org.example.app-1.1-release.apk") << binaryApk()
+        newFile("build/repo/org/tinker/app/org.example.app/1.1-release/org.example.app-1.1-release.pom") << pom()
+
+        when:
+        run "tinkerResolutionPlan"
+
+        then:
+        def report = file("build/reports/tinker/resolution-plan.json").text
+        assert report.contains('"type": "APK"')
+        assert report.contains('"status": "FOUND"')
+        assert report.contains('"type": "SYMBOL"')
+        assert report.contains('"status": "MISSING"')
+        assert !file("build/intermediates/tinker").exists()
+    }
+
     def "test resolve apk from maven"() {
         given:
         buildFile """
@@ -644,6 +930,78 @@ tinkerPatch {
         }
     }
 
+    def "test cached patch is restored from the build cache"() {
+        given:
+        buildFile """
+import io.github.noproxy.plugin.tinker.internal.base.TinkerBase
+import io.github.noproxy.plugin.tinker.internal.patch.TinkerPatchCaching
+
+plugins {
+    id 'io.github.noproxy.tinker-maven-publish'
+    id 'com.android.application'
+    id 'com.tencent.tinker.patch'
+}
+
+android {
+    defaultConfig {
+        applicationId "org.example.app"
+        compileSdkVersion 28
+    }
+}
+
+def base = file("build/base/base.properties")
+base.parentFile.mkdirs()
+new TinkerBase(file("base.apk"), null, null, null).write(base)
+
+def patchDirectory = layout.buildDirectory.dir("fakePatch")
+task fakeTinkerPatch {
+    doLast {
+        def patch = patchDirectory.get().file("patch_signed.apk").asFile
+        patch.parentFile.mkdirs()
+        patch.text = "patch of " + file("new.apk").text
+    }
+}
+TinkerPatchCaching.configure(tasks.fakeTinkerPatch, layout.buildDirectory.file("base/base.properties"), provider { file("new.apk") },
+        tinkerPatch, null, patchDirectory, provider { true })
+"""
+        newFile("base.apk") << "base"
+        newFile("new.apk") << "new"
+
+        when:
+        run "fakeTinkerPatch", "--build-cache"
+        file("build/fakePatch").deleteDir()
+        run "fakeTinkerPatch", "--build-cache"
+
+        then:
+        assert output.contains("> Task :fakeTinkerPatch FROM-CACHE")
+        assert file("build/fakePatch/patch_signed.apk").text == "patch of new"
+    }
+
+    void appSources() {
+        newFile("src/main/java/org/example/app/MainActivity.java") << "package org.example.app;\n" +
+                "\n" +
+                "import android.app.Activity;\n" +
+                "import android.os.Bundle;\n" +
+                "\n" +
+                "public class MainActivity extends Activity {\n" +
+                "\n" +
+                "    @Override\n" +
+                "    protected void onCreate(Bundle savedInstanceState) {\n" +
+                "        super.onCreate(savedInstanceState);\n" +
+                "        System.out.println(getResources().getString(R.string.app_name));" +
+                "    }\n" +
+                "}"
+        newFile("src/main/res/values/strings.xml") << """<resources>
+    <string name="app_name">Example Demo</string>
+</resources>
+"""
+        android {
+            manifest {
+                packageName = "org.example.app"
+            }
+        }
+    }
+
     static String mappingContent() {
         return "org.example.app.MainActivity -> test.a:\n"
     }
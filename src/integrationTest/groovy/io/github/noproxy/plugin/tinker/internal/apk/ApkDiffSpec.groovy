@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.apk
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class ApkDiffSpec extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    File apk(String name, Map<String, String> entries) {
+        def apk = new File(temporaryFolder.root, name)
+        new ZipOutputStream(new FileOutputStream(apk)).withCloseable { zip ->
+            entries.each { entryName, content ->
+                zip.putNextEntry(new ZipEntry(entryName))
+                zip.write(content.bytes)
+                zip.closeEntry()
+            }
+        }
+        return apk
+    }
+
+    static final Map<String, String> BASE = ["AndroidManifest.xml": "<manifest/>", "META-INF/CERT.SF": "base",
+                                             "classes.dex": "dex", "resources.arsc": "arsc", "lib/x86/libapp.so": "so"]
+
+    def "entries are categorized by the tinker patterns"() {
+        given:
+        def patterns = ApkDiff.Patterns.DEFAULT
+
+        expect:
+        ApkDiff.categorize("classes.dex", patterns) == ApkDiff.Category.DEX
+        ApkDiff.categorize("classes2.dex", patterns) == ApkDiff.Category.DEX
+        ApkDiff.categorize("assets/secondary-dex-1.jar", patterns) == ApkDiff.Category.DEX
+        ApkDiff.categorize("assets/classes.dex", patterns) == ApkDiff.Category.RESOURCE
+        ApkDiff.categorize("res/layout/main.xml", patterns) == ApkDiff.Category.RESOURCE
+        ApkDiff.categorize("lib/arm64-v8a/libapp.so", patterns) == ApkDiff.Category.NATIVE
+        ApkDiff.categorize("META-INF/MANIFEST.MF", patterns) == ApkDiff.Category.OTHER
+        ApkDiff.categorize("AndroidManifest.xml", patterns) == ApkDiff.Category.OTHER
+        // java resources packaged at the root aren't patched by tinker
+        ApkDiff.categorize("kotlin/collections/collections.kotlin_builtins", patterns) == ApkDiff.Category.OTHER
+        ApkDiff.categorize("okhttp3/internal/publicsuffix/publicsuffixes.gz", patterns) == ApkDiff.Category.OTHER
+    }
+
+    def "configured patterns replace the defaults"() {
+        given:
+        def patterns = new ApkDiff.Patterns(["classes*.dex"], ["lib/armeabi/*.so"], ["r/*", "resources.arsc"], ["r/raw/*"])
+
+        expect:
+        ApkDiff.categorize("r/a.xml", patterns) == ApkDiff.Category.RESOURCE
+        ApkDiff.categorize("res/layout/main.xml", patterns) == ApkDiff.Category.OTHER
+        ApkDiff.categorize("r/raw/build.txt", patterns) == ApkDiff.Category.OTHER
+        ApkDiff.categorize("lib/armeabi/libapp.so", patterns) == ApkDiff.Category.NATIVE
+        ApkDiff.categorize("lib/x86/libapp.so", patterns) == ApkDiff.Category.OTHER
+        ApkDiff.categorize("classesXdex", patterns) == ApkDiff.Category.OTHER
+    }
+
+    def "changes outside the patterns are not patchable"() {
+        when:
+        def diff = ApkDiff.compare(apk("base.apk", BASE + ["kotlin/kotlin.kotlin_builtins": "a"]),
+                apk("new.apk", BASE + ["kotlin/kotlin.kotlin_builtins": "b"]))
+
+        then:
+        diff.entries*.category == [ApkDiff.Category.OTHER]
+        !diff.patchable
+    }
+
+    def "only signature and manifest changes are not patchable"() {
+        when:
+        def diff = ApkDiff.compare(apk("base.apk", BASE),
+                apk("new.apk", BASE + ["META-INF/CERT.SF": "new", "AndroidManifest.xml": "<manifest version='2'/>"]))
+
+        then:
+        diff.entries*.name as Set == ["META-INF/CERT.SF", "AndroidManifest.xml"] as Set
+        !diff.patchable
+        diff.estimatedPatchSize == 0
+    }
+
+    def "added, removed and modified entries are reported"() {
+        when:
+        def newEntries = new LinkedHashMap<>(BASE)
+        newEntries.remove("lib/x86/libapp.so")
+        newEntries["classes.dex"] = "dex changed"
+        newEntries["res/raw/new.txt"] = "new"
+        def diff = ApkDiff.compare(apk("base.apk", BASE), apk("new.apk", newEntries))
+
+        then:
+        diff.entries.collectEntries { [(it.name): it.change] } == ["classes.dex"      : ApkDiff.Change.MODIFIED,
+                                                                   "res/raw/new.txt"  : ApkDiff.Change.ADDED,
+                                                                   "lib/x86/libapp.so": ApkDiff.Change.REMOVED]
+        diff.patchable
+        diff.countByCategory() == [(ApkDiff.Category.DEX): 1, (ApkDiff.Category.RESOURCE): 1, (ApkDiff.Category.NATIVE): 1, (ApkDiff.Category.OTHER): 0]
+        diff.estimatedPatchSize > 0
+    }
+
+    def "report is written and read back"() {
+        given:
+        def diff = ApkDiff.compare(apk("base.apk", BASE), apk("new.apk", BASE + ["classes.dex": "dex changed"]))
+        def file = new File(temporaryFolder.root, "reports/patch-check.json")
+
+        when:
+        diff.write(file)
+        def read = ApkDiff.read(file)
+
+        then:
+        read.patchable
+        read.entries*.name == ["classes.dex"]
+        read.estimatedPatchSize == diff.estimatedPatchSize
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.apk
+
+import org.gradle.api.logging.Logging
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+class StoredApkCacheSpec extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    File apk(String name, Map<String, byte[]> entries, String comment = null) {
+        def apk = new File(temporaryFolder.root, name)
+        new ZipOutputStream(new FileOutputStream(apk)).withCloseable { zip ->
+            entries.each { entryName, content ->
+                def entry = new ZipEntry(entryName)
+                if (entryName == "resources.arsc") {
+                    // stored like aapt does
+                    def crc = new CRC32()
+                    crc.update(content)
+                    entry.method = ZipEntry.STORED
+                    entry.size = content.length
+                    entry.compressedSize = content.length
+                    entry.crc = crc.value
+                }
+                zip.putNextEntry(entry)
+                zip.write(content)
+                zip.closeEntry()
+            }
+            if (comment != null) {
+                zip.comment = comment
+            }
+        }
+        return apk
+    }
+
+    Map<String, byte[]> entries() {
+        def dex = new byte[200 * 1024]
+        new Random(3).nextBytes(dex)
+        return ["AndroidManifest.xml": "<manifest/>".bytes, "classes.dex": dex, "resources.arsc": ("arsc" * 1000).bytes,
+                "res/layout/main.xml": ("<layout/>" * 100).bytes]
+    }
+
+    def "central directory is read from the mapped apk"() {
+        given:
+        def file = apk("base.apk", entries(), "signed")
+
+        when:
+        def zip = MappedZip.open(file)
+
+        then:
+        zip.entries*.name == ["AndroidManifest.xml", "classes.dex", "resources.arsc", "res/layout/main.xml"]
+        zip.entries.find { it.name == "resources.arsc" }.method == ZipEntry.STORED
+        new String(zip.readRaw(zip.entries.find { it.name == "resources.arsc" })) == "arsc" * 1000
+
+        cleanup:
+        zip?.close()
+    }
+
+    def "stored copy has the same entries uncompressed"() {
+        given:
+        def entries = entries()
+        def file = apk("base.apk", entries)
+        def cache = new StoredApkCache(temporaryFolder.newFolder("cache"), Logging.getLogger(StoredApkCacheSpec))
+
+        when:
+        def stored = cache.get(file)
+
+        then:
+        new ZipFile(stored).withCloseable { zip ->
+            zip.entries().toList().every { it.method == ZipEntry.STORED } &&
+                    entries.every { name, content -> zip.getInputStream(zip.getEntry(name)).bytes == content }
+        }
+    }
+
+    def "stored copy is shared by identical apks"() {
+        given:
+        def entries = entries()
+        def first = apk("first.apk", entries)
+        def cache = new StoredApkCache(temporaryFolder.newFolder("cache"), Logging.getLogger(StoredApkCacheSpec))
+        def stored = cache.get(first)
+
+        when:
+        def second = new File(temporaryFolder.root, "second.apk")
+        second.bytes = first.bytes
+
+        then:
+        cache.get(second) == stored
+        cache.get(apk("other.apk", entries + ["classes2.dex": new byte[10]])) != stored
+    }
+
+    def "copies unused for a month are evicted"() {
+        given:
+        def cacheDir = temporaryFolder.newFolder("cache")
+        def cache = new StoredApkCache(cacheDir, Logging.getLogger(StoredApkCacheSpec))
+        def old = cache.get(apk("old.apk", entries() + ["old.txt": new byte[1]]))
+        old.parentFile.lastModified = System.currentTimeMillis() - 31L * 24 * 60 * 60 * 1000
+
+        when:
+        def stored = cache.get(apk("base.apk", entries()))
+
+        then:
+        stored.isFile()
+        !old.exists()
+        cacheDir.list().toList() == [stored.parentFile.name]
+    }
+}
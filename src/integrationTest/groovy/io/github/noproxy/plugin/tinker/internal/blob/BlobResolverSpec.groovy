@@ -0,0 +1,220 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.blob
+
+import io.github.noproxy.plugin.tinker.internal.Checksums
+import io.github.noproxy.plugin.tinker.internal.transport.FileRepositoryTransport
+import org.gradle.api.GradleException
+import org.gradle.api.logging.Logging
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class BlobResolverSpec extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    static final String MODULE_PATH = "com/example/app"
+
+    File repository
+    FileRepositoryTransport transport
+    BlobResolver resolver
+
+    def setup() {
+        repository = temporaryFolder.newFolder("repo")
+        transport = new FileRepositoryTransport(repository)
+        resolver = new BlobResolver(temporaryFolder.newFolder("cache"), Logging.getLogger(BlobResolverSpec))
+    }
+
+    File file(String name, String content) {
+        def file = new File(temporaryFolder.root, name)
+        file.text = content
+        return file
+    }
+
+    ContentPointer publishBlob(String content) {
+        def blob = file("blob", content)
+        def pointer = new ContentPointer(Checksums.sha256(blob), blob.length())
+        transport.upload(pointer.getBlobPath(MODULE_PATH), blob)
+        return pointer
+    }
+
+    def "pointer is written and read back"() {
+        given:
+        def pointer = new ContentPointer("a" * 64, 42)
+        def file = new File(temporaryFolder.root, "mapping.txt")
+
+        when:
+        pointer.write(file)
+
+        then:
+        ContentPointer.isPointer(file)
+        ContentPointer.read(file).sha256 == "a" * 64
+        ContentPointer.read(file).size == 42
+        pointer.getBlobPath(MODULE_PATH) == "com/example/app/blobs/sha256/aa/" + "a" * 64
+    }
+
+    def "plain file is not a pointer"() {
+        expect:
+        !ContentPointer.isPointer(file("R.txt", "int id a 0x7f010001"))
+        resolver.resolve(file("R.txt", "int id a 0x7f010001"), MODULE_PATH, transport).text == "int id a 0x7f010001"
+    }
+
+    def "pointer is resolved to its blob and the blob is reused"() {
+        given:
+        def pointerFile = new File(temporaryFolder.root, "mapping.txt")
+        publishBlob("a -> b").write(pointerFile)
+
+        when:
+        def blob = resolver.resolve(pointerFile, MODULE_PATH, transport)
+
+        then:
+        blob.text == "a -> b"
+
+        when:
+        repository.deleteDir()
+
+        then:
+        resolver.resolve(pointerFile, MODULE_PATH, transport) == blob
+    }
+
+    def "corrupted blob is rejected"() {
+        given:
+        def pointer = publishBlob("a -> b")
+        new File(repository, pointer.getBlobPath(MODULE_PATH)).text = "a -> c"
+        def pointerFile = new File(temporaryFolder.root, "mapping.txt")
+        pointer.write(pointerFile)
+
+        when:
+        resolver.resolve(pointerFile, MODULE_PATH, transport)
+
+        then:
+        thrown(GradleException)
+    }
+
+    def "missing blob fails"() {
+        given:
+        def pointerFile = new File(temporaryFolder.root, "mapping.txt")
+        new ContentPointer("b" * 64, 6).write(pointerFile)
+
+        when:
+        resolver.resolve(pointerFile, MODULE_PATH, transport)
+
+        then:
+        thrown(GradleException)
+    }
+
+    ChunkList publishChunked(String name, byte[] content) {
+        def apk = new File(temporaryFolder.root, name)
+        apk.bytes = content
+        def chunkDir = temporaryFolder.newFolder(name + "-chunks")
+        def chunkList = Chunker.split(apk, chunkDir)
+        chunkList.distinctChunks.each { transport.upload(it.getBlobPath(MODULE_PATH), new File(chunkDir, it.sha256)) }
+        return chunkList
+    }
+
+    def "chunk list is written and read back"() {
+        given:
+        def content = new byte[300 * 1024]
+        new Random(1).nextBytes(content)
+        def chunkList = publishChunked("app.apk", content)
+        def file = new File(temporaryFolder.root, "app.apk.chunks")
+
+        when:
+        chunkList.write(file)
+        def read = ChunkList.read(file)
+
+        then:
+        ChunkList.isChunkList(file)
+        !ContentPointer.isPointer(file)
+        read.sha256 == chunkList.sha256
+        read.size == content.length
+        read.chunks*.sha256 == chunkList.chunks*.sha256
+    }
+
+    def "chunk list with sizes not adding up is malformed"() {
+        given:
+        def file = new File(temporaryFolder.root, "app.apk.chunks")
+        file.text = "#tinker-chunk-list v1\nsha256=${"a" * 64}\nsize=10\nchunk=${"b" * 64} 9\n"
+
+        when:
+        ChunkList.read(file)
+
+        then:
+        thrown(GradleException)
+    }
+
+    def "apk is reassembled from its chunks, only missing chunks are downloaded"() {
+        given:
+        def content = new byte[1024 * 1024]
+        new Random(2).nextBytes(content)
+        def oldList = publishChunked("old.apk", content)
+        def changed = content.clone()
+        changed[content.length - 10] = (byte) (changed[content.length - 10] + 1)
+        def newList = publishChunked("new.apk", changed)
+        def oldFile = new File(temporaryFolder.root, "old.apk.chunks")
+        def newFile = new File(temporaryFolder.root, "new.apk.chunks")
+        oldList.write(oldFile)
+        newList.write(newFile)
+
+        when:
+        def oldApk = resolver.resolve(oldFile, MODULE_PATH, transport)
+        def shared = newList.distinctChunks.findAll { chunk -> oldList.chunks.any { it.sha256 == chunk.sha256 } }
+        shared.each { new File(repository, it.getBlobPath(MODULE_PATH)).delete() }
+        def newApk = resolver.resolve(newFile, MODULE_PATH, transport)
+
+        then:
+        oldApk.bytes == content
+        newApk.bytes == changed
+        !shared.isEmpty()
+    }
+
+    def "inspecting tells the content size and the chunks still to download"() {
+        given:
+        def content = new byte[1024 * 1024]
+        new Random(3).nextBytes(content)
+        def chunkList = publishChunked("app.apk", content)
+        def listFile = new File(temporaryFolder.root, "app.apk.chunks")
+        chunkList.write(listFile)
+        def pointerFile = new File(temporaryFolder.root, "mapping.txt")
+        publishBlob("a -> b").write(pointerFile)
+
+        expect:
+        resolver.inspect(file("R.txt", "int id a 0x7f010001")) == null
+        with(resolver.inspect(pointerFile)) {
+            size == 6
+            missingChunks == 1
+            missingBytes == 6
+            !complete
+        }
+        with(resolver.inspect(listFile)) {
+            size == content.length
+            chunks == chunkList.distinctChunks.size()
+            missingChunks == chunks
+            missingBytes == content.length
+        }
+
+        when:
+        resolver.resolve(pointerFile, MODULE_PATH, transport)
+        resolver.resolve(listFile, MODULE_PATH, transport)
+
+        then:
+        resolver.inspect(pointerFile).complete
+        resolver.inspect(listFile).complete
+        resolver.inspect(listFile).missingBytes == 0
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.blob
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class ChunkerSpec extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    File file(String name, byte[] content) {
+        def file = new File(temporaryFolder.root, name)
+        file.bytes = content
+        return file
+    }
+
+    byte[] random(int size) {
+        def bytes = new byte[size]
+        new Random(42).nextBytes(bytes)
+        return bytes
+    }
+
+    def "chunks reassemble the file and stay within the size bounds"() {
+        given:
+        def content = random(2 * 1024 * 1024)
+        def chunkDir = temporaryFolder.newFolder("chunks")
+
+        when:
+        def chunks = Chunker.split(file("app.apk", content), chunkDir)
+
+        then:
+        chunks.size == content.length
+        chunks.chunks*.size.sum() == content.length
+        chunks.chunks.dropRight(1).every { it.size >= Chunker.MIN_SIZE && it.size <= Chunker.MAX_SIZE }
+        chunks.chunks.inject(new ByteArrayOutputStream()) { output, chunk -> output << new File(chunkDir, chunk.sha256).bytes }.toByteArray() == content
+    }
+
+    def "an insertion only changes the chunks around it"() {
+        given:
+        def content = random(4 * 1024 * 1024)
+        def middle = content.length.intdiv(2)
+        def inserted = (content[0..<middle] + ([7] * 100) + content[middle..<content.length]) as byte[]
+
+        when:
+        def before = Chunker.split(file("old.apk", content), temporaryFolder.newFolder("old"))
+        def after = Chunker.split(file("new.apk", inserted), temporaryFolder.newFolder("new"))
+        def changed = after.chunks*.sha256 - before.chunks*.sha256
+
+        then:
+        before.chunks.size() > 20
+        changed.size() <= 2
+        changed.collect { sha256 -> after.chunks.find { it.sha256 == sha256 }.size }.sum() < Chunker.MAX_SIZE * 2
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.cache
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicInteger
+
+class DaemonCacheSpec extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    def cache = new DaemonCache(DaemonCache.MAX_WEIGHT)
+
+    File file(String name, String content) {
+        def file = new File(temporaryFolder.root, name)
+        file.text = content
+        return file
+    }
+
+    def "parsed value is reused until the file changes"() {
+        given:
+        def file = file("mapping.txt", "a -> b")
+        def parses = new AtomicInteger()
+        def parser = { File it -> parses.incrementAndGet(); it.text }
+
+        when:
+        def first = cache.parse("mapping", file, parser, { 1L })
+        def second = cache.parse("mapping", file, parser, { 1L })
+
+        then:
+        first == "a -> b"
+        second == "a -> b"
+        parses.get() == 1
+
+        when:
+        file.text = "a -> c, longer"
+        def third = cache.parse("mapping", file, parser, { 1L })
+
+        then:
+        third == "a -> c, longer"
+        parses.get() == 2
+    }
+
+    def "one file is parsed separately for every kind"() {
+        given:
+        def file = file("R.txt", "int id a 0x7f010001")
+
+        expect:
+        cache.parse("lines", file, { it.readLines() }, { 1L }) == ["int id a 0x7f010001"]
+        cache.parse("length", file, { it.length() }, { 1L }) == 19
+    }
+
+    def "resolved file is returned while its content is the same"() {
+        given:
+        def file = file("base.apk", "apk")
+        cache.putResolved("com.example:app:1.0", file)
+
+        expect:
+        cache.getResolved("com.example:app:1.0") == file
+
+        when: "touched but unchanged"
+        file.lastModified = file.lastModified() - 10_000
+
+        then:
+        cache.getResolved("com.example:app:1.0") == file
+
+        when:
+        file.text = "other"
+
+        then:
+        cache.getResolved("com.example:app:1.0") == null
+    }
+
+    def "resolved file that was deleted is forgotten"() {
+        given:
+        def file = file("base.apk", "apk")
+        cache.putResolved("key", file)
+
+        when:
+        file.delete()
+
+        then:
+        cache.getResolved("key") == null
+    }
+
+    def "least recently used entries are evicted beyond the weight"() {
+        given:
+        def small = new DaemonCache(1024)
+        def parses = new AtomicInteger()
+        def files = (1..8).collect { file("file-$it", "content $it") }
+
+        when:
+        files.each { small.parse("kind", it, { parses.incrementAndGet() }, { 512L }) }
+        small.parse("kind", files.first(), { parses.incrementAndGet() }, { 512L })
+
+        then:
+        parses.get() == 9
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.cache
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class NegativeResultCacheSpec extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    NegativeResultCache cache(long ttlMillis) {
+        return new NegativeResultCache(new File(temporaryFolder.root, "negative/results.properties"), ttlMillis)
+    }
+
+    def "missing artifact is remembered across instances until it is found"() {
+        given:
+        def key = "https://repo/com/example/app/1.0/app-1.0-R.txt"
+        cache(60_000).recordMissing(key, "index-1")
+
+        expect:
+        cache(60_000).isMissing(key, "index-1")
+
+        when:
+        cache(60_000).recordFound(key)
+
+        then:
+        !cache(60_000).isMissing(key, "index-1")
+    }
+
+    def "entry expires when the fingerprint changes"() {
+        given:
+        def cache = cache(60_000)
+        cache.recordMissing("key", "index-1")
+
+        expect:
+        !cache.isMissing("key", "index-2")
+        !cache.isMissing("key", null)
+        cache.isMissing("key", "index-1")
+    }
+
+    def "entry without fingerprint only matches lookups without one"() {
+        given:
+        def cache = cache(60_000)
+        cache.recordMissing("key", null)
+
+        expect:
+        cache.isMissing("key", null)
+        !cache.isMissing("key", "index-1")
+    }
+
+    def "entry expires after the ttl"() {
+        given:
+        def cache = cache(50)
+        cache.recordMissing("key", null)
+
+        when:
+        Thread.sleep(100)
+
+        then:
+        !cache.isMissing("key", null)
+    }
+
+    def "nothing is recorded when the ttl is disabled"() {
+        given:
+        def cache = cache(0)
+
+        when:
+        cache.recordMissing("key", null)
+
+        then:
+        !cache.isMissing("key", null)
+        !new File(temporaryFolder.root, "negative/results.properties").exists()
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.index
+
+import io.github.noproxy.plugin.tinker.internal.ArtifactType
+import io.github.noproxy.plugin.tinker.internal.publish.MavenMetadata
+import io.github.noproxy.plugin.tinker.internal.transport.FileRepositoryTransport
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransport
+import io.github.noproxy.plugin.tinker.internal.transport.ResourceMetadata
+import org.gradle.api.GradleException
+import org.gradle.api.logging.Logging
+import org.jetbrains.annotations.NotNull
+import org.jetbrains.annotations.Nullable
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class BaseVersionIndexSpec extends Specification {
+    static final String MODULE = "org/tinker/app/org.example.app"
+
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    def logger = Logging.getLogger(BaseVersionIndexSpec)
+
+    static Map<String, BaseVersionIndex.VersionEntry> entry(String version, ArtifactType... types) {
+        def entry = new BaseVersionIndex.VersionEntry("release", "", "release")
+        types.each { entry.putArtifact(it, new BaseVersionIndex.ArtifactEntry(null, it.name().toLowerCase(), 1, "00")) }
+        return [(version): entry]
+    }
+
+    def "updates merge into the index published before"() {
+        given:
+        def repository = temporaryFolder.newFolder("repo")
+        def transport = new FileRepositoryTransport(repository)
+
+        when:
+        UpdateBaseVersionIndexTask.updateModule(transport, MODULE, entry("2.3-release", ArtifactType.APK), temporaryFolder.newFolder(), logger)
+        UpdateBaseVersionIndexTask.updateModule(transport, MODULE, entry("2.4-release", ArtifactType.APK, ArtifactType.MAPPING), temporaryFolder.newFolder(), logger)
+
+        then:
+        def index = BaseVersionIndex.read(new File(repository, BaseVersionIndex.getIndexPath(MODULE)))
+        index.versions.keySet() == ["2.3-release", "2.4-release"] as Set
+        index.contains("2.4-release", ArtifactType.MAPPING)
+        !index.contains("2.3-release", ArtifactType.MAPPING)
+    }
+
+    def "refuses to update repositories ignoring conditional uploads"() {
+        given:
+        def repository = temporaryFolder.newFolder("repo")
+        RepositoryTransport transport = new FileRepositoryTransport(repository) {
+            @Override
+            boolean supportsConditionalUpload(@NotNull String directory) {
+                return false
+            }
+        }
+
+        when:
+        UpdateBaseVersionIndexTask.updateModule(transport, MODULE, entry("2.3-release", ArtifactType.APK), temporaryFolder.newFolder(), logger)
+
+        then:
+        thrown(GradleException)
+        !new File(repository, BaseVersionIndex.getIndexPath(MODULE)).exists()
+    }
+
+    def "index is complete while it lists every version of the maven metadata"() {
+        given:
+        def repository = temporaryFolder.newFolder("repo")
+        def transport = new FileRepositoryTransport(repository)
+        def metadata = new MavenMetadata("org.tinker.app", "org.example.app")
+        metadata.addVersion("2.3-release")
+        metadata.write(new File(repository, MavenMetadata.getPath(MODULE)))
+        def indexFile = new File(repository, BaseVersionIndex.getIndexPath(MODULE))
+
+        when:
+        UpdateBaseVersionIndexTask.updateModule(transport, MODULE, entry("2.3-release", ArtifactType.APK), temporaryFolder.newFolder(), logger)
+
+        then:
+        BaseVersionIndex.read(indexFile).complete
+
+        when:
+        metadata.addVersion("2.4-release")
+        metadata.addVersion("2.5-release")
+        metadata.write(new File(repository, MavenMetadata.getPath(MODULE)))
+        UpdateBaseVersionIndexTask.updateModule(transport, MODULE, entry("2.5-release", ArtifactType.APK), temporaryFolder.newFolder(), logger)
+
+        then:
+        !BaseVersionIndex.read(indexFile).complete
+    }
+
+    def "cached index answers through the bloom filter"() {
+        given:
+        def transport = new FileRepositoryTransport(temporaryFolder.newFolder("repo"))
+        UpdateBaseVersionIndexTask.updateModule(transport, MODULE, entry("2.3-release", ArtifactType.APK, ArtifactType.SYMBOL), temporaryFolder.newFolder(), logger)
+        def cacheDir = temporaryFolder.newFolder("cache")
+
+        when:
+        def index = new BaseVersionIndexCache(cacheDir, false, logger).get(transport, MODULE)
+
+        then:
+        index.fresh
+        index.containsVersion("2.3-release")
+        !index.containsVersion("2.4-release")
+        index.contains("2.3-release", ArtifactType.SYMBOL)
+        !index.contains("2.3-release", ArtifactType.MAPPING)
+        cacheDir.listFiles()[0].list().toList().containsAll([BaseVersionIndex.FILE_NAME, "tinker-index.bloom"])
+    }
+
+    def "cached copy is not fresh when the repository can not be reached"() {
+        given:
+        def repository = temporaryFolder.newFolder("repo")
+        def transport = new FileRepositoryTransport(repository)
+        UpdateBaseVersionIndexTask.updateModule(transport, MODULE, entry("2.3-release", ArtifactType.APK), temporaryFolder.newFolder(), logger)
+        def cacheDir = temporaryFolder.newFolder("cache")
+        new BaseVersionIndexCache(cacheDir, false, logger).get(transport, MODULE)
+
+        RepositoryTransport unreachable = new FileRepositoryTransport(repository) {
+            @Override
+            ResourceMetadata download(@NotNull String path, @NotNull File destination, @Nullable String ifNoneMatch) throws IOException {
+                throw new IOException("connection refused")
+            }
+        }
+
+        expect:
+        with(new BaseVersionIndexCache(cacheDir, false, logger).get(unreachable, MODULE)) {
+            !fresh
+            containsVersion("2.3-release")
+        }
+        !new BaseVersionIndexCache(cacheDir, true, logger).get(transport, MODULE).fresh
+    }
+
+    def "no index when the repository has none"() {
+        expect:
+        new BaseVersionIndexCache(temporaryFolder.newFolder("cache"), false, logger)
+                .get(new FileRepositoryTransport(temporaryFolder.newFolder("repo")), MODULE) == null
+    }
+}
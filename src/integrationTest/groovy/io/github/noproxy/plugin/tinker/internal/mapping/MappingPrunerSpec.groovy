@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.mapping
+
+import org.gradle.api.logging.Logging
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class MappingPrunerSpec extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    static final String MAPPING = """\
+# compiler: R8
+com.example.Kept -> a.a:
+    int field -> a
+    void method() -> b
+com.example.Kept\$Inner -> a.b:
+    void run() -> a
+com.example.Deleted -> a.c:
+    void method() -> a
+com.example.-\$\$Lambda\$Kept\$1 -> a.d:
+    void run() -> a
+com.example.FromJar -> a.e:
+"""
+
+    File classes() {
+        def classes = temporaryFolder.newFolder("classes")
+        new File(classes, "com/example").mkdirs()
+        new File(classes, "com/example/Kept.class").bytes = new byte[0]
+        return classes
+    }
+
+    File jar() {
+        def jar = new File(temporaryFolder.root, "library.jar")
+        new ZipOutputStream(new FileOutputStream(jar)).withCloseable { zip ->
+            zip.putNextEntry(new ZipEntry("com/example/FromJar.class"))
+            zip.closeEntry()
+        }
+        return jar
+    }
+
+    def "classes missing from the inputs are dropped with their members"() {
+        given:
+        def mapping = new File(temporaryFolder.root, "mapping.txt")
+        mapping.text = MAPPING
+        def pruner = new MappingPruner(temporaryFolder.newFolder("cache"), Logging.getLogger(MappingPrunerSpec))
+
+        when:
+        def pruned = pruner.prune(mapping, [classes(), jar()])
+
+        then:
+        pruned.readLines() == [
+                "# compiler: R8",
+                "com.example.Kept -> a.a:",
+                "    int field -> a",
+                "    void method() -> b",
+                "com.example.Kept\$Inner -> a.b:",
+                "    void run() -> a",
+                "com.example.-\$\$Lambda\$Kept\$1 -> a.d:",
+                "    void run() -> a",
+                "com.example.FromJar -> a.e:",
+        ]
+    }
+
+    def "classes the inputs can't rule out are kept"() {
+        given:
+        def mapping = new File(temporaryFolder.root, "mapping.txt")
+        mapping.text = """\
+com.example.R -> a.a:
+com.example.R\$string -> a.b:
+    int app_name -> a
+com.example.Deleted -> a.c:
+com.woven.Aspect -> a.d:
+"""
+        def pruner = new MappingPruner(temporaryFolder.newFolder("cache"), Logging.getLogger(MappingPrunerSpec))
+
+        when:
+        def pruned = pruner.prune(mapping, [classes()])
+
+        then:
+        pruned.readLines() == [
+                "com.example.R -> a.a:",
+                "com.example.R\$string -> a.b:",
+                "    int app_name -> a",
+                "com.woven.Aspect -> a.d:",
+        ]
+        temporaryFolder.root.listFiles().find { it.name == "cache" }.list().findAll { it.endsWith(".tmp") }.isEmpty()
+    }
+
+    def "pruned mapping is reused for the same mapping and classes"() {
+        given:
+        def mapping = new File(temporaryFolder.root, "mapping.txt")
+        mapping.text = MAPPING
+        def pruner = new MappingPruner(temporaryFolder.newFolder("cache"), Logging.getLogger(MappingPrunerSpec))
+        def inputs = [classes()]
+
+        when:
+        def first = pruner.prune(mapping, inputs)
+        def second = pruner.prune(mapping, inputs)
+        new File(inputs[0], "com/example/Deleted.class").bytes = new byte[0]
+        def third = pruner.prune(mapping, inputs)
+
+        then:
+        first == second
+        third != first
+        third.text.contains("com.example.Deleted -> a.c:")
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.patch
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class PatchIndexSpec extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    def base = new PatchIndex.Base("com.example", "app", "1.0", "release", "ab12")
+
+    def "paths are keyed by the base checksum"() {
+        expect:
+        PatchIndex.getPatchesPath("com/example/app/1.0", "ab12") == "com/example/app/1.0/patches/ab12"
+        PatchIndex.getIndexPath("com/example/app/1.0", "ab12") == "com/example/app/1.0/patches/ab12/tinker-patches.json"
+        PatchIndex.getPatchFileName(3, "apk") == "patch-3.apk"
+    }
+
+    def "patches are kept in order and the latest number only grows"() {
+        given:
+        def index = new PatchIndex(base)
+
+        when:
+        index.putPatch(new PatchIndex.PatchEntry(2, "patch-2.apk", 20, "bb", 0))
+        index.putPatch(new PatchIndex.PatchEntry(1, "patch-1.apk", 10, "aa", 0))
+        index.putPatch(new PatchIndex.PatchEntry(2, "patch-2.apk", 21, "cc", 0))
+
+        then:
+        index.patches*.number == [1, 2]
+        index.latest == 2
+        index.findBySha256("cc").size == 21
+        index.findBySha256("bb") == null
+    }
+
+    def "written index is read back"() {
+        given:
+        def file = new File(temporaryFolder.root, "tinker-patches.json")
+        def index = new PatchIndex(base)
+        index.putPatch(new PatchIndex.PatchEntry(1, "patch-1.apk", 10, "aa", 1000))
+
+        when:
+        index.write(file)
+        def read = PatchIndex.read(file, base)
+
+        then:
+        read.base.sha256 == "ab12"
+        read.latest == 1
+        read.findBySha256("aa").file == "patch-1.apk"
+    }
+
+    def "empty index file is an empty index of the base"() {
+        given:
+        def file = temporaryFolder.newFile("tinker-patches.json")
+
+        when:
+        def read = PatchIndex.read(file, base)
+
+        then:
+        read.base.is(base)
+        read.latest == 0
+        read.patches.isEmpty()
+    }
+}
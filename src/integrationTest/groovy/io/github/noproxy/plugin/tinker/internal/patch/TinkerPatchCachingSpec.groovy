@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.patch
+
+import com.android.builder.model.SigningConfig
+import io.github.noproxy.plugin.tinker.internal.Checksums
+import spock.lang.Specification
+
+class TinkerPatchCachingSpec extends Specification {
+    SigningConfig signingConfig(String keyAlias, String password) {
+        return [getKeyAlias       : { keyAlias },
+                getStoreType      : { "jks" },
+                getStorePassword  : { password },
+                getKeyPassword    : { password },
+                isV1SigningEnabled: { true },
+                isV2SigningEnabled: { true }] as SigningConfig
+    }
+
+    def "signing config goes into the key without its passwords"() {
+        when:
+        def description = TinkerPatchCaching.describe(signingConfig("release", "secret"))
+
+        then:
+        description.contains("keyAlias=release")
+        !description.contains("secret")
+        !description.contains(Checksums.toHex(Checksums.newSha256().digest("secret".bytes)))
+        description == TinkerPatchCaching.describe(signingConfig("release", "other"))
+        description != TinkerPatchCaching.describe(signingConfig("debug", "secret"))
+    }
+
+    def "absolute paths go into the key relative to the root project or as file names"() {
+        given:
+        def rootDir = new File("/work/app")
+        def extension = new SevenZip(path: "/usr/local/bin/7za", config: "/work/app/tinker/config.xml", tinkerId: "2.3")
+
+        expect:
+        TinkerPatchCaching.describe(extension, rootDir) == "{config=tinker/config.xml, path=7za, tinkerId=2.3}"
+    }
+
+    static class SevenZip {
+        String path
+        String config
+        String tinkerId
+    }
+
+    def "unsigned patches have a key of their own"() {
+        expect:
+        TinkerPatchCaching.describe((SigningConfig) null) == "unsigned"
+    }
+}
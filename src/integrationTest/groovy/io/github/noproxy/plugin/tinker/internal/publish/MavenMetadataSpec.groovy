@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.publish
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class MavenMetadataSpec extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    @Unroll
+    def "orders #higher above #lower"() {
+        expect:
+        MavenMetadata.compareVersions(higher, lower) > 0
+        MavenMetadata.compareVersions(lower, higher) < 0
+
+        where:
+        higher         | lower
+        "1.10"         | "1.9"
+        "2.3.1"        | "2.3"
+        "2.3"          | "2.3-rc1"
+        "2.10-release" | "2.9-release"
+        "2.3-release"  | "2.3-debug"
+    }
+
+    def "latest and release are the highest versions regardless of the order they are added in"() {
+        given:
+        def metadata = new MavenMetadata("org.tinker.app", "app")
+
+        when:
+        ["2.10-release", "2.9-release", "3.0-SNAPSHOT", "2.2-release"].each { metadata.addVersion(it) }
+
+        then:
+        metadata.latest == "3.0-SNAPSHOT"
+        metadata.release == "2.10-release"
+    }
+
+    def "merges into the versions published before"() {
+        given:
+        def file = temporaryFolder.newFile(MavenMetadata.FILE_NAME)
+        def published = new MavenMetadata("org.tinker.app", "app")
+        published.addVersion("2.3-release")
+        published.write(file)
+
+        when:
+        def metadata = MavenMetadata.read(file, "org.tinker.app", "app")
+        metadata.addVersion("2.2-release")
+        metadata.write(file)
+
+        then:
+        def merged = MavenMetadata.read(file, "org.tinker.app", "app")
+        merged.versions == ["2.3-release", "2.2-release"] as Set
+        merged.latest == "2.3-release"
+        merged.release == "2.3-release"
+    }
+
+    def "removing a version recomputes latest and release"() {
+        given:
+        def metadata = new MavenMetadata("org.tinker.app", "app")
+        ["2.2-release", "2.3-release", "2.4-SNAPSHOT"].each { metadata.addVersion(it) }
+
+        when:
+        metadata.removeVersion("2.4-SNAPSHOT")
+        metadata.removeVersion("2.3-release")
+
+        then:
+        metadata.versions == ["2.2-release"] as Set
+        metadata.latest == "2.2-release"
+        metadata.release == "2.2-release"
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport
+
+import com.sun.net.httpserver.HttpServer
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class HedgedDownloaderSpec extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    List<HttpServer> servers = []
+
+    def cleanup() {
+        servers*.stop(0)
+    }
+
+    /**
+     * A mirror serving every path with the given body after the delay, or failing with the status code. With a stall,
+     * it sends the first half of the body and then waits before sending the rest.
+     */
+    RepositoryTransport mirror(String body, long delayMillis = 0, int status = 200, long stallMillis = 0) {
+        def server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+        server.createContext("/") { exchange ->
+            Thread.sleep(delayMillis)
+            if (status != 200) {
+                exchange.sendResponseHeaders(status, -1)
+            } else {
+                def bytes = body.bytes
+                exchange.sendResponseHeaders(200, bytes.length)
+                exchange.responseBody.write(bytes, 0, bytes.length.intdiv(2))
+                exchange.responseBody.flush()
+                Thread.sleep(stallMillis)
+                exchange.responseBody.write(bytes, bytes.length.intdiv(2), bytes.length - bytes.length.intdiv(2))
+            }
+            exchange.close()
+        }
+        server.executor = java.util.concurrent.Executors.newCachedThreadPool()
+        server.start()
+        servers << server
+        return new HttpRepositoryTransport(URI.create("http://127.0.0.1:${server.address.port}/repo/"), null, null)
+    }
+
+    def "hedged request to the next mirror wins when the first one is slow"() {
+        given:
+        def slow = mirror("slow", 5_000)
+        def fast = mirror("fast")
+        def destination = new File(temporaryFolder.root, "app.apk")
+        def downloader = new HedgedDownloader([slow, fast], 100, 30_000)
+
+        when:
+        def start = System.currentTimeMillis()
+        def result = downloader.download("org/app/1.0/app-1.0.apk", destination)
+
+        then:
+        result != null
+        destination.text == "fast"
+        System.currentTimeMillis() - start < 5_000
+    }
+
+    def "a slow mirror that loses is ordered after the winner"() {
+        given:
+        def slow = mirror("slow", 2_000)
+        def fast = mirror("fast")
+        def downloader = new HedgedDownloader([slow, fast], 100, 30_000)
+
+        expect:
+        downloader.orderedMirrors.first() == slow
+
+        when:
+        downloader.download("app.apk", new File(temporaryFolder.root, "app.apk"))
+
+        then:
+        HedgedDownloader.getStats(slow).samples == 1
+        HedgedDownloader.getStats(slow).score > HedgedDownloader.getStats(fast).score
+        downloader.orderedMirrors == [fast, slow]
+    }
+
+    def "losers stalled in a read are aborted and leave no files behind"() {
+        given:
+        def stalled = mirror("stalled", 0, 200, 10_000)
+        def fast = mirror("fast", 300)
+        def destination = new File(temporaryFolder.root, "app.apk")
+        def downloader = new HedgedDownloader([stalled, fast], 100, 30_000)
+
+        when:
+        downloader.download("app.apk", destination)
+        Thread.sleep(500)
+
+        then:
+        destination.text == "fast"
+        temporaryFolder.root.list() as List == ["app.apk"]
+        // the latency is the time to the first byte, not the time the download would have taken
+        HedgedDownloader.getStats(stalled).score < 300
+    }
+
+    def "fails over to the next mirror on errors"() {
+        given:
+        def broken = mirror("", 0, 500)
+        def healthy = mirror("healthy")
+        def destination = new File(temporaryFolder.root, "app.apk")
+
+        when:
+        def result = new HedgedDownloader([broken, healthy], 10_000, 30_000).download("app.apk", destination)
+
+        then:
+        result != null
+        destination.text == "healthy"
+    }
+
+    def "reports missing only when every mirror misses"() {
+        given:
+        def destination = new File(temporaryFolder.root, "mapping.txt")
+
+        expect:
+        new HedgedDownloader([mirror("", 0, 404), mirror("", 0, 404)], 10, 30_000).download("mapping.txt", destination) == null
+        !destination.exists()
+    }
+
+    def "fails if no mirror answers in time"() {
+        given:
+        def downloader = new HedgedDownloader([mirror("late", 5_000)], 10, 200)
+
+        when:
+        downloader.download("app.apk", new File(temporaryFolder.root, "app.apk"))
+
+        then:
+        thrown(IOException)
+    }
+}
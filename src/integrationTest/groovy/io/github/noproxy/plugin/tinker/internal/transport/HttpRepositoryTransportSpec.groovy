@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport
+
+import com.sun.net.httpserver.HttpServer
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+
+class HttpRepositoryTransportSpec extends Specification {
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    HttpServer server
+    Map<String, byte[]> files = new ConcurrentHashMap<>()
+
+    def cleanup() {
+        server?.stop(0)
+    }
+
+    /**
+     * A repository keeping the files in memory, like Nexus or a plain file server it may ignore preconditions.
+     */
+    HttpRepositoryTransport repository(boolean honorsPreconditions) {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+        server.createContext("/") { exchange ->
+            def path = exchange.requestURI.path
+            def current = files[path]
+            def etag = current == null ? null : "\"${Arrays.hashCode(current)}\""
+            def ifMatch = exchange.requestHeaders.getFirst("If-Match")
+            def ifNoneMatch = exchange.requestHeaders.getFirst("If-None-Match")
+            switch (exchange.requestMethod) {
+                case "PUT":
+                    def body = exchange.requestBody.bytes
+                    if (honorsPreconditions && (ifMatch != null && ifMatch != etag || ifNoneMatch == "*" && current != null)) {
+                        exchange.sendResponseHeaders(412, -1)
+                    } else {
+                        files[path] = body
+                        exchange.sendResponseHeaders(201, -1)
+                    }
+                    break
+                case "DELETE":
+                    exchange.sendResponseHeaders(files.remove(path) == null ? 404 : 204, -1)
+                    break
+                default:
+                    if (current == null) {
+                        exchange.sendResponseHeaders(404, -1)
+                    } else {
+                        exchange.responseHeaders.add("ETag", etag)
+                        exchange.sendResponseHeaders(200, current.length)
+                        exchange.responseBody.write(current)
+                    }
+            }
+            exchange.close()
+        }
+        server.start()
+        return new HttpRepositoryTransport(URI.create("http://127.0.0.1:${server.address.port}/repo/"), null, null)
+    }
+
+    File file(String content) {
+        def file = temporaryFolder.newFile()
+        file.text = content
+        return file
+    }
+
+    def "conditional upload to a repository honoring preconditions"() {
+        given:
+        def transport = repository(true)
+
+        expect:
+        transport.upload("org/app/patch-1.apk", file("first"), ResourceMetadata.ABSENT_ETAG)
+        !transport.upload("org/app/patch-1.apk", file("second"), ResourceMetadata.ABSENT_ETAG)
+        files["/repo/org/app/patch-1.apk"] == "first".bytes
+        transport.supportsConditionalUpload("org/app")
+        files.keySet() == ["/repo/org/app/patch-1.apk"] as Set
+    }
+
+    def "repository ignoring preconditions is detected and the probe is removed"() {
+        given:
+        def transport = repository(false)
+
+        expect:
+        !transport.supportsConditionalUpload("org/app")
+        files.isEmpty()
+    }
+
+    def "file repository supports conditional uploads"() {
+        given:
+        def transport = new FileRepositoryTransport(temporaryFolder.newFolder("repo"))
+
+        expect:
+        transport.supportsConditionalUpload("org/app")
+        transport.upload("org/app/patch-1.apk", file("first"), ResourceMetadata.ABSENT_ETAG)
+        !transport.upload("org/app/patch-1.apk", file("second"), ResourceMetadata.ABSENT_ETAG)
+    }
+
+    def "file repository detects changes of the same length and leaves no lock beside the files"() {
+        given:
+        def root = temporaryFolder.newFolder("repo")
+        def transport = new FileRepositoryTransport(root)
+        transport.upload("org/app/index.json", file("first"))
+        def etag = transport.head("org/app/index.json").etag
+
+        when:
+        new File(root, "org/app/index.json").text = "other"
+
+        then:
+        !transport.upload("org/app/index.json", file("third"), etag)
+        new File(root, "org/app").list() as Set == ["index.json"] as Set
+    }
+}
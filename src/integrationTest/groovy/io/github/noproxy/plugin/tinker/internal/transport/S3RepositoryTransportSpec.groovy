@@ -0,0 +1,356 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import javax.crypto.Mac
+import javax.crypto.spec.SecretKeySpec
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+class S3RepositoryTransportSpec extends Specification {
+    static final String ACCESS_KEY = "tinker-access"
+    static final String SECRET_KEY = "tinker-secret"
+    static final long PART_SIZE = 5 * 1024 * 1024
+
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    FakeS3 s3 = new FakeS3()
+
+    def cleanup() {
+        s3.stop()
+    }
+
+    S3RepositoryTransport transport(String secretKey = SECRET_KEY) {
+        return new S3RepositoryTransport(URI.create("http://127.0.0.1:${s3.port}/"), "bucket", "repo", "us-east-1",
+                ACCESS_KEY, secretKey, true, PART_SIZE, 4)
+    }
+
+    File newFile(String name, int size) {
+        def file = new File(temporaryFolder.root, name)
+        def bytes = new byte[size]
+        new Random(size).nextBytes(bytes)
+        file.bytes = bytes
+        return file
+    }
+
+    def "signed requests upload, check and download a file"() {
+        given:
+        def source = newFile("small.apk", 1024)
+        def destination = new File(temporaryFolder.root, "downloaded.apk")
+
+        when:
+        transport().upload("org/app/1.0/app-1.0.apk", source)
+
+        then:
+        s3.objects.keySet() == ["/bucket/repo/org/app/1.0/app-1.0.apk"] as Set
+        transport().head("org/app/1.0/app-1.0.apk").contentLength == 1024
+        transport().download("org/app/1.0/app-1.0.apk", destination) != null
+        destination.bytes == source.bytes
+        transport().head("org/app/1.0/missing.apk") == null
+        s3.rejected.get() == 0
+    }
+
+    def "requests with a wrong secret are rejected"() {
+        when:
+        transport("wrong").upload("app.apk", newFile("small.apk", 16))
+
+        then:
+        thrown(IOException)
+        s3.rejected.get() == 1
+        s3.objects.isEmpty()
+    }
+
+    def "conditional uploads only succeed if the object is unchanged"() {
+        given:
+        def source = newFile("index.json", 64)
+
+        expect:
+        transport().upload("index.json", source, ResourceMetadata.ABSENT_ETAG)
+        !transport().upload("index.json", source, ResourceMetadata.ABSENT_ETAG)
+
+        when:
+        def etag = transport().head("index.json").etag
+
+        then:
+        transport().upload("index.json", source, etag)
+        !transport().upload("index.json", source, etag + "stale")
+    }
+
+    def "conditional uploads of a missing object or racing a concurrent write are conflicts"() {
+        given:
+        def source = newFile("index.json", 64)
+
+        expect:
+        !transport().upload("missing.json", source, "\"etag\"")
+
+        when:
+        s3.conflicts.set(1)
+
+        then:
+        !transport().upload("index.json", source, ResourceMetadata.ABSENT_ETAG)
+        transport().upload("index.json", source, ResourceMetadata.ABSENT_ETAG)
+    }
+
+    def "probes whether conditional uploads are honored"() {
+        expect:
+        transport().supportsConditionalUpload("patches")
+
+        when:
+        s3.ignoreConditions = true
+
+        then:
+        !transport().supportsConditionalUpload("patches")
+        s3.objects.isEmpty()
+    }
+
+    def "large files are uploaded in parts and downloaded in ranges"() {
+        given:
+        def source = newFile("large.apk", (int) (PART_SIZE * 2 + 1024))
+        def destination = new File(temporaryFolder.root, "downloaded.apk")
+
+        when:
+        transport().upload("large.apk", source)
+        transport().download("large.apk", destination)
+
+        then:
+        s3.multipartUploads.get() == 1
+        s3.parts.get() == 3
+        s3.rangedGets.get() == 3
+        destination.bytes == source.bytes
+        s3.rejected.get() == 0
+    }
+
+    def "failed ranged download leaves no part file"() {
+        given:
+        transport().upload("large.apk", newFile("large.apk", (int) (PART_SIZE * 2 + 1024)))
+        def directory = temporaryFolder.newFolder("download")
+        s3.failingRanges.set(1)
+
+        when:
+        transport().download("large.apk", new File(directory, "downloaded.apk"))
+
+        then:
+        thrown(IOException)
+        directory.list().length == 0
+    }
+
+    def "part size below the S3 minimum is rejected"() {
+        when:
+        new S3RepositoryTransport(URI.create("http://127.0.0.1:${s3.port}/"), "bucket", "repo", "us-east-1",
+                ACCESS_KEY, SECRET_KEY, true, 1024 * 1024, 4)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "delete removes the object and ignores missing ones"() {
+        given:
+        transport().upload("app.apk", newFile("small.apk", 16))
+
+        when:
+        transport().delete("app.apk")
+        transport().delete("app.apk")
+
+        then:
+        s3.objects.isEmpty()
+    }
+
+    def "signs the host without the default port"() {
+        expect:
+        AwsSignatureV4.canonicalHost(URI.create("https://s3.example.com:443/bucket")) == "s3.example.com"
+        AwsSignatureV4.canonicalHost(URI.create("http://s3.example.com:80/bucket")) == "s3.example.com"
+        AwsSignatureV4.canonicalHost(URI.create("https://s3.example.com/bucket")) == "s3.example.com"
+        AwsSignatureV4.canonicalHost(URI.create("http://127.0.0.1:9000/bucket")) == "127.0.0.1:9000"
+    }
+
+    /**
+     * A path-style S3 stand-in checking the signature of every request against the Host header it received.
+     */
+    static class FakeS3 {
+        final Map<String, byte[]> objects = new ConcurrentHashMap<>()
+        final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>()
+        final AtomicInteger rejected = new AtomicInteger()
+        final AtomicInteger multipartUploads = new AtomicInteger()
+        final AtomicInteger parts = new AtomicInteger()
+        final AtomicInteger rangedGets = new AtomicInteger()
+        final AtomicInteger conflicts = new AtomicInteger()
+        final AtomicInteger failingRanges = new AtomicInteger()
+        volatile boolean ignoreConditions
+        private final HttpServer server
+
+        FakeS3() {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+            server.createContext("/") { exchange ->
+                try {
+                    handle(exchange)
+                } finally {
+                    exchange.close()
+                }
+            }
+            server.executor = Executors.newCachedThreadPool()
+            server.start()
+        }
+
+        int getPort() {
+            return server.address.port
+        }
+
+        void stop() {
+            server.stop(0)
+        }
+
+        private static String etag(byte[] bytes) {
+            return '"' + MessageDigest.getInstance("MD5").digest(bytes).encodeHex().toString() + '"'
+        }
+
+        private static byte[] hmac(byte[] key, String data) {
+            def mac = Mac.getInstance("HmacSHA256")
+            mac.init(new SecretKeySpec(key, "HmacSHA256"))
+            return mac.doFinal(data.getBytes("UTF-8"))
+        }
+
+        private static boolean verify(HttpExchange exchange) {
+            def authorization = exchange.requestHeaders.getFirst("Authorization") ?: ""
+            def matcher = authorization =~ /Credential=([^\/]+)\/(\d+)\/([^\/]+)\/s3\/aws4_request, SignedHeaders=([^,]+), Signature=(\w+)/
+            if (!matcher.find() || matcher.group(1) != ACCESS_KEY) {
+                return false
+            }
+            def signedHeaders = matcher.group(4).split(";")
+            def query = (exchange.requestURI.rawQuery ?: "").split("&").findAll { it }
+                    .collect { it.contains("=") ? it : it + "=" }.sort().join("&")
+            def canonicalRequest = exchange.requestMethod + "\n" + exchange.requestURI.rawPath + "\n" + query + "\n" +
+                    signedHeaders.collect { it + ":" + exchange.requestHeaders.getFirst(it).trim() + "\n" }.join("") + "\n" +
+                    signedHeaders.join(";") + "\n" + "UNSIGNED-PAYLOAD"
+            def scope = matcher.group(2) + "/" + matcher.group(3) + "/s3/aws4_request"
+            def stringToSign = "AWS4-HMAC-SHA256\n" + exchange.requestHeaders.getFirst("x-amz-date") + "\n" + scope + "\n" +
+                    MessageDigest.getInstance("SHA-256").digest(canonicalRequest.getBytes("UTF-8")).encodeHex().toString()
+            def key = hmac(("AWS4" + SECRET_KEY).getBytes("UTF-8"), matcher.group(2))
+            key = hmac(key, matcher.group(3))
+            key = hmac(key, "s3")
+            key = hmac(key, "aws4_request")
+            return hmac(key, stringToSign).encodeHex().toString() == matcher.group(5)
+        }
+
+        private void send(HttpExchange exchange, int status, byte[] body = null, Map<String, String> headers = [:]) {
+            headers.each { name, value -> exchange.responseHeaders.set(name, value) }
+            if (body == null || exchange.requestMethod == "HEAD") {
+                exchange.sendResponseHeaders(status, -1)
+            } else {
+                exchange.sendResponseHeaders(status, body.length)
+                exchange.responseBody.write(body)
+            }
+        }
+
+        private void handle(HttpExchange exchange) {
+            def body = exchange.requestBody.bytes
+            if (!verify(exchange)) {
+                rejected.incrementAndGet()
+                send(exchange, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>".bytes)
+                return
+            }
+
+            def key = exchange.requestURI.rawPath
+            def query = (exchange.requestURI.rawQuery ?: "").split("&").findAll { it }
+                    .collectEntries { def pair = it.split("=", 2); [(pair[0]): pair.length > 1 ? pair[1] : ""] }
+            def current = objects[key]
+            switch (exchange.requestMethod) {
+                case "HEAD":
+                    if (current == null) {
+                        send(exchange, 404)
+                    } else {
+                        send(exchange, 200, null, ["Content-Length": String.valueOf(current.length), "ETag": etag(current)])
+                    }
+                    break
+                case "GET":
+                    def ifMatch = exchange.requestHeaders.getFirst("If-Match")
+                    if (current == null) {
+                        send(exchange, 404)
+                    } else if (ifMatch != null && ifMatch != etag(current)) {
+                        send(exchange, 412)
+                    } else if (exchange.requestHeaders.getFirst("Range") != null && failingRanges.getAndDecrement() > 0) {
+                        send(exchange, 500)
+                    } else if (exchange.requestHeaders.getFirst("Range") != null) {
+                        rangedGets.incrementAndGet()
+                        def range = (exchange.requestHeaders.getFirst("Range") =~ /bytes=(\d+)-(\d+)/)
+                        range.find()
+                        def start = range.group(1) as int
+                        def end = range.group(2) as int
+                        send(exchange, 206, Arrays.copyOfRange(current, start, end + 1), ["ETag": etag(current)])
+                    } else {
+                        send(exchange, 200, current, ["ETag": etag(current)])
+                    }
+                    break
+                case "PUT":
+                    if (query.partNumber) {
+                        uploads[query.uploadId][query.partNumber as int] = body
+                        parts.incrementAndGet()
+                        send(exchange, 200, null, ["ETag": etag(body)])
+                        break
+                    }
+                    def ifNoneMatch = exchange.requestHeaders.getFirst("If-None-Match")
+                    def ifMatch = exchange.requestHeaders.getFirst("If-Match")
+                    if (ignoreConditions) {
+                        ifNoneMatch = null
+                        ifMatch = null
+                    }
+                    if ((ifNoneMatch != null || ifMatch != null) && conflicts.getAndUpdate { Math.max(0, it - 1) } > 0) {
+                        send(exchange, 409, "<Error><Code>ConditionalRequestConflict</Code></Error>".bytes)
+                    } else if (ifMatch != null && current == null) {
+                        send(exchange, 404, "<Error><Code>NoSuchKey</Code></Error>".bytes)
+                    } else if ((ifNoneMatch == "*" && current != null) || (ifMatch != null && ifMatch != etag(current))) {
+                        send(exchange, 412)
+                    } else {
+                        objects[key] = body
+                        send(exchange, 200, null, ["ETag": etag(body)])
+                    }
+                    break
+                case "POST":
+                    if (query.containsKey("uploads")) {
+                        multipartUploads.incrementAndGet()
+                        def uploadId = UUID.randomUUID().toString()
+                        uploads[uploadId] = new ConcurrentHashMap<>()
+                        send(exchange, 200, "<InitiateMultipartUploadResult><UploadId>$uploadId</UploadId></InitiateMultipartUploadResult>".bytes)
+                    } else {
+                        def output = new ByteArrayOutputStream()
+                        uploads.remove(query.uploadId).sort().each { number, part -> output.write(part) }
+                        objects[key] = output.toByteArray()
+                        send(exchange, 200, "<CompleteMultipartUploadResult/>".bytes)
+                    }
+                    break
+                case "DELETE":
+                    if (query.uploadId) {
+                        uploads.remove(query.uploadId)
+                    } else {
+                        objects.remove(key)
+                    }
+                    send(exchange, 204)
+                    break
+                default:
+                    send(exchange, 405)
+            }
+        }
+    }
+}
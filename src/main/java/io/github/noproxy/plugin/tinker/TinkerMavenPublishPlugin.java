@@ -30,29 +30,62 @@ import io.github.noproxy.plugin.tinker.api.Resolver;
 import io.github.noproxy.plugin.tinker.api.TinkerMavenPublishExtension;
 import io.github.noproxy.plugin.tinker.api.TinkerMavenResolverExtension;
 import io.github.noproxy.plugin.tinker.internal.*;
-import org.codehaus.groovy.runtime.StringGroovyMethods;
+import io.github.noproxy.plugin.tinker.internal.base.ApplyTinkerBaseAction;
+import io.github.noproxy.plugin.tinker.internal.base.ResolveTinkerBaseTask;
+import io.github.noproxy.plugin.tinker.internal.blob.BlobPublisher;
+import io.github.noproxy.plugin.tinker.internal.index.UpdateBaseVersionIndexTask;
+import io.github.noproxy.plugin.tinker.internal.patch.CheckTinkerPatchTask;
+import io.github.noproxy.plugin.tinker.internal.patch.PublishTinkerPatchTask;
+import io.github.noproxy.plugin.tinker.internal.patch.TinkerPatchCaching;
+import io.github.noproxy.plugin.tinker.internal.publish.PublishAllVariantsTask;
 import org.gradle.api.Action;
+import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
-import org.gradle.api.logging.Logger;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.component.SoftwareComponentFactory;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.RegularFile;
 import org.gradle.api.plugins.ExtensionAware;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.publish.PublishingExtension;
 import org.gradle.api.publish.maven.MavenArtifact;
 import org.gradle.api.publish.maven.MavenPublication;
 import org.gradle.api.publish.maven.plugins.MavenPublishPlugin;
+import org.gradle.api.publish.maven.tasks.AbstractPublishToMaven;
+import org.gradle.api.publish.maven.tasks.PublishToMavenRepository;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.TaskProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import javax.inject.Inject;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 import static org.codehaus.groovy.runtime.StringGroovyMethods.capitalize;
 
 @SuppressWarnings("unused")
 public class TinkerMavenPublishPlugin implements Plugin<Project> {
+    private final List<PublishedVariant> publishedVariants = new ArrayList<>();
+    private final SoftwareComponentFactory softwareComponentFactory;
+    private ModuleMetadataPublications moduleMetadataPublications;
+    private ResguardOutputs resguardOutputs;
+    private static final String PUBLISH_TO_S3_TASK_NAME = "publishAllPublicationsToS3";
+
+    @Inject
+    public TinkerMavenPublishPlugin(SoftwareComponentFactory softwareComponentFactory) {
+        this.softwareComponentFactory = softwareComponentFactory;
+    }
+
     private static void withApplicationVariants(Project project, Action<? super ApplicationVariant> action) {
         project.getPlugins().withId("com.android.application", plugin -> {
             final AppPlugin appPlugin = (AppPlugin) plugin;
@@ -72,12 +105,14 @@ public class TinkerMavenPublishPlugin implements Plugin<Project> {
                 .create(TinkerMavenResolverExtension.class, "tinkerResolver",
                         DefaultTinkerMavenResolverExtension.class, project);
 
+        moduleMetadataPublications = new ModuleMetadataPublications(project, softwareComponentFactory);
+        resguardOutputs = new ResguardOutputs(project);
         configurePublishing(project, publishExtension);
 
         Resolver resolver = ((ExtensionAware) resolverExtension).getExtensions().create(Resolver.class, "api", DefaultResolver.class,
                 project, resolverExtension, publishExtension);
 
-        project.getPluginManager().withPlugin("com.tencent.tinker.patch", appliedPlugin -> project.afterEvaluate(ignored -> configureResolvingForTinker(project, resolver, resolverExtension)));
+        project.getPluginManager().withPlugin("com.tencent.tinker.patch", appliedPlugin -> project.afterEvaluate(ignored -> configureResolvingForTinker(project, resolver, resolverExtension, publishExtension)));
     }
 
     private void configurePublishing(Project project, TinkerMavenPublishExtensionInternal publishExtension) {
@@ -85,142 +120,294 @@ public class TinkerMavenPublishPlugin implements Plugin<Project> {
             final PublishingExtension publishing = project.getExtensions().getByType(PublishingExtension.class);
 
             final MavenVariantArtifactsLocator locator = publishExtension.getLocatorFactory().createMavenLocator(variant, publishExtension);
-            variant.getOutputs().all(baseVariantOutput -> configuringAndroidArtifacts(project, variant, publishing, locator, baseVariantOutput));
+            variant.getOutputs().all(baseVariantOutput -> configuringAndroidArtifacts(project, variant, publishing, locator, baseVariantOutput, publishExtension));
+        });
+        configureIndexPublishing(project, publishExtension);
+        project.getTasks().register(PUBLISH_TO_S3_TASK_NAME, task -> {
+            task.setGroup("publishing");
+            task.setDescription("Publishes all base versions to the S3 repository of tinkerPublish.");
         });
     }
 
-    private File findResguardApk(Logger logger, BaseVariantOutput baseVariantOutput) {
-        final File apk = baseVariantOutput.getOutputFile();
-        final String basename = apk.getName().split("\\.(?=[^.]+$)")[0];
-
-        final File resguardDir = new File(apk.getParentFile(), "AndResGuard_" + basename);
-        final File primaryApk = new File(resguardDir, basename + "_aligned_unsigned" + ".apk");
-        if (primaryApk.exists()) {
-            logger.quiet("we found resguard apk: " + primaryApk);
-            return primaryApk;
-        }
-
-
-        final File[] files = resguardDir.listFiles();
-        if (files == null) {
-            return null;
-        }
-        for (File maybeUsedApk : files) {
-            if (maybeUsedApk.isFile() && maybeUsedApk.getName().endsWith(".apk")) {
-                if (maybeUsedApk.getName().startsWith(basename)) {
-                    logger.warn("we found dir " + resguardDir + ", but the primary apk not found:" + primaryApk + ", use: " + maybeUsedApk);
-                    return maybeUsedApk;
+    private void configureIndexPublishing(Project project, TinkerMavenPublishExtensionInternal publishExtension) {
+        final PublishingExtension publishing = project.getExtensions().getByType(PublishingExtension.class);
+        publishing.getRepositories().withType(MavenArtifactRepository.class).all(repository ->
+                project.getTasks().register(UpdateBaseVersionIndexTask.getTaskName(repository.getName()), UpdateBaseVersionIndexTask.class, task -> {
+                    task.setDescription("Updates the base version index of the variants published to '" + repository.getName() + "'.");
+                    task.setRepository(repository);
+                    task.setPublishedVariants(publishedVariants);
+                    task.onlyIf(ignored -> publishExtension.isPublishIndex());
+                }));
+        publishing.getRepositories().withType(MavenArtifactRepository.class).all(repository ->
+                project.getTasks().register(PublishAllVariantsTask.getTaskName(repository.getName()), PublishAllVariantsTask.class, task -> {
+                    task.setGroup("publishing");
+                    task.setDescription("Publishes the base versions of all variants to '" + repository.getName() + "' and updates its metadata once.");
+                    task.setRepository(repository);
+                    task.setPublishedVariants(publishedVariants);
+                    task.getPublishIndex().set(project.provider(publishExtension::isPublishIndex));
+                    task.dependsOn((Callable<List<TaskProvider<PrepareTinkerArtifactsTask>>>) () -> publishedVariants.stream()
+                            .map(PublishedVariant::getPrepareTask).collect(Collectors.toList()));
+                    task.onlyIf(ignored -> !publishedVariants.isEmpty());
+                }));
+
+        project.getTasks().withType(PublishToMavenRepository.class).configureEach(publishTask -> {
+            if (!publishExtension.isPublishIndex() && !publishExtension.isDeduplicate() && !publishExtension.isChunkApk()) {
+                return;
+            }
+            for (MavenArtifactRepository repository : publishing.getRepositories().withType(MavenArtifactRepository.class)) {
+                for (PublishedVariant published : publishedVariants) {
+                    if (!publishTask.getName().equals(published.getPublishTaskName(repository.getName()))) {
+                        continue;
+                    }
+                    if (publishExtension.isPublishIndex()) {
+                        publishTask.finalizedBy(UpdateBaseVersionIndexTask.getTaskName(repository.getName()));
+                    }
+                    if (publishExtension.isDeduplicate() || publishExtension.isChunkApk()) {
+                        publishTask.doFirst(new BlobPublisher(repository, published));
+                    }
                 }
             }
-        }
-        logger.warn("we found dir " + resguardDir + ", but no apk found");
-        return null;
+        });
     }
 
     private void configuringAndroidArtifacts(Project project, ApplicationVariant variant,
                                              PublishingExtension publishing, MavenVariantArtifactsLocator locator,
-                                             BaseVariantOutput baseVariantOutput) {
+                                             BaseVariantOutput baseVariantOutput, TinkerMavenPublishExtensionInternal publishExtension) {
         final File originApk = baseVariantOutput.getOutputFile();
-
-        final Provider<File> apkArtifactFileProvider = project.provider(() -> {
-            final File resguardApk = findResguardApk(project.getLogger(), baseVariantOutput);
-            return Optional.ofNullable(resguardApk).orElse(originApk);
-        });
+        final Provider<File> apkArtifactFileProvider = resguardOutputs.getApk(variant.getName(), baseVariantOutput);
 
         final File mapping = computeMappingFile(project, variant, originApk);
         final File symbol = computeSymbolFile(project, variant, originApk);
 
-        publishing.getPublications().create("App" + capitalize((CharSequence) variant.getName()), MavenPublication.class, publication -> {
-            publication.setGroupId(locator.getGroupId());
-            publication.setArtifactId(locator.getArtifactId());
-            publication.setVersion(locator.getVersion());
-
-            publication.artifact(apkArtifactFileProvider, artifact -> {
-                artifact.setExtension(locator.getExtension(ArtifactType.APK));
-                artifact.setClassifier(locator.getClassifier(ArtifactType.APK));
-
-                project.getGradle().getTaskGraph().whenReady(taskExecutionGraph -> {
-                    final Task resguardTask = project.getTasks().findByName("resguard" + StringGroovyMethods.capitalize((CharSequence) variant.getName()));
-                    if (resguardTask != null) {
-                        if (taskExecutionGraph.hasTask(resguardTask)) {
-                            artifact.builtBy(resguardTask);
-                        } else {
-                            project.getLogger().quiet("TinkerManvePublishPluign: we found resguard task but it's not in the task grapth," +
-                                    " it's normal if you build project without resguard tasks");
-                        }
-                    } else {
-                        project.getLogger().quiet("TinkerManvePublishPluign: not find resguard task, it's normal if you didn't apply resguard plugin");
+        // every abi split is published on its own, the universal apk keeps the names of a variant without splits
+        final String abi = TinkerAttributes.getAbi(baseVariantOutput);
+        final MavenVariantArtifactsLocator outputLocator = locator.withAbi(abi);
+        final String outputName = variant.getName() + (TinkerAttributes.UNIVERSAL_ABI.equals(abi) ? "" : capitalize((CharSequence) abi));
+        final String variantName = capitalize((CharSequence) outputName);
+        final String prepareTaskName = "tinkerPrepare" + variantName + "Publication";
+        if (project.getTasks().getNames().contains(prepareTaskName)) {
+            throw new GradleException("TinkerMavenPublish: '" + variant.getName() + "' has several outputs for abi " + abi
+                    + ", only abi splits are supported");
+        }
+        final TaskProvider<PrepareTinkerArtifactsTask> prepareTask = project.getTasks().register(prepareTaskName,
+                PrepareTinkerArtifactsTask.class, task -> {
+                    task.setDescription("Prepares the apk, mapping.txt and R.txt of '" + outputName + "' for publishing.");
+                    task.getApk().fileProvider(apkArtifactFileProvider);
+                    if (variant.getBuildType().isMinifyEnabled()) {
+                        task.getMapping().set(mapping);
                     }
+                    task.getSymbol().set(symbol);
+                    task.getOutputDirectory().set(project.getLayout().getBuildDirectory().dir("tinker/publish/" + outputName));
+                    task.getDeduplicate().set(publishExtension.isDeduplicate() && !publishExtension.isModuleMetadata());
+                    task.getChunkApk().set(publishExtension.isChunkApk() && !publishExtension.isModuleMetadata());
+                    task.getWriteChecksums().set(publishExtension.isPublishIndex());
+                    // the variants of module metadata always declare R.txt
+                    task.getRequireSymbol().set(publishExtension.isModuleMetadata());
+
+                    task.dependsOn(variant.getPackageApplicationProvider());
+                    task.dependsOn(resguardOutputs.getTask(variant.getName()));
                 });
+
+        final ModuleMetadataVariantArtifactsLocator moduleMetadataLocator = new ModuleMetadataVariantArtifactsLocator(variant, locator.getGroupId(),
+                locator.getArtifactId(), locator.getBareVersion(), abi);
+        final String publicationName = "App" + variantName;
+
+        final DefaultS3Repository s3 = publishExtension.getS3();
+        if (s3 != null) {
+            final TaskProvider<PublishToS3Task> s3Task = project.getTasks().register("publish" + publicationName + "PublicationToS3", PublishToS3Task.class, task -> {
+                task.setDescription("Publishes the base version of '" + outputName + "' to " + s3.getDisplayName() + ".");
+                task.setRepository(s3);
+                task.setLocator(publishExtension.isModuleMetadata() ? moduleMetadataLocator : outputLocator);
+                task.setPrepareTask(prepareTask);
+            });
+            project.getTasks().named(PUBLISH_TO_S3_TASK_NAME).configure(task -> task.dependsOn(s3Task));
+        }
+
+        if (publishExtension.isModuleMetadata()) {
+            if (publishExtension.isDeduplicate()) {
+                project.getLogger().info("TinkerMavenPublish: deduplicate is ignored for '" + variant.getName() + "' because moduleMetadata = true");
+            }
+            if (publishExtension.isChunkApk()) {
+                project.getLogger().info("TinkerMavenPublish: chunkApk is ignored for '" + variant.getName() + "' because moduleMetadata = true");
+            }
+            moduleMetadataPublications.addVariantOutput(variant, moduleMetadataLocator, prepareTask);
+            return;
+        }
+
+        publishedVariants.add(new PublishedVariant(publicationName, variant.getName(), variant.getFlavorName(),
+                variant.getBuildType().getName(), outputLocator, prepareTask));
+
+        publishing.getPublications().create(publicationName, MavenPublication.class, publication -> {
+            publication.setGroupId(outputLocator.getGroupId());
+            publication.setArtifactId(outputLocator.getArtifactId());
+            publication.setVersion(outputLocator.getVersion());
+
+            publication.artifact(prepareTask.flatMap(task -> task.getPublishedFile(ArtifactType.APK)), artifact -> {
+                artifact.setExtension(outputLocator.getExtension(ArtifactType.APK));
+                artifact.setClassifier(outputLocator.getClassifier(ArtifactType.APK));
+                artifact.builtBy(prepareTask);
             });
             if (variant.getBuildType().isMinifyEnabled()) {
-                publication.artifact(mapping, artifact -> {
-                    artifact.setExtension(locator.getExtension(ArtifactType.MAPPING));
-                    artifact.setClassifier(locator.getClassifier(ArtifactType.MAPPING));
+                publication.artifact(prepareTask.flatMap(task -> task.getPublishedFile(ArtifactType.MAPPING)), artifact -> {
+                    artifact.setExtension(outputLocator.getExtension(ArtifactType.MAPPING));
+                    artifact.setClassifier(outputLocator.getClassifier(ArtifactType.MAPPING));
+                    artifact.builtBy(prepareTask);
                 });
             } else {
                 project.getLogger().info("TinkerMavenPublish: skip publish mapping.txt for '" + variant.getName() + "' because minifyEnabled = false");
             }
-            baseVariantOutput.getProcessResourcesProvider().configure(processAndroidResources -> {
-                processAndroidResources.doLast(task -> {
-                    if (symbol.exists()) {
-                        final MavenArtifact symbolArtifact = publication.artifact(symbol, artifact -> {
-                            artifact.setExtension(locator.getExtension(ArtifactType.SYMBOL));
-                            artifact.setClassifier(locator.getClassifier(ArtifactType.SYMBOL));
-                        });
-                    } else {
-                        project.getLogger().warn("TinkerMavenPublish: skip publish R.txt for '" + variant.getName() + "' because file not exists");
-                    }
-                });
+            final Provider<RegularFile> symbolFile = prepareTask.flatMap(task -> task.getPublishedFile(ArtifactType.SYMBOL));
+            final MavenArtifact symbolArtifact = publication.artifact(symbolFile, artifact -> {
+                artifact.setExtension(outputLocator.getExtension(ArtifactType.SYMBOL));
+                artifact.setClassifier(outputLocator.getClassifier(ArtifactType.SYMBOL));
+                artifact.builtBy(prepareTask);
+            });
+            // whether R.txt exists is only known once the prepare task ran, it warns about a missing one
+            project.getTasks().withType(AbstractPublishToMaven.class).configureEach(publishTask -> {
+                if (publishTask.getName().startsWith("publish" + publicationName + "PublicationTo")) {
+                    publishTask.doFirst(task -> {
+                        if (!symbolFile.get().getAsFile().isFile()) {
+                            publication.getArtifacts().remove(symbolArtifact);
+                        }
+                    });
+                }
             });
         });
     }
 
-    private void configureResolvingForTinker(Project project, Resolver resolver, TinkerMavenResolverExtensionInternal resolverExtension) {
+    private void configureResolvingForTinker(Project project, Resolver resolver, TinkerMavenResolverExtensionInternal resolverExtension,
+                                             TinkerMavenPublishExtensionInternal publishExtension) {
         final TinkerPatchExtension tinkerPatch = project.getExtensions().getByType(TinkerPatchExtension.class);
         final TinkerBuildConfigExtension tinkerBuildConfig = ((ExtensionAware) tinkerPatch).getExtensions().getByType(TinkerBuildConfigExtension.class);
+        final TaskProvider<PlanTinkerResolutionTask> planTask = project.getTasks().register(PlanTinkerResolutionTask.NAME, PlanTinkerResolutionTask.class, task -> {
+            task.setGroup("tinker");
+            task.setDescription("Reports what resolving the base versions would download, without downloading.");
+            task.setResolver((DefaultResolver) resolver);
+            task.getReportFile().set(project.getLayout().getBuildDirectory().file("reports/tinker/resolution-plan.json"));
+        });
         withApplicationVariants(project, variant -> {
             if (!tinkerPatch.isTinkerEnable()) {
                 return;
             }
+            planTask.configure(task -> task.getVariants().add(variant));
 
             final String variantName = capitalize((CharSequence) variant.getName());
+            final ConfigurableFileCollection classes = getClasses(project, variant);
+            final TaskProvider<ResolveTinkerBaseTask> baseTask = project.getTasks().register(ResolveTinkerBaseTask.getTaskName(variant.getName()), ResolveTinkerBaseTask.class, task -> {
+                task.setDescription("Resolves the base apk, mapping.txt and R.txt of '" + variant.getName() + "' for the tinker tasks.");
+                task.setResolver(resolver);
+                task.setVariant(variant);
+                task.getIgnoreMapping().set(resolverExtension.isIgnoreMapping());
+                task.getPruneMapping().set(resolverExtension.isPruneMapping());
+                task.getUnpackBase().set(resolverExtension.isUnpackBase());
+                if (resolverExtension.isPruneMapping()) {
+                    task.getClasses().from(classes);
+                    task.dependsOn(classes);
+                }
+                task.getCacheDirectory().set(new File(project.getGradle().getGradleUserHomeDir(), "caches/tinker-maven-publish"));
+                task.getBaseFile().set(project.getLayout().getBuildDirectory().file("intermediates/tinker/base/" + variant.getName() + "/base.properties"));
+            });
+            final Provider<RegularFile> baseFile = baseTask.flatMap(ResolveTinkerBaseTask::getBaseFile);
+            final Provider<File> newApk = resguardOutputs.getApk(variant.getName(), MavenVariantArtifactsLocator.getPatchedOutput(variant));
+            final TaskProvider<CheckTinkerPatchTask> checkTask = project.getTasks().register(CheckTinkerPatchTask.getTaskName(variant.getName()), CheckTinkerPatchTask.class, task -> {
+                task.setGroup("tinker");
+                task.setDescription("Reports the entries of '" + variant.getName() + "' that changed since the base apk.");
+                task.getBaseFile().set(baseFile);
+                task.getApk().fileProvider(newApk);
+                task.getReportFile().set(project.getLayout().getBuildDirectory().file("reports/tinker/" + variant.getName() + "/patch-check.json"));
+                task.getDexPatterns().set(project.provider(() -> CheckTinkerPatchTask.getTinkerPatterns(tinkerPatch, "dex", "pattern")));
+                task.getLibPatterns().set(project.provider(() -> CheckTinkerPatchTask.getTinkerPatterns(tinkerPatch, "lib", "pattern")));
+                task.getResPatterns().set(project.provider(() -> CheckTinkerPatchTask.getTinkerPatterns(tinkerPatch, "res", "pattern")));
+                task.getResIgnoreChange().set(project.provider(() -> CheckTinkerPatchTask.getTinkerPatterns(tinkerPatch, "res", "ignoreChange")));
+                task.dependsOn(variant.getPackageApplicationProvider());
+                task.dependsOn(resguardOutputs.getTask(variant.getName()));
+            });
+            final Spec<Task> patchable = ignored -> CheckTinkerPatchTask.isPatchable(checkTask.get().getReportFile().get().getAsFile());
+
+            // the tinker tasks only read the shared extensions, so each of them gets the base of its own variant while
+            // it runs, keeping what the build script configured for what the base lacks
             task(project, "tinkerPatch" + variantName, TinkerPatchSchemaTask.class, tinkerPatchSchemaTask -> {
-                tinkerPatchSchemaTask.doFirst(ignored -> tinkerPatch.setOldApk(Objects.requireNonNull(resolver.resolveApk(variant),
-                        "Cannot find base apk file in Maven repository").getAbsolutePath()));
+                tinkerPatchSchemaTask.dependsOn(baseTask);
+                if (resolverExtension.isSkipUnchangedPatch()) {
+                    tinkerPatchSchemaTask.dependsOn(checkTask);
+                    tinkerPatchSchemaTask.onlyIf(patchable);
+                }
+                if (resolverExtension.isCachePatch()) {
+                    TinkerPatchCaching.configure(tinkerPatchSchemaTask, baseFile, newApk, tinkerPatch, variant.getSigningConfig(),
+                            getPatchDirectory(project, variant.getName()),
+                            project.provider(resolverExtension::isCachePatch));
+                }
+                final ApplyTinkerBaseAction applyBase = new ApplyTinkerBaseAction(baseFile)
+                        .set(tinkerPatch::getOldApk, tinkerPatch::setOldApk, base -> Objects.requireNonNull(base.getOldApk(),
+                                "Cannot find base apk file in Maven repository").getAbsolutePath());
+                tinkerPatchSchemaTask.doFirst(applyBase);
+                tinkerPatchSchemaTask.doLast(applyBase.restore());
             });
             maybeTask(project, "tinkerProcess" + variantName + "Proguard", TinkerProguardConfigTask.class, tinkerProguardConfigTask -> {
-                tinkerProguardConfigTask.doFirst(task -> {
-                    if (resolverExtension.isIgnoreMapping()) {
-                        project.getLogger().warn("skip resolving the mapping.txt file because ignoreMapping = true");
-                        return;
-                    }
-
-                    File mapping = resolver.resolveMapping(variant);
-                    if (mapping == null) {
-                        project.getLogger().warn("Can not find the mapping.txt file in Maven Repository, continue build without mapping file.");
-                        return;
-                    }
-
-                    tinkerBuildConfig.setApplyMapping(mapping.getAbsolutePath());
-                    tinkerBuildConfig.setUsingResourceMapping(true);
-                });
+                tinkerProguardConfigTask.getInputs().file(baseFile).withPropertyName("tinkerBase");
+                final ApplyTinkerBaseAction applyBase = new ApplyTinkerBaseAction(baseFile)
+                        .set(tinkerBuildConfig::getApplyMapping, tinkerBuildConfig::setApplyMapping,
+                                base -> base.getApplyMapping() == null ? null : base.getApplyMapping().getAbsolutePath())
+                        .set(tinkerBuildConfig::isUsingResourceMapping, tinkerBuildConfig::setUsingResourceMapping,
+                                base -> base.getApplyMapping() == null ? null : true);
+                tinkerProguardConfigTask.doFirst(applyBase);
+                tinkerProguardConfigTask.doLast(applyBase.restore());
             });
             task(project, "tinkerProcess" + variantName + "ResourceId", TinkerResourceIdTask.class, tinkerResourceIdTask -> {
-                tinkerResourceIdTask.doFirst(task -> {
-                    final File symbol = resolver.resolveSymbol(variant);
-                    if (symbol == null) {
-                        project.getLogger().warn("Can not find the R.txt file in Maven Repository, continue build without R file.");
-                        return;
-                    }
-
-                    tinkerBuildConfig.setApplyResourceMapping(symbol.getAbsolutePath());
-                });
+                tinkerResourceIdTask.getInputs().file(baseFile).withPropertyName("tinkerBase");
+                final ApplyTinkerBaseAction applyBase = new ApplyTinkerBaseAction(baseFile)
+                        .set(tinkerBuildConfig::getApplyResourceMapping, tinkerBuildConfig::setApplyResourceMapping,
+                                base -> base.getApplyResourceMapping() == null ? null : base.getApplyResourceMapping().getAbsolutePath());
+                tinkerResourceIdTask.doFirst(applyBase);
+                tinkerResourceIdTask.doLast(applyBase.restore());
             });
+            configurePatchPublishing(project, variant, resolver, resolverExtension, publishExtension);
+            if (resolverExtension.isSkipUnchangedPatch()) {
+                // tinkerPatch was skipped, whatever is in its output directory is an older patch
+                project.getTasks().named(PublishTinkerPatchTask.getTaskName(variant.getName())).configure(task -> task.onlyIf(patchable));
+            }
         });
 
     }
 
+    // the classes going into minification: the variant's own and those of its runtime dependencies
+    private ConfigurableFileCollection getClasses(Project project, ApplicationVariant variant) {
+        final String variantName = capitalize((CharSequence) variant.getName());
+        final ConfigurableFileCollection classes = project.files();
+        classes.from(variant.getJavaCompileProvider());
+        // looked up by name when the files are queried, the kotlin plugin may be applied after this one
+        final String kotlinTaskName = "compile" + variantName + "Kotlin";
+        classes.from((Callable<Object>) () -> project.getTasks().getNames().contains(kotlinTaskName)
+                ? project.getTasks().named(kotlinTaskName) : Collections.emptyList());
+        classes.from(variant.getRuntimeConfiguration().getIncoming().artifactView(view -> view.attributes(attributes ->
+                attributes.attribute(Attribute.of("artifactType", String.class), "android-classes"))).getFiles());
+        return classes;
+    }
+
+    private void configurePatchPublishing(Project project, ApplicationVariant variant, Resolver resolver,
+                                          TinkerMavenResolverExtensionInternal resolverExtension, TinkerMavenPublishExtensionInternal publishExtension) {
+        final PublishingExtension publishing = project.getExtensions().getByType(PublishingExtension.class);
+        project.getTasks().register(PublishTinkerPatchTask.getTaskName(variant.getName()), PublishTinkerPatchTask.class, task -> {
+            task.setGroup("publishing");
+            task.setDescription("Publishes the tinker patch of '" + variant.getName() + "' next to its base version.");
+            task.setVariantName(variant.getName());
+            task.setLocator(publishExtension.getLocatorFactory().createMavenLocator(variant, publishExtension, resolverExtension.getVersion()));
+            task.setRepositories(publishing.getRepositories().withType(MavenArtifactRepository.class));
+            task.setS3(publishExtension.getS3());
+            // the published base, tinkerPatch may have been given an unpacked copy of it
+            task.getBaseApk().fileProvider(project.provider(() -> Objects.requireNonNull(resolver.resolveApk(variant),
+                    "Cannot find base apk file in Maven repository")));
+            task.getPatchDirectory().set(getPatchDirectory(project, variant.getName()));
+            task.dependsOn("tinkerPatch" + capitalize((CharSequence) variant.getName()));
+        });
+    }
+
+    // where tinkerPatch writes the patch, the tinker plugin names the directory after the dirName of the variant
+    private Provider<Directory> getPatchDirectory(Project project, String variantName) {
+        final String taskName = "tinkerPatch" + capitalize((CharSequence) variantName);
+        return project.getLayout().dir(project.provider(() -> project.file(project.getTasks().named(taskName).get().property("outputFolder"))));
+    }
+
     @NotNull
     private <T extends Task> T task(Project project, String name, Class<T> type, Action<? super T> action) {
         return project.getTasks().withType(type).getByName(name, action);
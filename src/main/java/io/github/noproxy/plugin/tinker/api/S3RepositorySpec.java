@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.api;
+
+/**
+ * An S3-compatible bucket holding base versions in the same layout as a maven repository.
+ */
+public interface S3RepositorySpec {
+    void setEndpoint(String endpoint);
+
+    void setBucket(String bucket);
+
+    /**
+     * Key prefix of the repository root inside the bucket, default empty.
+     */
+    void setPrefix(String prefix);
+
+    void setRegion(String region);
+
+    /**
+     * Default is the AWS_ACCESS_KEY_ID environment variable.
+     */
+    void setAccessKey(String accessKey);
+
+    /**
+     * Default is the AWS_SECRET_ACCESS_KEY environment variable.
+     */
+    void setSecretKey(String secretKey);
+
+    /**
+     * Address the bucket as {@code endpoint/bucket} instead of {@code bucket.endpoint}, default true.
+     */
+    void setPathStyle(boolean pathStyle);
+
+    /**
+     * Files larger than this are transferred in parts of this size, default 16 MiB, at least 5 MiB. Conditional
+     * uploads, such as the updates of the base version index, are always sent in one request.
+     */
+    void setPartSize(long partSize);
+
+    /**
+     * Number of parts transferred at the same time, default 4.
+     */
+    void setParallelism(int parallelism);
+}
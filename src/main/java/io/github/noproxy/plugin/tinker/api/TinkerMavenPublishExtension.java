@@ -16,6 +16,7 @@
 
 package io.github.noproxy.plugin.tinker.api;
 
+import org.gradle.api.Action;
 import org.jetbrains.annotations.Nullable;
 
 public interface TinkerMavenPublishExtension {
@@ -26,4 +27,34 @@ public interface TinkerMavenPublishExtension {
     void setGroupId(String groupId);
 
     void setArtifactId(String artifactId);
+
+    /**
+     * Maintain a tinker-index.json next to maven-metadata.xml, which lists every published base version with its
+     * artifacts, sizes and checksums.
+     */
+    void setPublishIndex(boolean publishIndex);
+
+    /**
+     * Publish all variants under the bare version as Gradle Module Metadata variants, selected by attributes,
+     * instead of one version per flavor and buildType.
+     */
+    void setModuleMetadata(boolean moduleMetadata);
+
+    /**
+     * Store mapping.txt and R.txt once per content and publish small pointers to them instead, so identical files of
+     * different flavors are uploaded and stored only once. Not supported with module metadata.
+     */
+    void setDeduplicate(boolean deduplicate);
+
+    /**
+     * Split the apk into content-defined chunks stored once per content and publish the list of its chunks instead,
+     * so bases of different versions and flavors only store and transfer the bytes they don't share. Not supported
+     * with module metadata.
+     */
+    void setChunkApk(boolean chunkApk);
+
+    /**
+     * Also upload the base artifacts to an S3-compatible bucket, with the publishAllPublicationsToS3 task.
+     */
+    void s3(Action<? super S3RepositorySpec> action);
 }
@@ -16,11 +16,20 @@
 
 package io.github.noproxy.plugin.tinker.api;
 
+import org.gradle.api.Action;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 
+/**
+ * Where the base version of the tinker tasks is resolved from.
+ * <p>
+ * The tinker tasks read {@code tinkerPatch.oldApk} and the {@code applyMapping}, {@code applyResourceMapping} and
+ * {@code usingResourceMapping} of {@code tinkerPatch.buildConfig} when they run, and have no settings per variant.
+ * The resolved base of a variant is set in these shared properties while a tinker task of the variant runs, and the
+ * values of the build script are set back once it's done.
+ */
 public interface TinkerMavenResolverExtension {
     void setLocatorFactory(@Nullable VariantArtifactsLocatorFactory factory);
 
@@ -33,4 +42,73 @@ public interface TinkerMavenResolverExtension {
     void setSymbol(@Nullable Object file);
 
     void ignoreMapping(boolean ignore);
+
+    /**
+     * Consult the tinker-index.json of the repositories before resolving, so artifacts that were never published
+     * are not requested at all.
+     */
+    void setUseIndex(boolean useIndex);
+
+    /**
+     * Consult the tinker-index.json of this project repository only. By default it's consulted in the project
+     * repositories that are also {@code publishing} repositories, where the base versions are published to.
+     */
+    void indexRepository(@NotNull String name);
+
+    /**
+     * Resolve base versions published with {@link TinkerMavenPublishExtension#setModuleMetadata(boolean)}.
+     */
+    void setModuleMetadata(boolean moduleMetadata);
+
+    /**
+     * Download the base artifacts from this mirror instead of the project repositories. With several mirrors the
+     * requests are hedged: a slow mirror is raced by the next one after the hedge delay.
+     */
+    void mirror(@NotNull Object url);
+
+    void setHedgeDelay(long millis);
+
+    void setMirrorTimeout(long millis);
+
+    /**
+     * Remember missing mapping.txt and R.txt files for this long across builds, 0 disables it. The entries are
+     * dropped earlier when the base version index changes.
+     */
+    void setNegativeCacheTtl(long millis);
+
+    /**
+     * Drop the classes that no longer exist from the base mapping.txt before it's applied, which makes obfuscation
+     * of patch builds with large mappings much faster.
+     */
+    void setPruneMapping(boolean pruneMapping);
+
+    /**
+     * Give tinkerPatch an uncompressed copy of the base apk, prepared once per base and cached by its checksum, so
+     * Tinker doesn't inflate the whole base again on every patch build.
+     */
+    void setUnpackBase(boolean unpackBase);
+
+    /**
+     * Keep the resolved base artifacts in memory of the Gradle daemon, so following builds in the same daemon skip
+     * resolving them as long as the files are unchanged. {@code --refresh-dependencies} bypasses it.
+     */
+    void setDaemonCache(boolean daemonCache);
+
+    /**
+     * Skip tinkerPatch and publishTinkerPatch when the new apk has no changed dex, resource or native entries
+     * compared to the base apk, as reported by {@code tinkerCheck<Variant>Patch}. Entries count as dex, resource or
+     * native if they match the {@code dex}, {@code res} or {@code lib} patterns of {@code tinkerPatch}.
+     */
+    void setSkipUnchangedPatch(boolean skipUnchangedPatch);
+
+    /**
+     * Store the output of tinkerPatch in the Gradle build cache, keyed by the contents of the base apk, mapping.txt,
+     * R.txt and new apk and the tinkerPatch settings. Takes effect with {@code --build-cache}.
+     */
+    void setCachePatch(boolean cachePatch);
+
+    /**
+     * Resolve base versions from an S3-compatible bucket instead of the project repositories.
+     */
+    void s3(Action<? super S3RepositorySpec> action);
 }
@@ -17,6 +17,7 @@
 package io.github.noproxy.plugin.tinker.api;
 
 import io.github.noproxy.plugin.tinker.internal.ArtifactType;
+import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.Dependency;
 import org.gradle.api.artifacts.ResolvedArtifact;
 import org.gradle.api.specs.Spec;
@@ -34,4 +35,7 @@ public interface VariantArtifactsLocator {
 
     @NotNull
     Predicate<ResolvedArtifact> getResolvedArtifactSpec(ArtifactType type);
+
+    default void configureClasspath(@NotNull Configuration classpath, ArtifactType type) {
+    }
 }
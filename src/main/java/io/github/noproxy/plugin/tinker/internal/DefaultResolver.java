@@ -21,13 +21,37 @@ import com.google.common.base.Preconditions;
 import io.github.noproxy.plugin.tinker.api.Resolver;
 import io.github.noproxy.plugin.tinker.api.VariantArtifactsLocator;
 import io.github.noproxy.plugin.tinker.api.VariantArtifactsLocatorFactory;
+import io.github.noproxy.plugin.tinker.internal.blob.BlobResolver;
+import io.github.noproxy.plugin.tinker.internal.cache.DaemonCache;
+import io.github.noproxy.plugin.tinker.internal.cache.NegativeResultCache;
+import io.github.noproxy.plugin.tinker.internal.index.BaseVersionIndexCache;
+import io.github.noproxy.plugin.tinker.internal.index.CachedBaseVersionIndex;
+import io.github.noproxy.plugin.tinker.internal.transport.ArtifactDownloader;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransport;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransports;
+import io.github.noproxy.plugin.tinker.internal.transport.ResourceMetadata;
+import io.github.noproxy.plugin.tinker.internal.transport.SequentialDownloader;
 import org.gradle.api.Action;
 import org.gradle.api.Project;
+import org.gradle.api.UncheckedIOException;
 import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.LenientConfiguration;
 import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.publish.PublishingExtension;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -35,14 +59,15 @@ import java.util.stream.Collectors;
 import static org.codehaus.groovy.runtime.StringGroovyMethods.capitalize;
 
 public class DefaultResolver implements Resolver {
-    private final VariantArtifactsLocatorFactory locatorFactory;
     private final TinkerMavenPublishExtensionInternal publishExtension;
     private final Project project;
     private final TinkerMavenResolverExtensionInternal resolverExtension;
+    private BaseVersionIndexCache indexCache;
+    private NegativeResultCache negativeResultCache;
+    private BlobResolver blobResolver;
 
     public DefaultResolver(Project project, TinkerMavenResolverExtensionInternal resolverExtension,
                            TinkerMavenPublishExtensionInternal publishExtension) {
-        this.locatorFactory = resolverExtension.getLocatorFactory();
         this.publishExtension = publishExtension;
         this.resolverExtension = resolverExtension;
         this.project = project;
@@ -57,28 +82,262 @@ public class DefaultResolver implements Resolver {
         return collections.stream().findFirst().get();
     }
 
+    private BaseVersionIndexCache getIndexCache() {
+        if (indexCache == null) {
+            final File cacheDir = new File(project.getGradle().getGradleUserHomeDir(), "caches/tinker-maven-publish/index");
+            indexCache = new BaseVersionIndexCache(cacheDir, project.getGradle().getStartParameter().isOffline(), project.getLogger());
+        }
+        return indexCache;
+    }
+
+    private NegativeResultCache getNegativeResultCache() {
+        if (negativeResultCache == null) {
+            final long ttl = project.getGradle().getStartParameter().isRefreshDependencies() ? 0 : resolverExtension.getNegativeCacheTtl();
+            negativeResultCache = new NegativeResultCache(new File(project.getGradle().getGradleUserHomeDir(),
+                    "caches/tinker-maven-publish/negative/missing.properties"), ttl);
+        }
+        return negativeResultCache;
+    }
+
+    private BlobResolver getBlobResolver() {
+        if (blobResolver == null) {
+            blobResolver = new BlobResolver(new File(project.getGradle().getGradleUserHomeDir(), "caches/tinker-maven-publish/blobs"), project.getLogger());
+        }
+        return blobResolver;
+    }
+
+    // blobs are fetched from where the pointer came from: the downloader of the locator, or the project repositories in order
+    private File followPointer(VariantArtifactsLocator resolveLocator, File file) {
+        final MavenVariantArtifactsLocator mavenLocator = getMavenLocator(resolveLocator);
+        if (mavenLocator == null) {
+            return file;
+        }
+
+        final ArtifactDownloader downloader = resolveLocator instanceof DownloadingVariantArtifactsLocator
+                ? ((DownloadingVariantArtifactsLocator) resolveLocator).getDownloader()
+                : new SequentialDownloader(getRepositoryTransports());
+
+        try {
+            return getBlobResolver().resolve(file, mavenLocator.getModulePath(), downloader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to resolve the content of " + file, e);
+        }
+    }
+
+    @Nullable
+    private static MavenVariantArtifactsLocator getMavenLocator(VariantArtifactsLocator resolveLocator) {
+        if (resolveLocator instanceof DownloadingVariantArtifactsLocator) {
+            return ((DownloadingVariantArtifactsLocator) resolveLocator).getLocator();
+        }
+        if (resolveLocator instanceof MavenVariantArtifactsLocator) {
+            return (MavenVariantArtifactsLocator) resolveLocator;
+        }
+        return null;
+    }
+
+    // repositories with an unsupported protocol are left out, Gradle still resolves from them
+    private List<RepositoryTransport> getRepositoryTransports() {
+        final List<RepositoryTransport> transports = new ArrayList<>();
+        for (MavenArtifactRepository repository : project.getRepositories().withType(MavenArtifactRepository.class)) {
+            final RepositoryTransport transport = RepositoryTransports.create(repository);
+            if (transport != null) {
+                transports.add(transport);
+            }
+        }
+        return transports;
+    }
+
+    // the index only exists where the base is published, asking google() or mavenCentral() for it costs a request per build
+    private List<RepositoryTransport> getIndexTransports() {
+        final Set<String> names = resolverExtension.getIndexRepositories();
+        final Set<URI> published = new HashSet<>();
+        final PublishingExtension publishing = project.getExtensions().findByType(PublishingExtension.class);
+        if (names.isEmpty() && publishing != null) {
+            publishing.getRepositories().withType(MavenArtifactRepository.class).forEach(repository -> published.add(repository.getUrl()));
+        }
+
+        final List<RepositoryTransport> transports = new ArrayList<>();
+        for (MavenArtifactRepository repository : project.getRepositories().withType(MavenArtifactRepository.class)) {
+            if (names.contains(repository.getName()) || published.contains(repository.getUrl())) {
+                final RepositoryTransport transport = RepositoryTransports.create(repository);
+                if (transport != null) {
+                    transports.add(transport);
+                }
+            }
+        }
+        return transports;
+    }
+
+    // a repository without an index could hold any version, so the indexes only count if all of them have one
+    private List<CachedBaseVersionIndex> getIndexes(MavenVariantArtifactsLocator mavenLocator) {
+        final List<CachedBaseVersionIndex> indexes = new ArrayList<>();
+        if (!resolverExtension.isUseIndex() || !mavenLocator.isIndexed()) {
+            return indexes;
+        }
+
+        for (RepositoryTransport transport : getIndexTransports()) {
+            final CachedBaseVersionIndex index = getIndexCache().get(transport, mavenLocator.getModulePath());
+            if (index == null) {
+                return Collections.emptyList();
+            }
+            indexes.add(index);
+        }
+        return indexes;
+    }
+
+    // a negative result only holds for the same set of repositories and the same index content
+    private String getNegativeCacheKey(MavenVariantArtifactsLocator mavenLocator, ArtifactType type) {
+        final StringBuilder repositories = new StringBuilder();
+        project.getRepositories().withType(MavenArtifactRepository.class).forEach(repository -> repositories.append(repository.getUrl()).append('\n'));
+        resolverExtension.getMirrors().forEach(mirror -> repositories.append(mirror).append('\n'));
+        final DefaultS3Repository s3 = resolverExtension.getS3();
+        if (s3 != null) {
+            repositories.append(s3.getDisplayName()).append('\n');
+        }
+        final String repositoriesHash = Checksums.toHex(Checksums.newSha256().digest(repositories.toString().getBytes(StandardCharsets.UTF_8)));
+        return mavenLocator.getArtifactPath(type) + "@" + repositoriesHash.substring(0, 16);
+    }
+
+    @Nullable
+    private String getIndexFingerprint(MavenVariantArtifactsLocator mavenLocator) {
+        final List<CachedBaseVersionIndex> indexes = getIndexes(mavenLocator);
+        if (indexes.isEmpty()) {
+            return null;
+        }
+        return indexes.stream().map(CachedBaseVersionIndex::getChecksum).collect(Collectors.joining("+"));
+    }
+
+    private boolean isKnownMissing(VariantArtifactsLocator resolveLocator, ArtifactType type) {
+        final MavenVariantArtifactsLocator mavenLocator = getMavenLocator(resolveLocator);
+        if (mavenLocator == null) {
+            return false;
+        }
+
+        // an index only rules out artifacts of a version it lists, or versions it doesn't list if it was complete, and only
+        // if it was revalidated in this build: versions published to S3, with module metadata or without publishIndex are
+        // never listed, and a stale copy may predate the publish
+        final String version = mavenLocator.getVersion();
+        final List<CachedBaseVersionIndex> indexes = getIndexes(mavenLocator);
+        if (!indexes.isEmpty() && indexes.stream().allMatch(CachedBaseVersionIndex::isFresh)
+                && indexes.stream().noneMatch(index -> index.contains(version, type))) {
+            if (indexes.stream().anyMatch(index -> index.containsVersion(version))) {
+                project.getLogger().info("TinkerMavenPublish: skip resolving " + mavenLocator.getArtifactPath(type) + ", it's not in the base version index");
+                return true;
+            }
+            if (indexes.stream().allMatch(CachedBaseVersionIndex::isComplete)) {
+                project.getLogger().info("TinkerMavenPublish: skip resolving " + mavenLocator.getArtifactPath(type) + ", version "
+                        + version + " is not in the complete base version index");
+                return true;
+            }
+        }
+
+        if (type != ArtifactType.APK && getNegativeResultCache().isMissing(getNegativeCacheKey(mavenLocator, type), getIndexFingerprint(mavenLocator))) {
+            project.getLogger().info("TinkerMavenPublish: skip resolving " + mavenLocator.getArtifactPath(type) + ", it was missing in a previous build");
+            return true;
+        }
+        return false;
+    }
+
+    // a resolved file is only reused for the same repositories and index content, and never with --refresh-dependencies
+    @Nullable
+    private String getDaemonCacheKey(VariantArtifactsLocator resolveLocator, ArtifactType type) {
+        final MavenVariantArtifactsLocator mavenLocator = getMavenLocator(resolveLocator);
+        if (!resolverExtension.isDaemonCache() || mavenLocator == null || project.getGradle().getStartParameter().isRefreshDependencies()) {
+            return null;
+        }
+
+        final String fingerprint = getIndexFingerprint(mavenLocator);
+        return project.getPath() + ":" + getNegativeCacheKey(mavenLocator, type) + (fingerprint == null ? "" : "#" + fingerprint);
+    }
+
+    @Nullable
+    private File getResolved(@Nullable String daemonCacheKey) {
+        final File resolved = daemonCacheKey == null ? null : DaemonCache.get().getResolved(daemonCacheKey);
+        if (resolved != null) {
+            project.getLogger().info("TinkerMavenPublish: reuse " + resolved + " resolved by a previous build of this daemon");
+        }
+        return resolved;
+    }
+
+    private File rememberResolved(@Nullable String daemonCacheKey, File resolved) {
+        if (daemonCacheKey != null) {
+            DaemonCache.get().putResolved(daemonCacheKey, resolved);
+        }
+        return resolved;
+    }
+
+    private void recordResult(VariantArtifactsLocator resolveLocator, ArtifactType type, boolean found) {
+        final MavenVariantArtifactsLocator mavenLocator = getMavenLocator(resolveLocator);
+        if (mavenLocator == null || project.getGradle().getStartParameter().isOffline()) {
+            return;
+        }
+
+        final String key = getNegativeCacheKey(mavenLocator, type);
+        if (found) {
+            getNegativeResultCache().recordFound(key);
+        } else {
+            getNegativeResultCache().recordMissing(key, getIndexFingerprint(mavenLocator));
+        }
+    }
+
     @Override
     @Nullable
     public File resolveMapping(ApplicationVariant variant) {
-        final VariantArtifactsLocator resolveLocator = locatorFactory.createLocator(project, publishExtension, resolverExtension, variant);
+        final VariantArtifactsLocator resolveLocator = resolverExtension.getLocatorFactory().createLocator(project, publishExtension, resolverExtension, variant);
+        if (isKnownMissing(resolveLocator, ArtifactType.MAPPING)) {
+            return null;
+        }
+        final String daemonCacheKey = getDaemonCacheKey(resolveLocator, ArtifactType.MAPPING);
+        final File resolved = getResolved(daemonCacheKey);
+        if (resolved != null) {
+            return resolved;
+        }
         Configuration classpath = createResourceClasspath(variant, resolveLocator);
 
-        final Set<File> mappings;
+        final Set<File> mappings = resolveLeniently(classpath, resolveLocator, ArtifactType.MAPPING);
+        if (mappings.isEmpty()) {
+            return null;
+        }
+
+        return rememberResolved(daemonCacheKey, followPointer(resolveLocator, assertSingleton(mappings)));
+    }
+
+    // only a clean "not found" is recorded as missing, network errors and server failures must not hide the file from later builds
+    private Set<File> resolveLeniently(Configuration classpath, VariantArtifactsLocator resolveLocator, ArtifactType type) {
+        final LenientConfiguration lenient = classpath.getResolvedConfiguration().getLenientConfiguration();
+        final Set<File> files;
         if (resolveLocator instanceof MavenVariantArtifactsLocator) {
-            final Set<ResolvedArtifact> artifacts = classpath.getResolvedConfiguration().getLenientConfiguration()
-                    .getArtifacts(resolveLocator.getDependencySpec(ArtifactType.MAPPING));
-            mappings = artifacts.stream().filter(resolveLocator.getResolvedArtifactSpec(ArtifactType.MAPPING))
+            final Set<ResolvedArtifact> artifacts = lenient.getArtifacts(resolveLocator.getDependencySpec(type));
+            files = artifacts.stream().filter(resolveLocator.getResolvedArtifactSpec(type))
                     .map(ResolvedArtifact::getFile).collect(Collectors.toSet());
         } else {
-            mappings = classpath.getResolvedConfiguration().getLenientConfiguration()
-                    .getFiles(resolveLocator.getDependencySpec(ArtifactType.MAPPING));
+            files = lenient.getFiles(resolveLocator.getDependencySpec(type));
+        }
+        if (!files.isEmpty()) {
+            recordResult(resolveLocator, type, true);
+            return files;
         }
 
-        if (mappings.isEmpty()) {
-            return null;
+        final List<Throwable> failures = new ArrayList<>();
+        lenient.getUnresolvedModuleDependencies().forEach(unresolved -> failures.add(unresolved.getProblem()));
+        failures.addAll(classpath.getIncoming().artifactView(view -> view.lenient(true)).getArtifacts().getFailures());
+        final List<Throwable> errors = failures.stream().filter(failure -> !isNotFound(failure)).collect(Collectors.toList());
+        if (errors.isEmpty()) {
+            recordResult(resolveLocator, type, false);
+        } else {
+            project.getLogger().info("TinkerMavenPublish: failed to resolve the base " + type + ", not remembering it as missing", errors.get(0));
         }
+        return files;
+    }
 
-        return assertSingleton(mappings);
+    // ModuleVersionNotFoundException and ArtifactNotFoundException are internal to Gradle
+    private static boolean isNotFound(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause.getClass().getSimpleName().endsWith("NotFoundException")) {
+                return true;
+            }
+        }
+        return false;
     }
 
     // use separate configuration to resolve apk, because for other file, we use lenientConfiguration to ignore resolve error.
@@ -90,14 +349,19 @@ public class DefaultResolver implements Resolver {
             files.setCanBeConsumed(false);
             files.setVisible(false);
             files.setDescription("Configuration to resolve base version of mapping.txt and R.txt files.");
+            resolveLocator.configureClasspath(files, ArtifactType.SYMBOL);
 
-            final Object symbol = resolveLocator.getDependencyNotation(ArtifactType.SYMBOL);
-            if (symbol != null) {
-                project.getDependencies().add(files.getName(), symbol);
+            if (!isKnownMissing(resolveLocator, ArtifactType.SYMBOL)) {
+                final Object symbol = resolveLocator.getDependencyNotation(ArtifactType.SYMBOL);
+                if (symbol != null) {
+                    project.getDependencies().add(files.getName(), symbol);
+                }
             }
-            final Object mapping = resolveLocator.getDependencyNotation(ArtifactType.MAPPING);
-            if (mapping != null) {
-                project.getDependencies().add(files.getName(), mapping);
+            if (!isKnownMissing(resolveLocator, ArtifactType.MAPPING)) {
+                final Object mapping = resolveLocator.getDependencyNotation(ArtifactType.MAPPING);
+                if (mapping != null) {
+                    project.getDependencies().add(files.getName(), mapping);
+                }
             }
         });
     }
@@ -105,25 +369,23 @@ public class DefaultResolver implements Resolver {
     @Override
     @Nullable
     public File resolveSymbol(ApplicationVariant variant) {
-        final VariantArtifactsLocator resolveLocator = locatorFactory.createLocator(project, publishExtension, resolverExtension, variant);
-        Configuration classpath = createResourceClasspath(variant, resolveLocator);
-
-        final Set<File> symbol;
-        if (resolveLocator instanceof MavenVariantArtifactsLocator) {
-            final Set<ResolvedArtifact> artifacts = classpath.getResolvedConfiguration().getLenientConfiguration()
-                    .getArtifacts(resolveLocator.getDependencySpec(ArtifactType.SYMBOL));
-            symbol = artifacts.stream().filter(resolveLocator.getResolvedArtifactSpec(ArtifactType.SYMBOL))
-                    .map(ResolvedArtifact::getFile).collect(Collectors.toSet());
-        } else {
-            symbol = classpath.getResolvedConfiguration().getLenientConfiguration()
-                    .getFiles(resolveLocator.getDependencySpec(ArtifactType.SYMBOL));
+        final VariantArtifactsLocator resolveLocator = resolverExtension.getLocatorFactory().createLocator(project, publishExtension, resolverExtension, variant);
+        if (isKnownMissing(resolveLocator, ArtifactType.SYMBOL)) {
+            return null;
         }
+        final String daemonCacheKey = getDaemonCacheKey(resolveLocator, ArtifactType.SYMBOL);
+        final File resolved = getResolved(daemonCacheKey);
+        if (resolved != null) {
+            return resolved;
+        }
+        Configuration classpath = createResourceClasspath(variant, resolveLocator);
 
+        final Set<File> symbol = resolveLeniently(classpath, resolveLocator, ArtifactType.SYMBOL);
         if (symbol.isEmpty()) {
             return null;
         }
 
-        return assertSingleton(symbol);
+        return rememberResolved(daemonCacheKey, followPointer(resolveLocator, assertSingleton(symbol)));
     }
 
     private Configuration maybeCreate(String name, Action<? super Configuration> action) {
@@ -138,13 +400,22 @@ public class DefaultResolver implements Resolver {
     @Override
     @Nullable
     public File resolveApk(ApplicationVariant variant) {
-        final VariantArtifactsLocator resolveLocator = locatorFactory.createLocator(project, publishExtension, resolverExtension, variant);
+        final VariantArtifactsLocator resolveLocator = resolverExtension.getLocatorFactory().createLocator(project, publishExtension, resolverExtension, variant);
+        if (isKnownMissing(resolveLocator, ArtifactType.APK)) {
+            return null;
+        }
+        final String daemonCacheKey = getDaemonCacheKey(resolveLocator, ArtifactType.APK);
+        final File resolved = getResolved(daemonCacheKey);
+        if (resolved != null) {
+            return resolved;
+        }
 
         final String variantName = capitalize((CharSequence) variant.getName());
         final Configuration tinkerResolveApkClasspath = maybeCreate("tinkerResolve" + variantName + "ApkClasspath", files -> {
             files.setCanBeConsumed(false);
             files.setVisible(false);
             files.setDescription("Configuration to resolve base version of apk files.");
+            resolveLocator.configureClasspath(files, ArtifactType.APK);
 
             project.getDependencies().add(files.getName(), Objects.requireNonNull(resolveLocator.getDependencyNotation(ArtifactType.APK)));
         });
@@ -156,6 +427,120 @@ public class DefaultResolver implements Resolver {
             return null;
         }
 
-        return assertSingleton(apk, "Cannot find singleton apk file in Maven repository, we found: " + apk + ", ");
+        return rememberResolved(daemonCacheKey, followPointer(resolveLocator,
+                assertSingleton(apk, "Cannot find singleton apk file in Maven repository, we found: " + apk + ", ")));
+    }
+
+    /**
+     * Works out what resolving the base of the variant would fetch, using only the caches and metadata requests. Files
+     * small enough to be pointers or chunk lists are downloaded to tell what they refer to.
+     */
+    @NotNull
+    public List<ResolutionPlan.Entry> plan(ApplicationVariant variant) throws IOException {
+        final VariantArtifactsLocator resolveLocator = resolverExtension.getLocatorFactory().createLocator(project, publishExtension, resolverExtension, variant);
+        final List<ResolutionPlan.Entry> entries = new ArrayList<>();
+        for (ArtifactType type : ArtifactType.values()) {
+            if (type == ArtifactType.MAPPING && resolverExtension.isIgnoreMapping()) {
+                continue;
+            }
+            entries.add(plan(variant.getName(), resolveLocator, type));
+        }
+        return entries;
+    }
+
+    private ResolutionPlan.Entry plan(String variantName, VariantArtifactsLocator resolveLocator, ArtifactType type) throws IOException {
+        final MavenVariantArtifactsLocator mavenLocator = getMavenLocator(resolveLocator);
+        if (mavenLocator == null) {
+            final Object notation = resolveLocator.getDependencyNotation(type);
+            if (!(notation instanceof FileCollection)) {
+                return new ResolutionPlan.Entry(variantName, type, String.valueOf(notation),
+                        notation == null ? ResolutionPlan.Status.MISSING : ResolutionPlan.Status.UNKNOWN, "custom", null, -1, false);
+            }
+            final File file = ((FileCollection) notation).getSingleFile();
+            return new ResolutionPlan.Entry(variantName, type, file.getPath(),
+                    file.isFile() ? ResolutionPlan.Status.FOUND : ResolutionPlan.Status.MISSING, "local file", file.getPath(), file.isFile() ? file.length() : -1, true);
+        }
+
+        final String path = mavenLocator.getArtifactPath(type);
+        if (isKnownMissing(resolveLocator, type)) {
+            return new ResolutionPlan.Entry(variantName, type, path, ResolutionPlan.Status.SKIPPED, "index", null, -1, false);
+        }
+
+        final ArtifactDownloader downloader;
+        final File cached;
+        final String source;
+        if (resolveLocator instanceof DownloadingVariantArtifactsLocator) {
+            downloader = ((DownloadingVariantArtifactsLocator) resolveLocator).getDownloader();
+            cached = ((DownloadingVariantArtifactsLocator) resolveLocator).getCacheFile(type);
+            source = "download";
+        } else {
+            final List<RepositoryTransport> transports = getRepositoryTransports();
+            downloader = transports.isEmpty() ? null : new SequentialDownloader(transports);
+            cached = findInGradleCache(mavenLocator, type);
+            source = "maven";
+        }
+
+        if (cached != null && cached.isFile()) {
+            return found(variantName, type, path, "cache", cached.getPath(), cached, cached.length(), true);
+        }
+        if (downloader == null) {
+            return new ResolutionPlan.Entry(variantName, type, path, ResolutionPlan.Status.UNKNOWN, source, null, -1, false);
+        }
+
+        final ResourceMetadata metadata = downloader.head(path);
+        if (metadata == null) {
+            return new ResolutionPlan.Entry(variantName, type, path, ResolutionPlan.Status.MISSING, source, downloader.getDisplayName(), -1, false);
+        }
+        if (metadata.getContentLength() < 0 || metadata.getContentLength() > getMaxReferenceSize(type)) {
+            return new ResolutionPlan.Entry(variantName, type, path, ResolutionPlan.Status.FOUND, source, downloader.getDisplayName(),
+                    metadata.getContentLength(), false);
+        }
+
+        // small enough to be a pointer or a chunk list, which only tells what it refers to once downloaded
+        final File reference = Files.createTempFile("tinker-plan", ".tmp").toFile();
+        try {
+            if (downloader.download(path, reference) == null) {
+                return new ResolutionPlan.Entry(variantName, type, path, ResolutionPlan.Status.MISSING, source, downloader.getDisplayName(), -1, false);
+            }
+            return found(variantName, type, path, source, downloader.getDisplayName(), reference, metadata.getContentLength(), false);
+        } finally {
+            Files.deleteIfExists(reference.toPath());
+        }
+    }
+
+    // pointers stay under a kilobyte, chunk lists take about 80 bytes per 64KB chunk of the apk
+    private static long getMaxReferenceSize(ArtifactType type) {
+        return type == ArtifactType.APK ? 1024 * 1024 : 1024;
+    }
+
+    // a pointer or a chunk list is only cached once the blob or all the chunks it refers to are
+    private ResolutionPlan.Entry found(String variantName, ArtifactType type, String path, String source, String location,
+                                       File file, long size, boolean cached) throws IOException {
+        final BlobResolver.Content content = getBlobResolver().inspect(file);
+        if (content == null) {
+            return new ResolutionPlan.Entry(variantName, type, path, ResolutionPlan.Status.FOUND, source, location, size, cached);
+        }
+        return new ResolutionPlan.Entry(variantName, type, path, ResolutionPlan.Status.FOUND, source, location, content.getSize(),
+                cached && content.isComplete(), content.getChunks(), content.getMissingChunks(), content.getMissingBytes());
+    }
+
+    // files-2.1/<group>/<module>/<version>/<sha1>/<file> is the layout of Gradle's dependency cache
+    @Nullable
+    private File findInGradleCache(MavenVariantArtifactsLocator mavenLocator, ArtifactType type) {
+        final String path = mavenLocator.getArtifactPath(type);
+        final String fileName = path.substring(path.lastIndexOf('/') + 1);
+        final File versionDir = new File(project.getGradle().getGradleUserHomeDir(), "caches/modules-2/files-2.1/"
+                + mavenLocator.getGroupId() + "/" + mavenLocator.getArtifactId() + "/" + mavenLocator.getVersion());
+        final File[] hashDirs = versionDir.listFiles(File::isDirectory);
+        if (hashDirs == null) {
+            return null;
+        }
+        for (File hashDir : hashDirs) {
+            final File file = new File(hashDir, fileName);
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        return null;
     }
 }
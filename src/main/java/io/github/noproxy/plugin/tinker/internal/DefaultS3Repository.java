@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import io.github.noproxy.plugin.tinker.api.S3RepositorySpec;
+import io.github.noproxy.plugin.tinker.internal.transport.S3RepositoryTransport;
+import org.apache.commons.lang3.ObjectUtils;
+import org.gradle.api.InvalidUserDataException;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URI;
+import java.util.Objects;
+
+public class DefaultS3Repository implements S3RepositorySpec {
+    private String endpoint;
+    private String bucket;
+    private String prefix = "";
+    private String region = "us-east-1";
+    private String accessKey;
+    private String secretKey;
+    private boolean pathStyle = true;
+    private long partSize = 16 * 1024 * 1024;
+    private int parallelism = 4;
+
+    @Override
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public void setBucket(String bucket) {
+        this.bucket = bucket;
+    }
+
+    @Override
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    @Override
+    public void setAccessKey(String accessKey) {
+        this.accessKey = accessKey;
+    }
+
+    @Override
+    public void setSecretKey(String secretKey) {
+        this.secretKey = secretKey;
+    }
+
+    @Override
+    public void setPathStyle(boolean pathStyle) {
+        this.pathStyle = pathStyle;
+    }
+
+    @Override
+    public void setPartSize(long partSize) {
+        if (partSize < S3RepositoryTransport.MIN_PART_SIZE) {
+            throw new InvalidUserDataException("The partSize of the S3 repository must be at least 5 MiB, S3 rejects smaller parts.");
+        }
+        this.partSize = partSize;
+    }
+
+    @Override
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    @NotNull
+    public String getDisplayName() {
+        return endpoint + "/" + bucket + (prefix == null || prefix.isEmpty() ? "" : "/" + prefix);
+    }
+
+    @NotNull
+    public S3RepositoryTransport createTransport() {
+        return new S3RepositoryTransport(URI.create(Objects.requireNonNull(endpoint, "You must set the endpoint of the S3 repository.")),
+                Objects.requireNonNull(bucket, "You must set the bucket of the S3 repository."), prefix, region,
+                Objects.requireNonNull(ObjectUtils.firstNonNull(accessKey, System.getenv("AWS_ACCESS_KEY_ID")), "You must set the accessKey of the S3 repository."),
+                Objects.requireNonNull(ObjectUtils.firstNonNull(secretKey, System.getenv("AWS_SECRET_ACCESS_KEY")), "You must set the secretKey of the S3 repository."),
+                pathStyle, partSize, parallelism);
+    }
+}
@@ -17,14 +17,22 @@
 package io.github.noproxy.plugin.tinker.internal;
 
 import io.github.noproxy.plugin.tinker.api.TinkerMavenPublishExtension;
+import io.github.noproxy.plugin.tinker.api.S3RepositorySpec;
 import io.github.noproxy.plugin.tinker.api.VariantArtifactsLocatorFactory;
+import org.gradle.api.Action;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class DefaultTinkerMavenPublishExtension implements TinkerMavenPublishExtension, TinkerMavenPublishExtensionInternal {
     private String baseVersion;
     private String groupId;
     private String artifactId;
     private VariantArtifactsLocatorFactory locatorFactory;
+    private boolean publishIndex = false;
+    private boolean moduleMetadata = false;
+    private boolean deduplicate = false;
+    private boolean chunkApk = false;
+    private DefaultS3Repository s3;
 
     @NotNull
     @Override
@@ -70,4 +78,58 @@ public class DefaultTinkerMavenPublishExtension implements TinkerMavenPublishExt
     public void setArtifactId(String artifactId) {
         this.artifactId = artifactId;
     }
+
+    @Override
+    public boolean isPublishIndex() {
+        return publishIndex;
+    }
+
+    @Override
+    public void setPublishIndex(boolean publishIndex) {
+        this.publishIndex = publishIndex;
+    }
+
+    @Override
+    public boolean isModuleMetadata() {
+        return moduleMetadata;
+    }
+
+    @Override
+    public void setModuleMetadata(boolean moduleMetadata) {
+        this.moduleMetadata = moduleMetadata;
+    }
+
+    @Override
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    @Override
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    @Override
+    public boolean isChunkApk() {
+        return chunkApk;
+    }
+
+    @Override
+    public void setChunkApk(boolean chunkApk) {
+        this.chunkApk = chunkApk;
+    }
+
+    @Nullable
+    @Override
+    public DefaultS3Repository getS3() {
+        return s3;
+    }
+
+    @Override
+    public void s3(Action<? super S3RepositorySpec> action) {
+        if (s3 == null) {
+            s3 = new DefaultS3Repository();
+        }
+        action.execute(s3);
+    }
 }
@@ -16,13 +16,20 @@
 
 package io.github.noproxy.plugin.tinker.internal;
 
+import io.github.noproxy.plugin.tinker.api.S3RepositorySpec;
 import io.github.noproxy.plugin.tinker.api.VariantArtifactsLocatorFactory;
+import org.gradle.api.Action;
 import org.gradle.api.Project;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 public class DefaultTinkerMavenResolverExtension implements TinkerMavenResolverExtensionInternal {
     private final Project project;
@@ -32,6 +39,19 @@ public class DefaultTinkerMavenResolverExtension implements TinkerMavenResolverE
     private File mapping;
     private File symbol;
     private boolean ignoreMapping = false;
+    private boolean useIndex = false;
+    private final Set<String> indexRepositories = new LinkedHashSet<>();
+    private boolean moduleMetadata = false;
+    private final List<URI> mirrors = new ArrayList<>();
+    private long hedgeDelay = 500;
+    private long mirrorTimeout = 10 * 60 * 1000;
+    private long negativeCacheTtl = 0;
+    private boolean pruneMapping = false;
+    private boolean unpackBase = false;
+    private boolean daemonCache = false;
+    private boolean skipUnchangedPatch = false;
+    private boolean cachePatch = false;
+    private DefaultS3Repository s3;
 
     @Inject
     public DefaultTinkerMavenResolverExtension(Project project) {
@@ -52,6 +72,9 @@ public class DefaultTinkerMavenResolverExtension implements TinkerMavenResolverE
     @Override
     public VariantArtifactsLocatorFactory getLocatorFactory() {
         if (locatorFactory == null) {
+            if (s3 != null) {
+                return new S3VariantArtifactsLocatorFactory(s3);
+            }
             return new DefaultVariantArtifactsLocatorFactory();
         }
 
@@ -102,4 +125,140 @@ public class DefaultTinkerMavenResolverExtension implements TinkerMavenResolverE
     public void setApk(@NotNull Object apk) {
         this.apk = project.file(apk);
     }
+
+    @Override
+    public boolean isUseIndex() {
+        return useIndex;
+    }
+
+    @Override
+    public void setUseIndex(boolean useIndex) {
+        this.useIndex = useIndex;
+    }
+
+    @Override
+    public void indexRepository(@NotNull String name) {
+        indexRepositories.add(name);
+    }
+
+    @NotNull
+    @Override
+    public Set<String> getIndexRepositories() {
+        return indexRepositories;
+    }
+
+    @Override
+    public boolean isModuleMetadata() {
+        return moduleMetadata;
+    }
+
+    @Override
+    public void setModuleMetadata(boolean moduleMetadata) {
+        this.moduleMetadata = moduleMetadata;
+    }
+
+    @Override
+    public void mirror(@NotNull Object url) {
+        mirrors.add(project.uri(url));
+    }
+
+    @NotNull
+    @Override
+    public List<URI> getMirrors() {
+        return mirrors;
+    }
+
+    @Override
+    public long getHedgeDelay() {
+        return hedgeDelay;
+    }
+
+    @Override
+    public void setHedgeDelay(long millis) {
+        this.hedgeDelay = millis;
+    }
+
+    @Override
+    public long getMirrorTimeout() {
+        return mirrorTimeout;
+    }
+
+    @Override
+    public void setMirrorTimeout(long millis) {
+        this.mirrorTimeout = millis;
+    }
+
+    @Override
+    public long getNegativeCacheTtl() {
+        return negativeCacheTtl;
+    }
+
+    @Override
+    public void setNegativeCacheTtl(long millis) {
+        this.negativeCacheTtl = millis;
+    }
+
+    @Override
+    public boolean isPruneMapping() {
+        return pruneMapping;
+    }
+
+    @Override
+    public void setPruneMapping(boolean pruneMapping) {
+        this.pruneMapping = pruneMapping;
+    }
+
+    @Override
+    public boolean isUnpackBase() {
+        return unpackBase;
+    }
+
+    @Override
+    public void setUnpackBase(boolean unpackBase) {
+        this.unpackBase = unpackBase;
+    }
+
+    @Override
+    public boolean isDaemonCache() {
+        return daemonCache;
+    }
+
+    @Override
+    public void setDaemonCache(boolean daemonCache) {
+        this.daemonCache = daemonCache;
+    }
+
+    @Override
+    public boolean isSkipUnchangedPatch() {
+        return skipUnchangedPatch;
+    }
+
+    @Override
+    public void setSkipUnchangedPatch(boolean skipUnchangedPatch) {
+        this.skipUnchangedPatch = skipUnchangedPatch;
+    }
+
+    @Override
+    public boolean isCachePatch() {
+        return cachePatch;
+    }
+
+    @Override
+    public void setCachePatch(boolean cachePatch) {
+        this.cachePatch = cachePatch;
+    }
+
+    @Nullable
+    @Override
+    public DefaultS3Repository getS3() {
+        return s3;
+    }
+
+    @Override
+    public void s3(Action<? super S3RepositorySpec> action) {
+        if (s3 == null) {
+            s3 = new DefaultS3Repository();
+        }
+        action.execute(s3);
+    }
 }
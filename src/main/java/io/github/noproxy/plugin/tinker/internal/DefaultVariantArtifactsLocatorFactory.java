@@ -20,10 +20,16 @@ import com.android.build.gradle.api.ApplicationVariant;
 import io.github.noproxy.plugin.tinker.api.LocalFileVariantArtifactsLocator;
 import io.github.noproxy.plugin.tinker.api.VariantArtifactsLocator;
 import io.github.noproxy.plugin.tinker.api.VariantArtifactsLocatorFactory;
+import io.github.noproxy.plugin.tinker.internal.transport.HedgedDownloader;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransport;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransports;
 import org.gradle.api.Project;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 public class DefaultVariantArtifactsLocatorFactory implements VariantArtifactsLocatorFactory {
     @NotNull
@@ -35,8 +41,33 @@ public class DefaultVariantArtifactsLocatorFactory implements VariantArtifactsLo
             return new LocalFileVariantArtifactsLocator(project, apk, resolverExtension.getMapping(), resolverExtension.getSymbol());
         }
 
-        project.getLogger().info("use maven resolve apk for tinker, version: " + resolverExtension.getVersion());
-        return new MavenVariantArtifactsLocator(variant, extension.getGroupId(), extension.getArtifactId(), resolverExtension.getVersion());
+        final MavenVariantArtifactsLocator locator = createResolveLocator(project, extension, resolverExtension, variant);
+        if (resolverExtension.getMirrors().isEmpty()) {
+            return locator;
+        }
+
+        project.getLogger().info("use mirrors resolve apk for tinker: " + resolverExtension.getMirrors());
+        final List<RepositoryTransport> mirrors = resolverExtension.getMirrors().stream()
+                .map(url -> Objects.requireNonNull(RepositoryTransports.create(url), "Unsupported mirror: " + url))
+                .collect(Collectors.toList());
+        final HedgedDownloader downloader = new HedgedDownloader(mirrors, resolverExtension.getHedgeDelay(), resolverExtension.getMirrorTimeout());
+        return new DownloadingVariantArtifactsLocator(project, locator, downloader,
+                new File(project.getGradle().getGradleUserHomeDir(), "caches/tinker-maven-publish/mirrors"));
+    }
+
+    @NotNull
+    protected MavenVariantArtifactsLocator createResolveLocator(Project project, @NotNull TinkerMavenPublishExtensionInternal extension, @NotNull TinkerMavenResolverExtensionInternal resolverExtension, @NotNull ApplicationVariant variant) {
+        final MavenVariantArtifactsLocator locator;
+        if (resolverExtension.isModuleMetadata()) {
+            project.getLogger().info("use gradle module metadata resolve apk for tinker, version: " + resolverExtension.getVersion());
+            locator = new ModuleMetadataVariantArtifactsLocator(variant, extension.getGroupId(), extension.getArtifactId(),
+                    resolverExtension.getVersion(), MavenVariantArtifactsLocator.getAbi(variant));
+        } else {
+            project.getLogger().info("use maven resolve apk for tinker, version: " + resolverExtension.getVersion());
+            locator = new MavenVariantArtifactsLocator(variant, extension.getGroupId(), extension.getArtifactId(), resolverExtension.getVersion());
+        }
+
+        return locator;
     }
 
     @NotNull
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import io.github.noproxy.plugin.tinker.api.VariantArtifactsLocator;
+import io.github.noproxy.plugin.tinker.internal.transport.ArtifactDownloader;
+import io.github.noproxy.plugin.tinker.internal.transport.ResourceMetadata;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.SelfResolvingDependency;
+import org.gradle.api.specs.Spec;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Fetches the artifacts located by a {@link MavenVariantArtifactsLocator} with an {@link ArtifactDownloader} instead of
+ * Gradle's dependency resolution, e.g. from hedged mirrors or object storage, and hands them to the resolver as local files.
+ */
+public class DownloadingVariantArtifactsLocator implements VariantArtifactsLocator {
+    private final Project project;
+    private final MavenVariantArtifactsLocator locator;
+    private final ArtifactDownloader downloader;
+    private final File cacheDir;
+    private final Map<ArtifactType, Optional<File>> files = new EnumMap<>(ArtifactType.class);
+
+    public DownloadingVariantArtifactsLocator(Project project, MavenVariantArtifactsLocator locator, ArtifactDownloader downloader, File cacheDir) {
+        this.project = project;
+        this.locator = locator;
+        this.downloader = downloader;
+        this.cacheDir = cacheDir;
+    }
+
+    @NotNull
+    public MavenVariantArtifactsLocator getLocator() {
+        return locator;
+    }
+
+    @NotNull
+    public ArtifactDownloader getDownloader() {
+        return downloader;
+    }
+
+    /**
+     * @return where the artifact is kept once downloaded, it may not exist yet or be outdated
+     */
+    @NotNull
+    public File getCacheFile(ArtifactType type) {
+        return new File(cacheDir, locator.getArtifactPath(type));
+    }
+
+    @Nullable
+    private synchronized File getArtifactFile(ArtifactType type) {
+        return files.computeIfAbsent(type, ignored -> Optional.ofNullable(download(type))).orElse(null);
+    }
+
+    @Nullable
+    private File download(ArtifactType type) {
+        final String path = locator.getArtifactPath(type);
+        final File file = getCacheFile(type);
+        final File etagFile = new File(file.getParentFile(), file.getName() + ".etag");
+
+        try {
+            // a republished version replaces the artifact, so a cached copy is only used while its etag is current
+            if (file.isFile() && etagFile.isFile()) {
+                final String cachedEtag = new String(Files.readAllBytes(etagFile.toPath()), StandardCharsets.UTF_8);
+                final ResourceMetadata current = downloader.head(path);
+                if (current == null) {
+                    project.getLogger().info("TinkerMavenPublish: " + path + " not found");
+                    return null;
+                }
+                if (cachedEtag.equals(current.getEtag())) {
+                    return file;
+                }
+                project.getLogger().info("TinkerMavenPublish: " + path + " changed since it was cached");
+            }
+
+            Files.deleteIfExists(etagFile.toPath());
+            final long start = System.currentTimeMillis();
+            final ResourceMetadata metadata = downloader.download(path, file);
+            if (metadata == null) {
+                project.getLogger().info("TinkerMavenPublish: " + path + " not found");
+                return null;
+            }
+            if (metadata.getEtag() != null) {
+                Files.write(etagFile.toPath(), metadata.getEtag().getBytes(StandardCharsets.UTF_8));
+            }
+            project.getLogger().info("TinkerMavenPublish: downloaded " + path + " in " + (System.currentTimeMillis() - start) + "ms");
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to download " + path, e);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Object getDependencyNotation(ArtifactType type) {
+        final File file = getArtifactFile(type);
+        if (file == null) {
+            if (type == ArtifactType.APK) {
+                throw new GradleException("Cannot find base apk " + locator.getArtifactPath(type));
+            }
+            return null;
+        }
+
+        return project.files(file);
+    }
+
+    @NotNull
+    @Override
+    public Spec<Dependency> getDependencySpec(ArtifactType type) {
+        return dependency -> (dependency instanceof SelfResolvingDependency) && ((SelfResolvingDependency) dependency).resolve().contains(getArtifactFile(type));
+    }
+
+    @NotNull
+    @Override
+    public Predicate<ResolvedArtifact> getResolvedArtifactSpec(ArtifactType type) {
+        return resolvedArtifact -> resolvedArtifact.getFile().equals(getArtifactFile(type));
+    }
+}
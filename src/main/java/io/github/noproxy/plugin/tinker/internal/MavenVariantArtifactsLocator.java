@@ -17,7 +17,7 @@
 package io.github.noproxy.plugin.tinker.internal;
 
 import com.android.build.gradle.api.ApplicationVariant;
-import com.android.build.gradle.api.BaseVariant;
+import com.android.build.gradle.api.BaseVariantOutput;
 
 import io.github.noproxy.plugin.tinker.api.VariantArtifactsLocator;
 import org.apache.commons.lang3.ObjectUtils;
@@ -31,20 +31,55 @@ import java.util.Objects;
 import java.util.function.Predicate;
 
 public class MavenVariantArtifactsLocator implements VariantArtifactsLocator {
-    private final BaseVariant variant;
+    private final ApplicationVariant variant;
     private final String groupId;
     private final String artifactId;
     private final String bareVersion;
+    private final String abi;
 
     public MavenVariantArtifactsLocator(@NotNull ApplicationVariant variant,
                                         @Nullable String groupId,
                                         @Nullable String artifactId,
                                         @Nullable String bareVersion) {
+        this(variant, groupId, artifactId, bareVersion, getAbi(variant));
+    }
+
+    public MavenVariantArtifactsLocator(@NotNull ApplicationVariant variant,
+                                        @Nullable String groupId,
+                                        @Nullable String artifactId,
+                                        @Nullable String bareVersion,
+                                        @NotNull String abi) {
         this.variant = variant;
         this.groupId = ObjectUtils.firstNonNull(groupId, "org.tinker.app");
         this.artifactId = ObjectUtils.firstNonNull(artifactId, variant.getApplicationId());
         this.bareVersion = Objects.requireNonNull(ObjectUtils.firstNonNull(bareVersion, variant.getVersionName()),
                 "You must set a version to publish.");
+        this.abi = abi;
+    }
+
+    /**
+     * @return the output Tinker builds the patch from, the first one if the variant has splits
+     */
+    @NotNull
+    public static BaseVariantOutput getPatchedOutput(@NotNull ApplicationVariant variant) {
+        return variant.getOutputs().stream().findFirst()
+                .orElseThrow(() -> new IllegalStateException("Variant '" + variant.getName() + "' has no outputs"));
+    }
+
+    /**
+     * @return the abi of the output Tinker patches
+     */
+    @NotNull
+    public static String getAbi(@NotNull ApplicationVariant variant) {
+        return variant.getOutputs().stream().findFirst().map(TinkerAttributes::getAbi).orElse(TinkerAttributes.UNIVERSAL_ABI);
+    }
+
+    /**
+     * @return the locator of another output of the same variant
+     */
+    @NotNull
+    public MavenVariantArtifactsLocator withAbi(@NotNull String abi) {
+        return new MavenVariantArtifactsLocator(variant, groupId, artifactId, bareVersion, abi);
     }
 
     @NotNull
@@ -57,6 +92,18 @@ public class MavenVariantArtifactsLocator implements VariantArtifactsLocator {
         return artifactId;
     }
 
+    @NotNull
+    public String getBareVersion() {
+        return bareVersion;
+    }
+
+    /**
+     * @return whether the artifacts can be looked up in the base version index
+     */
+    public boolean isIndexed() {
+        return true;
+    }
+
     @NotNull
     public String getVersion() {
         final StringBuilder version = new StringBuilder(bareVersion);
@@ -66,9 +113,17 @@ public class MavenVariantArtifactsLocator implements VariantArtifactsLocator {
         }
 
         version.append("-").append(variant.getBuildType().getName());
+        if (!TinkerAttributes.UNIVERSAL_ABI.equals(abi)) {
+            version.append("-").append(abi);
+        }
         return version.toString();
     }
 
+    @NotNull
+    public String getAbi() {
+        return abi;
+    }
+
     @Nullable
     public String getClassifier(ArtifactType type) {
         switch (type) {
@@ -96,6 +151,21 @@ public class MavenVariantArtifactsLocator implements VariantArtifactsLocator {
         }
     }
 
+    /**
+     * @return path of the module directory relative to the repository root, e.g. {@code org/tinker/app/artifactId}
+     */
+    @NotNull
+    public String getModulePath() {
+        return getGroupId().replace('.', '/') + "/" + getArtifactId();
+    }
+
+    @NotNull
+    public String getArtifactPath(ArtifactType type) {
+        final String classifier = getClassifier(type);
+        return getModulePath() + "/" + getVersion() + "/" + getArtifactId() + "-" + getVersion()
+                + (classifier == null ? "" : "-" + classifier) + "." + getExtension(type);
+    }
+
     @NotNull
     @Override
     public Object getDependencyNotation(ArtifactType type) {
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import com.android.build.gradle.api.ApplicationVariant;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.component.AdhocComponentWithVariants;
+import org.gradle.api.component.SoftwareComponentFactory;
+import org.gradle.api.publish.PublishingExtension;
+import org.gradle.api.publish.maven.MavenPublication;
+import org.gradle.api.tasks.TaskProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.codehaus.groovy.runtime.StringGroovyMethods.capitalize;
+
+/**
+ * Publishes all variants of a bare version as one module, each variant output becomes a Gradle Module Metadata
+ * variant carrying {@link TinkerAttributes}.
+ */
+public class ModuleMetadataPublications {
+    private final Project project;
+    private final SoftwareComponentFactory softwareComponentFactory;
+    private final Map<String, AdhocComponentWithVariants> components = new HashMap<>();
+
+    public ModuleMetadataPublications(Project project, SoftwareComponentFactory softwareComponentFactory) {
+        this.project = project;
+        this.softwareComponentFactory = softwareComponentFactory;
+    }
+
+    private AdhocComponentWithVariants getComponent(ModuleMetadataVariantArtifactsLocator locator) {
+        final String key = locator.getGroupId() + ":" + locator.getArtifactId() + ":" + locator.getVersion();
+        return components.computeIfAbsent(key, ignored -> {
+            final String name = "tinkerApp" + (components.isEmpty() ? "" : String.valueOf(components.size()));
+            final AdhocComponentWithVariants component = softwareComponentFactory.adhoc(name);
+            project.getComponents().add(component);
+
+            final PublishingExtension publishing = project.getExtensions().getByType(PublishingExtension.class);
+            publishing.getPublications().create(capitalize((CharSequence) name), MavenPublication.class, publication -> {
+                publication.setGroupId(locator.getGroupId());
+                publication.setArtifactId(locator.getArtifactId());
+                publication.setVersion(locator.getVersion());
+                publication.from(component);
+            });
+            return component;
+        });
+    }
+
+    public void addVariantOutput(ApplicationVariant variant, ModuleMetadataVariantArtifactsLocator locator,
+                                 TaskProvider<PrepareTinkerArtifactsTask> prepareTask) {
+        final AdhocComponentWithVariants component = getComponent(locator);
+        final String outputName = variant.getName()
+                + (TinkerAttributes.UNIVERSAL_ABI.equals(locator.getAbi()) ? "" : capitalize((CharSequence) locator.getAbi()));
+
+        final Configuration apkElements = createElements("tinker" + capitalize((CharSequence) outputName) + "ApkElements",
+                locator, TinkerAttributes.PAYLOAD_APK);
+        addArtifact(apkElements, locator, prepareTask, ArtifactType.APK);
+        component.addVariantsFromConfiguration(apkElements, details -> {
+        });
+
+        final Configuration symbolsElements = createElements("tinker" + capitalize((CharSequence) outputName) + "SymbolsElements",
+                locator, TinkerAttributes.PAYLOAD_SYMBOLS);
+        if (variant.getBuildType().isMinifyEnabled()) {
+            addArtifact(symbolsElements, locator, prepareTask, ArtifactType.MAPPING);
+        }
+        addArtifact(symbolsElements, locator, prepareTask, ArtifactType.SYMBOL);
+        component.addVariantsFromConfiguration(symbolsElements, details -> {
+        });
+    }
+
+    private Configuration createElements(String name, ModuleMetadataVariantArtifactsLocator locator, String payload) {
+        return project.getConfigurations().create(name, configuration -> {
+            configuration.setCanBeResolved(false);
+            configuration.setCanBeConsumed(true);
+            configuration.setVisible(false);
+            TinkerAttributes.apply(configuration.getAttributes(), locator.getFlavor(), locator.getBuildType(), locator.getAbi(), payload);
+        });
+    }
+
+    private void addArtifact(Configuration elements, ModuleMetadataVariantArtifactsLocator locator,
+                             TaskProvider<PrepareTinkerArtifactsTask> prepareTask, ArtifactType type) {
+        project.getArtifacts().add(elements.getName(), prepareTask.flatMap(task -> task.getArtifactFile(type)), artifact -> {
+            artifact.setExtension(locator.getExtension(type));
+            artifact.setClassifier(locator.getClassifier(type));
+            artifact.builtBy(prepareTask);
+        });
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import com.android.build.gradle.api.ApplicationVariant;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Predicate;
+
+/**
+ * Locates the artifacts of a variant published as a Gradle Module Metadata variant of the bare version.
+ * <p>
+ * The repository layout is the one of {@link MavenVariantArtifactsLocator}, except that the flavor, buildType and abi
+ * move from the version into the classifier and the variant is selected by {@link TinkerAttributes}.
+ */
+public class ModuleMetadataVariantArtifactsLocator extends MavenVariantArtifactsLocator {
+    private final String flavor;
+    private final String buildType;
+
+    public ModuleMetadataVariantArtifactsLocator(@NotNull ApplicationVariant variant,
+                                                 @Nullable String groupId,
+                                                 @Nullable String artifactId,
+                                                 @Nullable String bareVersion,
+                                                 @NotNull String abi) {
+        super(variant, groupId, artifactId, bareVersion, abi);
+        this.flavor = variant.getFlavorName();
+        this.buildType = variant.getBuildType().getName();
+    }
+
+    @NotNull
+    @Override
+    public String getVersion() {
+        return getBareVersion();
+    }
+
+    @Override
+    public boolean isIndexed() {
+        return false;
+    }
+
+    @NotNull
+    public String getFlavor() {
+        return flavor;
+    }
+
+    @NotNull
+    public String getBuildType() {
+        return buildType;
+    }
+
+    @NotNull
+    private String getVariantClassifier() {
+        final StringBuilder classifier = new StringBuilder();
+        if (!flavor.isEmpty()) {
+            classifier.append(flavor).append("-");
+        }
+        classifier.append(buildType);
+        if (!TinkerAttributes.UNIVERSAL_ABI.equals(getAbi())) {
+            classifier.append("-").append(getAbi());
+        }
+        return classifier.toString();
+    }
+
+    @NotNull
+    @Override
+    public String getClassifier(ArtifactType type) {
+        final String suffix = super.getClassifier(type);
+        return suffix == null ? getVariantClassifier() : getVariantClassifier() + "-" + suffix;
+    }
+
+    @NotNull
+    @Override
+    public Object getDependencyNotation(ArtifactType type) {
+        return getGroupId() + ":" + getArtifactId() + ":" + getVersion();
+    }
+
+    @Override
+    @NotNull
+    public Predicate<ResolvedArtifact> getResolvedArtifactSpec(ArtifactType type) {
+        final String suffix = "-" + getClassifier(type) + "." + getExtension(type);
+        return element -> element.getFile().getName().endsWith(suffix);
+    }
+
+    @Override
+    public void configureClasspath(@NotNull Configuration classpath, ArtifactType type) {
+        TinkerAttributes.apply(classpath.getAttributes(), flavor, buildType, getAbi(), TinkerAttributes.getPayload(type));
+    }
+}
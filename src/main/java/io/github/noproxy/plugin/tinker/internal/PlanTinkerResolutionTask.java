@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import com.android.build.gradle.api.ApplicationVariant;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reports what resolving the base versions of all tinker variants would download, without transferring artifacts.
+ * <p>
+ * Fails if a base apk is missing, so CI finds out before the patch build.
+ */
+public class PlanTinkerResolutionTask extends DefaultTask {
+    public static final String NAME = "tinkerResolutionPlan";
+
+    private final RegularFileProperty reportFile;
+    private final List<ApplicationVariant> variants = new ArrayList<>();
+    private DefaultResolver resolver;
+
+    @Inject
+    public PlanTinkerResolutionTask(ObjectFactory objects) {
+        this.reportFile = objects.fileProperty();
+        getOutputs().upToDateWhen(ignored -> false);
+    }
+
+    @Internal
+    public RegularFileProperty getReportFile() {
+        return reportFile;
+    }
+
+    @Internal
+    public List<ApplicationVariant> getVariants() {
+        return variants;
+    }
+
+    @Internal
+    public DefaultResolver getResolver() {
+        return resolver;
+    }
+
+    public void setResolver(DefaultResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    @TaskAction
+    public void plan() throws IOException {
+        final ResolutionPlan plan = new ResolutionPlan();
+        for (ApplicationVariant variant : variants) {
+            resolver.plan(variant).forEach(plan::add);
+        }
+
+        for (ResolutionPlan.Entry entry : plan.getArtifacts()) {
+            getLogger().quiet(String.format("%-20s %-8s %-8s %-14s %10s  %s%s%s", entry.getVariant(), entry.getType(), entry.getStatus(),
+                    entry.getSource(), entry.getSize() < 0 ? "?" : entry.getSize(), entry.getCoordinates(),
+                    entry.getLocation() == null ? "" : " <- " + entry.getLocation(),
+                    entry.getMissingChunks() == 0 ? "" : " (" + entry.getMissingChunks() + " of " + entry.getChunks() + " chunks, "
+                            + entry.getMissingBytes() + " bytes to download)"));
+        }
+        plan.write(reportFile.get().getAsFile());
+        getLogger().quiet("TinkerMavenPublish: resolution plan written to " + reportFile.get().getAsFile());
+
+        final List<String> missing = plan.getArtifacts().stream()
+                .filter(entry -> entry.getType() == ArtifactType.APK)
+                .filter(entry -> entry.getStatus() == ResolutionPlan.Status.MISSING || entry.getStatus() == ResolutionPlan.Status.SKIPPED)
+                .map(ResolutionPlan.Entry::getVariant)
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            throw new GradleException("TinkerMavenPublish: base apk not found for " + missing);
+        }
+    }
+}
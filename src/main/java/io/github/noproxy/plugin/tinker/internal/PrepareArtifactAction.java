@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import io.github.noproxy.plugin.tinker.internal.blob.Chunker;
+import io.github.noproxy.plugin.tinker.internal.blob.ContentPointer;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes the sha256 of one artifact, and the content pointer or chunk list to publish instead, as requested.
+ */
+public abstract class PrepareArtifactAction implements WorkAction<PrepareArtifactAction.Parameters> {
+    @Override
+    public void execute() {
+        final File source = getParameters().getSource().get().getAsFile();
+
+        try {
+            if (getParameters().getChecksum().isPresent() || getParameters().getPointer().isPresent()) {
+                final String sha256 = Checksums.sha256(source);
+                if (getParameters().getChecksum().isPresent()) {
+                    Files.write(getParameters().getChecksum().get().getAsFile().toPath(), sha256.getBytes(StandardCharsets.UTF_8));
+                }
+                if (getParameters().getPointer().isPresent()) {
+                    new ContentPointer(sha256, source.length()).write(getParameters().getPointer().get().getAsFile());
+                }
+            }
+            if (getParameters().getChunkList().isPresent()) {
+                Chunker.split(source, getParameters().getChunkDirectory().get().getAsFile())
+                        .write(getParameters().getChunkList().get().getAsFile());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare " + source + " for publishing", e);
+        }
+    }
+
+    public interface Parameters extends WorkParameters {
+        RegularFileProperty getSource();
+
+        RegularFileProperty getChecksum();
+
+        RegularFileProperty getPointer();
+
+        RegularFileProperty getChunkList();
+
+        DirectoryProperty getChunkDirectory();
+    }
+}
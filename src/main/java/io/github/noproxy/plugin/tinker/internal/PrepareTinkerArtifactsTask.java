@@ -0,0 +1,243 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+import org.jetbrains.annotations.NotNull;
+
+import javax.inject.Inject;
+/**
+ * Prepares the apk, mapping.txt and R.txt of one variant output for publishing.
+ * <p>
+ * The artifacts are published from where the android plugin wrote them. Every artifact is prepared by its own
+ * worker action, so preparing a variant overlaps with the packaging of other variants. The sha256 is only computed for
+ * the base version index, see {@link io.github.noproxy.plugin.tinker.internal.index.UpdateBaseVersionIndexTask}, and
+ * the content pointer and chunk list, which are published instead of the artifact if requested.
+ */
+public class PrepareTinkerArtifactsTask extends DefaultTask {
+    private final WorkerExecutor workerExecutor;
+    private final RegularFileProperty apk;
+    private final RegularFileProperty mapping;
+    private final RegularFileProperty symbol;
+    private final DirectoryProperty outputDirectory;
+    private final Property<Boolean> deduplicate;
+    private final Property<Boolean> chunkApk;
+    private final Property<Boolean> writeChecksums;
+    private final Property<Boolean> requireSymbol;
+
+    @Inject
+    public PrepareTinkerArtifactsTask(WorkerExecutor workerExecutor, ObjectFactory objects) {
+        this.workerExecutor = workerExecutor;
+        this.apk = objects.fileProperty();
+        this.mapping = objects.fileProperty();
+        this.symbol = objects.fileProperty();
+        this.outputDirectory = objects.directoryProperty();
+        this.deduplicate = objects.property(Boolean.class).convention(false);
+        this.chunkApk = objects.property(Boolean.class).convention(false);
+        this.writeChecksums = objects.property(Boolean.class).convention(false);
+        this.requireSymbol = objects.property(Boolean.class).convention(false);
+    }
+
+    @NotNull
+    public static String getArtifactFileName(ArtifactType type) {
+        switch (type) {
+            case APK:
+                return "base.apk";
+            case MAPPING:
+                return "mapping.txt";
+            case SYMBOL:
+                return "R.txt";
+            default:
+                throw new IllegalArgumentException("Unknown ArtifactType: " + type);
+        }
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public RegularFileProperty getApk() {
+        return apk;
+    }
+
+    // mapping.txt is only set for minified variants
+    @Optional
+    @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
+    public RegularFileProperty getMapping() {
+        return mapping;
+    }
+
+    @Optional
+    @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
+    public RegularFileProperty getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Publish content pointers instead of mapping.txt and R.txt, see {@link io.github.noproxy.plugin.tinker.internal.blob.ContentPointer}.
+     */
+    @Input
+    public Property<Boolean> getDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * Publish a chunk list instead of the apk, see {@link io.github.noproxy.plugin.tinker.internal.blob.ChunkList}.
+     */
+    @Input
+    public Property<Boolean> getChunkApk() {
+        return chunkApk;
+    }
+
+    /**
+     * Write the sha256 of every artifact next to it, see {@link #getChecksumFile(ArtifactType)}.
+     */
+    @Input
+    public Property<Boolean> getWriteChecksums() {
+        return writeChecksums;
+    }
+
+    /**
+     * Fail if R.txt is missing instead of publishing without it.
+     */
+    @Input
+    public Property<Boolean> getRequireSymbol() {
+        return requireSymbol;
+    }
+
+    @OutputDirectory
+    public DirectoryProperty getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * @return the artifact as written by the android plugin
+     */
+    @NotNull
+    public Provider<RegularFile> getArtifactFile(ArtifactType type) {
+        return getSource(type);
+    }
+
+    @NotNull
+    public Provider<RegularFile> getChecksumFile(ArtifactType type) {
+        return outputDirectory.file(getArtifactFileName(type) + ".sha256");
+    }
+
+    @NotNull
+    public Provider<RegularFile> getPointerFile(ArtifactType type) {
+        return outputDirectory.file(getArtifactFileName(type) + ".pointer");
+    }
+
+    @NotNull
+    public Provider<RegularFile> getChunkListFile() {
+        return outputDirectory.file(getArtifactFileName(ArtifactType.APK) + ".chunks");
+    }
+
+    @NotNull
+    public Provider<Directory> getChunkDirectory() {
+        return outputDirectory.dir("chunks");
+    }
+
+    /**
+     * @return the file to publish for the artifact, the artifact itself, its content pointer or its chunk list
+     */
+    @NotNull
+    public Provider<RegularFile> getPublishedFile(ArtifactType type) {
+        if (type == ArtifactType.APK) {
+            return chunkApk.flatMap(enabled -> enabled ? getChunkListFile() : getArtifactFile(type));
+        }
+        return deduplicate.flatMap(enabled -> enabled ? getPointerFile(type) : getArtifactFile(type));
+    }
+
+    @NotNull
+    private RegularFileProperty getSource(ArtifactType type) {
+        switch (type) {
+            case APK:
+                return apk;
+            case MAPPING:
+                return mapping;
+            case SYMBOL:
+                return symbol;
+            default:
+                throw new IllegalArgumentException("Unknown ArtifactType: " + type);
+        }
+    }
+
+    @TaskAction
+    public void prepare() {
+        getProject().delete(outputDirectory);
+        outputDirectory.get().getAsFile().mkdirs();
+
+        final WorkQueue workQueue = workerExecutor.noIsolation();
+        for (ArtifactType type : ArtifactType.values()) {
+            submit(workQueue, type, getSource(type));
+        }
+    }
+
+    private void submit(WorkQueue workQueue, ArtifactType type, RegularFileProperty source) {
+        if (!source.isPresent()) {
+            getLogger().info("TinkerMavenPublish: nothing to prepare for " + type + " of '" + getName() + "'");
+            return;
+        }
+        if (!source.get().getAsFile().isFile()) {
+            // the publication leaves out a missing R.txt, see TinkerMavenPublishPlugin
+            if (type == ArtifactType.SYMBOL && !requireSymbol.get()) {
+                getLogger().warn("TinkerMavenPublish: skip publish R.txt for '" + getName() + "' because file not exists");
+                return;
+            }
+            throw new GradleException("TinkerMavenPublish: " + getArtifactFileName(type) + " of '" + getName() + "' not exists: "
+                    + source.get().getAsFile());
+        }
+        final boolean pointer = deduplicate.get() && type != ArtifactType.APK;
+        final boolean chunkList = chunkApk.get() && type == ArtifactType.APK;
+        if (!writeChecksums.get() && !pointer && !chunkList) {
+            return;
+        }
+
+        workQueue.submit(PrepareArtifactAction.class, parameters -> {
+            parameters.getSource().set(source);
+            if (writeChecksums.get()) {
+                parameters.getChecksum().set(getChecksumFile(type));
+            }
+            if (pointer) {
+                parameters.getPointer().set(getPointerFile(type));
+            }
+            if (chunkList) {
+                parameters.getChunkList().set(getChunkListFile());
+                parameters.getChunkDirectory().set(getChunkDirectory());
+            }
+        });
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import io.github.noproxy.plugin.tinker.internal.blob.BlobPublisher;
+import io.github.noproxy.plugin.tinker.internal.transport.S3RepositoryTransport;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.TaskProvider;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Uploads the prepared artifacts of one variant to an S3-compatible bucket.
+ */
+public class PublishToS3Task extends DefaultTask {
+    // the apk goes last, so a base with an apk is always complete
+    private static final ArtifactType[] UPLOAD_ORDER = {ArtifactType.MAPPING, ArtifactType.SYMBOL, ArtifactType.APK};
+
+    private DefaultS3Repository repository;
+    private MavenVariantArtifactsLocator locator;
+    private TaskProvider<PrepareTinkerArtifactsTask> prepareTask;
+
+    @Internal
+    public DefaultS3Repository getRepository() {
+        return repository;
+    }
+
+    public void setRepository(DefaultS3Repository repository) {
+        this.repository = repository;
+    }
+
+    @Internal
+    public MavenVariantArtifactsLocator getLocator() {
+        return locator;
+    }
+
+    public void setLocator(MavenVariantArtifactsLocator locator) {
+        this.locator = locator;
+    }
+
+    @Internal
+    public TaskProvider<PrepareTinkerArtifactsTask> getPrepareTask() {
+        return prepareTask;
+    }
+
+    public void setPrepareTask(TaskProvider<PrepareTinkerArtifactsTask> prepareTask) {
+        this.prepareTask = prepareTask;
+        dependsOn(prepareTask);
+    }
+
+    @TaskAction
+    public void publish() throws IOException {
+        final S3RepositoryTransport transport = repository.createTransport();
+        BlobPublisher.publish(transport, locator.getModulePath(), prepareTask.get(), getLogger());
+        for (ArtifactType type : UPLOAD_ORDER) {
+            final File file = prepareTask.get().getPublishedFile(type).get().getAsFile();
+            if (!file.isFile()) {
+                continue;
+            }
+
+            final String path = locator.getArtifactPath(type);
+            final long start = System.currentTimeMillis();
+            transport.upload(path, file);
+            getLogger().info("TinkerMavenPublish: uploaded " + path + " to " + transport.getDisplayName()
+                    + " in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+}
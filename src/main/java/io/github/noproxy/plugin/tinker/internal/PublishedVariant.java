@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.tasks.TaskProvider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+
+import static org.codehaus.groovy.runtime.StringGroovyMethods.capitalize;
+
+/**
+ * A variant publication created by this plugin, with the task staging its artifacts.
+ */
+public class PublishedVariant {
+    private final String publicationName;
+    private final String variantName;
+    private final String flavorName;
+    private final String buildTypeName;
+    private final MavenVariantArtifactsLocator locator;
+    private final TaskProvider<PrepareTinkerArtifactsTask> prepareTask;
+
+    public PublishedVariant(String publicationName, String variantName, String flavorName, String buildTypeName,
+                            MavenVariantArtifactsLocator locator, TaskProvider<PrepareTinkerArtifactsTask> prepareTask) {
+        this.publicationName = publicationName;
+        this.variantName = variantName;
+        this.flavorName = flavorName;
+        this.buildTypeName = buildTypeName;
+        this.locator = locator;
+        this.prepareTask = prepareTask;
+    }
+
+    public String getPublicationName() {
+        return publicationName;
+    }
+
+    public String getVariantName() {
+        return variantName;
+    }
+
+    public String getFlavorName() {
+        return flavorName;
+    }
+
+    public String getBuildTypeName() {
+        return buildTypeName;
+    }
+
+    public MavenVariantArtifactsLocator getLocator() {
+        return locator;
+    }
+
+    public TaskProvider<PrepareTinkerArtifactsTask> getPrepareTask() {
+        return prepareTask;
+    }
+
+    @NotNull
+    public String getPublishTaskName(String repositoryName) {
+        return "publish" + capitalize((CharSequence) publicationName) + "PublicationTo" + capitalize((CharSequence) repositoryName) + "Repository";
+    }
+
+    /**
+     * @return the artifact as written by the android plugin, or null if the variant doesn't publish it
+     */
+    @Nullable
+    public File getArtifactFile(ArtifactType type) {
+        final RegularFile file = prepareTask.get().getArtifactFile(type).getOrNull();
+        return file != null && file.getAsFile().isFile() ? file.getAsFile() : null;
+    }
+}
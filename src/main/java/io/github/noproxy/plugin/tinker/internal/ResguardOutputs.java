@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import com.android.build.gradle.api.BaseVariantOutput;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.TaskProvider;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+import static org.codehaus.groovy.runtime.StringGroovyMethods.capitalize;
+
+/**
+ * Finds the apk a variant output ends up as, which is the output of the AndResGuard task of the variant if there is one.
+ * <p>
+ * The apk is derived from the provider of the resguard task, so the task is only realized once the apk is queried. It's
+ * the declared apk output named after the original apk, or for AndResGuard versions that declare none, the apk it
+ * writes next to the original one.
+ */
+public class ResguardOutputs {
+    private final Project project;
+
+    public ResguardOutputs(Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static String getTaskName(String variantName) {
+        return "resguard" + capitalize((CharSequence) variantName);
+    }
+
+    /**
+     * For {@link Task#dependsOn(Object...)}: the resguard task of the variant, if there is one.
+     */
+    @NotNull
+    public Callable<List<TaskProvider<Task>>> getTask(String variantName) {
+        return () -> project.getTasks().getNames().contains(getTaskName(variantName))
+                ? Collections.singletonList(project.getTasks().named(getTaskName(variantName))) : Collections.emptyList();
+    }
+
+    /**
+     * @return the apk to publish or patch for the output, the consumer must depend on {@link #getTask(String)}
+     */
+    @NotNull
+    public Provider<File> getApk(String variantName, BaseVariantOutput output) {
+        final String taskName = getTaskName(variantName);
+        return project.provider(() -> project.getTasks().getNames().contains(taskName))
+                .flatMap(present -> present
+                        ? project.getTasks().named(taskName).map(resguard -> findApk(resguard, output.getOutputFile()))
+                        : project.provider(output::getOutputFile));
+    }
+
+    private File findApk(Task resguard, File originApk) {
+        final String basename = originApk.getName().split("\\.(?=[^.]+$)")[0];
+        final File primaryApk = new File(originApk.getParentFile(), "AndResGuard_" + basename + "/" + basename + "_aligned_unsigned.apk");
+
+        // only apks named after the original one, with abi splits resguard processes just one of them
+        final List<File> declared = resguard.getOutputs().getFiles().getFiles().stream()
+                .filter(file -> file.getName().startsWith(basename) && file.getName().endsWith(".apk"))
+                .sorted()
+                .collect(Collectors.toList());
+        if (!declared.isEmpty()) {
+            final File apk = declared.contains(primaryApk) ? primaryApk : declared.get(0);
+            if (declared.size() > 1) {
+                project.getLogger().warn("TinkerMavenPublish: " + resguard.getName() + " declares several apks " + declared + ", use " + apk);
+            }
+            return apk;
+        }
+
+        if (primaryApk.isFile()) {
+            project.getLogger().info("TinkerMavenPublish: use resguard apk " + primaryApk);
+            return primaryApk;
+        }
+        // signed or 7zipped apks get another suffix
+        final File[] others = primaryApk.getParentFile().listFiles((dir, name) -> name.startsWith(basename) && name.endsWith(".apk"));
+        if (others != null && others.length > 0) {
+            Arrays.sort(others);
+            project.getLogger().warn("TinkerMavenPublish: " + resguard.getName() + " wrote no " + primaryApk + ", use " + others[0]);
+            return others[0];
+        }
+        return originApk;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.gradle.api.UncheckedIOException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What resolving the base versions would fetch, worked out with metadata requests only.
+ */
+public class ResolutionPlan {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    public enum Status {
+        /**
+         * Exists in the cache or the repository.
+         */
+        FOUND,
+        MISSING,
+        /**
+         * Not requested at all, because the base version index or the negative cache rules it out.
+         */
+        SKIPPED,
+        /**
+         * The source can't be queried without resolving, e.g. a repository with an unsupported protocol.
+         */
+        UNKNOWN
+    }
+
+    private final List<Entry> artifacts = new ArrayList<>();
+
+    @NotNull
+    public List<Entry> getArtifacts() {
+        return artifacts;
+    }
+
+    public void add(@NotNull Entry entry) {
+        artifacts.add(entry);
+    }
+
+    public void write(@NotNull File file) {
+        file.getParentFile().mkdirs();
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(this, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write resolution plan " + file, e);
+        }
+    }
+
+    public static class Entry {
+        private final String variant;
+        private final ArtifactType type;
+        private final String coordinates;
+        private final Status status;
+        private final String source;
+        @Nullable
+        private final String location;
+        private final long size;
+        private final boolean cached;
+        private final int chunks;
+        private final int missingChunks;
+        private final long missingBytes;
+
+        public Entry(String variant, ArtifactType type, String coordinates, Status status, String source,
+                     @Nullable String location, long size, boolean cached) {
+            this(variant, type, coordinates, status, source, location, size, cached, 0, 0, cached ? 0 : size);
+        }
+
+        public Entry(String variant, ArtifactType type, String coordinates, Status status, String source,
+                     @Nullable String location, long size, boolean cached, int chunks, int missingChunks, long missingBytes) {
+            this.variant = variant;
+            this.type = type;
+            this.coordinates = coordinates;
+            this.status = status;
+            this.source = source;
+            this.location = location;
+            this.size = size;
+            this.cached = cached;
+            this.chunks = chunks;
+            this.missingChunks = missingChunks;
+            this.missingBytes = missingBytes;
+        }
+
+        public String getVariant() {
+            return variant;
+        }
+
+        public ArtifactType getType() {
+            return type;
+        }
+
+        public String getCoordinates() {
+            return coordinates;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        @Nullable
+        public String getLocation() {
+            return location;
+        }
+
+        /**
+         * @return the size in bytes, or -1 if unknown. For a pointer or a chunk list, the size of the content it refers to
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return whether resolving needs no download, including the blob or the chunks a pointer or a chunk list refers to
+         */
+        public boolean isCached() {
+            return cached;
+        }
+
+        /**
+         * @return the number of distinct chunks of a chunk list, 1 for a pointer, 0 for a plain file
+         */
+        public int getChunks() {
+            return chunks;
+        }
+
+        public int getMissingChunks() {
+            return missingChunks;
+        }
+
+        /**
+         * @return the bytes resolving would download, or -1 if unknown. Doesn't count the pointer or the chunk list itself
+         */
+        public long getMissingBytes() {
+            return missingBytes;
+        }
+    }
+}
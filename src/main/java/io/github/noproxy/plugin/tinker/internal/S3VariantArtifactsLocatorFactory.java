@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import com.android.build.gradle.api.ApplicationVariant;
+import io.github.noproxy.plugin.tinker.api.VariantArtifactsLocator;
+import io.github.noproxy.plugin.tinker.internal.transport.S3RepositoryTransport;
+import org.gradle.api.Project;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+
+/**
+ * Resolves base versions from an S3-compatible bucket, laid out like the maven repository they would be published to.
+ */
+public class S3VariantArtifactsLocatorFactory extends DefaultVariantArtifactsLocatorFactory {
+    private final DefaultS3Repository repository;
+
+    public S3VariantArtifactsLocatorFactory(DefaultS3Repository repository) {
+        this.repository = repository;
+    }
+
+    @NotNull
+    @Override
+    public VariantArtifactsLocator createLocator(Project project, @NotNull TinkerMavenPublishExtensionInternal extension, @NotNull TinkerMavenResolverExtensionInternal resolverExtension, @NotNull ApplicationVariant variant) {
+        if (resolverExtension.getApk() != null) {
+            return super.createLocator(project, extension, resolverExtension, variant);
+        }
+
+        project.getLogger().info("use s3 resolve apk for tinker: " + repository.getDisplayName());
+        final S3RepositoryTransport transport = repository.createTransport();
+        return new DownloadingVariantArtifactsLocator(project, createResolveLocator(project, extension, resolverExtension, variant),
+                transport, new File(project.getGradle().getGradleUserHomeDir(), "caches/tinker-maven-publish/s3"));
+    }
+}
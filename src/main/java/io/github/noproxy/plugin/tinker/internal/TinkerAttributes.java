@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal;
+
+import com.android.build.gradle.api.BaseVariantOutput;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Attributes of the Gradle Module Metadata variants published by {@link ModuleMetadataPublications}.
+ */
+public final class TinkerAttributes {
+    public static final Attribute<String> FLAVOR = Attribute.of("io.github.noproxy.tinker.flavor", String.class);
+    public static final Attribute<String> BUILD_TYPE = Attribute.of("io.github.noproxy.tinker.buildType", String.class);
+    public static final Attribute<String> ABI = Attribute.of("io.github.noproxy.tinker.abi", String.class);
+    public static final Attribute<String> PAYLOAD = Attribute.of("io.github.noproxy.tinker.payload", String.class);
+
+    public static final String UNIVERSAL_ABI = "universal";
+    // mapping.txt and R.txt are always resolved together, so they share one variant
+    public static final String PAYLOAD_APK = "apk";
+    public static final String PAYLOAD_SYMBOLS = "symbols";
+
+    private TinkerAttributes() {
+    }
+
+    @NotNull
+    public static String getPayload(ArtifactType type) {
+        return type == ArtifactType.APK ? PAYLOAD_APK : PAYLOAD_SYMBOLS;
+    }
+
+    @NotNull
+    public static String getAbi(BaseVariantOutput output) {
+        final String abi = output.getFilter("ABI");
+        return abi == null ? UNIVERSAL_ABI : abi;
+    }
+
+    public static void apply(AttributeContainer attributes, String flavor, String buildType, String abi, String payload) {
+        attributes.attribute(FLAVOR, flavor);
+        attributes.attribute(BUILD_TYPE, buildType);
+        attributes.attribute(ABI, abi);
+        attributes.attribute(PAYLOAD, payload);
+    }
+}
@@ -33,4 +33,15 @@ public interface TinkerMavenPublishExtensionInternal extends TinkerMavenPublishE
 
     @Nullable
     String getVersion();
+
+    boolean isPublishIndex();
+
+    boolean isModuleMetadata();
+
+    boolean isDeduplicate();
+
+    boolean isChunkApk();
+
+    @Nullable
+    DefaultS3Repository getS3();
 }
@@ -22,6 +22,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.net.URI;
+import java.util.List;
+import java.util.Set;
 
 public interface TinkerMavenResolverExtensionInternal extends TinkerMavenResolverExtension {
     @Nullable
@@ -40,4 +43,33 @@ public interface TinkerMavenResolverExtensionInternal extends TinkerMavenResolve
 
     @Nullable
     File getApk();
+
+    boolean isUseIndex();
+
+    @NotNull
+    Set<String> getIndexRepositories();
+
+    boolean isModuleMetadata();
+
+    @NotNull
+    List<URI> getMirrors();
+
+    long getHedgeDelay();
+
+    long getMirrorTimeout();
+
+    long getNegativeCacheTtl();
+
+    boolean isPruneMapping();
+
+    boolean isUnpackBase();
+
+    boolean isDaemonCache();
+
+    boolean isSkipUnchangedPatch();
+
+    boolean isCachePatch();
+
+    @Nullable
+    DefaultS3Repository getS3();
 }
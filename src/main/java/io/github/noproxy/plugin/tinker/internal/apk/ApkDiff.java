@@ -0,0 +1,245 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.apk;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.gradle.api.UncheckedIOException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The entries that differ between a base apk and a new apk, found by comparing the crc and size of the entries in
+ * their central directories, without inflating anything.
+ * <p>
+ * Entries are sorted into dex, native and resource entries by the dex, lib and res patterns of the tinkerPatch
+ * extension, like tinkerPatch does. Entries matching none of them, or the ignoreChange patterns of res, are not patched.
+ * Neither are signature files and the manifest, which always differ between two builds.
+ */
+public class ApkDiff {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    public enum Category {
+        DEX,
+        RESOURCE,
+        NATIVE,
+        OTHER
+    }
+
+    public enum Change {
+        ADDED,
+        REMOVED,
+        MODIFIED
+    }
+
+    private final String base;
+    private final String apk;
+    private final List<Entry> entries = new ArrayList<>();
+    /**
+     * The compressed size of all changed patchable entries in the new apk, an upper bound of the patch size.
+     */
+    private long estimatedPatchSize;
+
+    private ApkDiff(String base, String apk) {
+        this.base = base;
+        this.apk = apk;
+    }
+
+    @NotNull
+    public static ApkDiff compare(@NotNull File base, @NotNull File apk) throws IOException {
+        return compare(base, apk, Patterns.DEFAULT);
+    }
+
+    @NotNull
+    public static ApkDiff compare(@NotNull File base, @NotNull File apk, @NotNull Patterns patterns) throws IOException {
+        final ApkDiff diff = new ApkDiff(base.getAbsolutePath(), apk.getAbsolutePath());
+        final Map<String, MappedZip.Entry> baseEntries = new LinkedHashMap<>();
+        try (MappedZip baseZip = MappedZip.open(base); MappedZip newZip = MappedZip.open(apk)) {
+            for (MappedZip.Entry entry : baseZip.getEntries()) {
+                if (!entry.isDirectory()) {
+                    baseEntries.put(entry.getName(), entry);
+                }
+            }
+
+            for (MappedZip.Entry entry : newZip.getEntries()) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                final MappedZip.Entry old = baseEntries.remove(entry.getName());
+                if (old == null) {
+                    diff.add(entry.getName(), patterns, Change.ADDED, entry.getCompressedSize());
+                } else if (old.getCrc() != entry.getCrc() || old.getSize() != entry.getSize()) {
+                    diff.add(entry.getName(), patterns, Change.MODIFIED, entry.getCompressedSize());
+                }
+            }
+        }
+        for (String removed : baseEntries.keySet()) {
+            diff.add(removed, patterns, Change.REMOVED, 0);
+        }
+        return diff;
+    }
+
+    @NotNull
+    static Category categorize(@NotNull String name, @NotNull Patterns patterns) {
+        if (name.startsWith("META-INF/") || name.equals("AndroidManifest.xml")) {
+            return Category.OTHER;
+        }
+        if (matches(name, patterns.dex)) {
+            return Category.DEX;
+        }
+        if (matches(name, patterns.lib)) {
+            return Category.NATIVE;
+        }
+        if (matches(name, patterns.res) && !matches(name, patterns.resIgnoreChange)) {
+            return Category.RESOURCE;
+        }
+        return Category.OTHER;
+    }
+
+    private static boolean matches(String name, List<Pattern> patterns) {
+        return patterns.stream().anyMatch(pattern -> pattern.matcher(name).matches());
+    }
+
+    private void add(String name, Patterns patterns, Change change, long size) {
+        final Category category = categorize(name, patterns);
+        entries.add(new Entry(name, category, change, size));
+        if (category != Category.OTHER) {
+            estimatedPatchSize += size;
+        }
+    }
+
+    @NotNull
+    public static ApkDiff read(@NotNull File file) {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return GSON.fromJson(reader, ApkDiff.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read apk diff " + file, e);
+        }
+    }
+
+    public void write(@NotNull File file) {
+        file.getParentFile().mkdirs();
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(this, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write apk diff " + file, e);
+        }
+    }
+
+    /**
+     * @return whether a patch would change anything
+     */
+    public boolean isPatchable() {
+        return entries.stream().anyMatch(entry -> entry.getCategory() != Category.OTHER);
+    }
+
+    @NotNull
+    public Map<Category, Integer> countByCategory() {
+        final Map<Category, Integer> counts = new EnumMap<>(Category.class);
+        for (Category category : Category.values()) {
+            counts.put(category, 0);
+        }
+        entries.forEach(entry -> counts.merge(entry.getCategory(), 1, Integer::sum));
+        return counts;
+    }
+
+    @NotNull
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public long getEstimatedPatchSize() {
+        return estimatedPatchSize;
+    }
+
+    public static class Entry {
+        private final String name;
+        private final Category category;
+        private final Change change;
+        private final long size;
+
+        Entry(String name, Category category, Change change, long size) {
+            this.name = name;
+            this.category = category;
+            this.change = change;
+            this.size = size;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Category getCategory() {
+            return category;
+        }
+
+        public Change getChange() {
+            return change;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * The dex, lib and res patterns of the tinkerPatch extension.
+     */
+    public static final class Patterns {
+        /**
+         * The patterns of the tinker sample configuration.
+         */
+        public static final Patterns DEFAULT = new Patterns(Arrays.asList("classes*.dex", "assets/secondary-dex-?.jar"),
+                Collections.singletonList("lib/*/*.so"), Arrays.asList("res/*", "assets/*", "resources.arsc", "AndroidManifest.xml"),
+                Collections.emptyList());
+
+        private final List<Pattern> dex;
+        private final List<Pattern> lib;
+        private final List<Pattern> res;
+        private final List<Pattern> resIgnoreChange;
+
+        public Patterns(Collection<String> dex, Collection<String> lib, Collection<String> res, Collection<String> resIgnoreChange) {
+            this.dex = compile(dex);
+            this.lib = compile(lib);
+            this.res = compile(res);
+            this.resIgnoreChange = compile(resIgnoreChange);
+        }
+
+        // the same conversion as tinker: '.' is literal, '?' any character and '*' anything, including '/'
+        private static List<Pattern> compile(Collection<String> globs) {
+            return globs.stream()
+                    .map(glob -> Pattern.compile(glob.replace(".", "\\.").replace("?", ".").replace("*", ".*")))
+                    .collect(Collectors.toList());
+        }
+    }
+}
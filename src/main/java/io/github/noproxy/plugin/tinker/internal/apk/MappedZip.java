@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.apk;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of a memory-mapped zip file, so entries can be located and read concurrently without
+ * the per-stream locking of {@link java.util.zip.ZipFile}. Zip64 archives are not supported.
+ */
+public class MappedZip implements Closeable {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final List<Entry> entries;
+
+    private MappedZip(FileChannel channel, MappedByteBuffer buffer, List<Entry> entries) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    @NotNull
+    public static MappedZip open(@NotNull File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new MappedZip(channel, buffer, readEntries(file, buffer));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static List<Entry> readEntries(File file, ByteBuffer buffer) throws IOException {
+        final int eocd = findEndOfCentralDirectory(buffer);
+        if (eocd < 0) {
+            throw new ZipException("No end of central directory in " + file);
+        }
+
+        final int count = Short.toUnsignedInt(buffer.getShort(eocd + 10));
+        final long offset = Integer.toUnsignedLong(buffer.getInt(eocd + 16));
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+            throw new ZipException("Zip64 is not supported: " + file);
+        }
+
+        final List<Entry> entries = new ArrayList<>(count);
+        int position = (int) offset;
+        for (int i = 0; i < count; i++) {
+            if (buffer.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Corrupted central directory in " + file + " at " + position);
+            }
+            final int method = Short.toUnsignedInt(buffer.getShort(position + 10));
+            final int crc = buffer.getInt(position + 16);
+            final long compressedSize = Integer.toUnsignedLong(buffer.getInt(position + 20));
+            final long size = Integer.toUnsignedLong(buffer.getInt(position + 24));
+            final int nameLength = Short.toUnsignedInt(buffer.getShort(position + 28));
+            final int extraLength = Short.toUnsignedInt(buffer.getShort(position + 30));
+            final int commentLength = Short.toUnsignedInt(buffer.getShort(position + 32));
+            final long localOffset = Integer.toUnsignedLong(buffer.getInt(position + 42));
+            if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+                throw new ZipException("Zip64 is not supported: " + file);
+            }
+
+            final byte[] name = new byte[nameLength];
+            final ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(position + 46);
+            nameBuffer.get(name);
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8), method, crc, compressedSize, size, localOffset));
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer buffer) {
+        final int last = buffer.limit() - EOCD_SIZE;
+        final int first = Math.max(0, last - MAX_COMMENT);
+        for (int position = last; position >= first; position--) {
+            if (buffer.getInt(position) == EOCD_SIGNATURE) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    @NotNull
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the raw, possibly compressed, bytes of the entry, safe to call from several threads
+     */
+    @NotNull
+    public byte[] readRaw(@NotNull Entry entry) throws IOException {
+        final ByteBuffer local = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final int header = (int) entry.localOffset;
+        if (local.getInt(header) != LOCAL_SIGNATURE) {
+            throw new ZipException("Corrupted local header of " + entry.name);
+        }
+
+        final int data = header + 30 + Short.toUnsignedInt(local.getShort(header + 26)) + Short.toUnsignedInt(local.getShort(header + 28));
+        final byte[] raw = new byte[(int) entry.compressedSize];
+        local.position(data);
+        local.get(raw);
+        return raw;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static class Entry {
+        private final String name;
+        private final int method;
+        private final int crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localOffset;
+
+        Entry(String name, int method, int crc, long compressedSize, long size, long localOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localOffset = localOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        /**
+         * @return the crc32 of the uncompressed content, as an unsigned value
+         */
+        public long getCrc() {
+            return Integer.toUnsignedLong(crc);
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+}
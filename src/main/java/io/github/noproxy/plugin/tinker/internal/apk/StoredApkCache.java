@@ -0,0 +1,202 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.apk;
+
+import io.github.noproxy.plugin.tinker.internal.cache.DaemonCache;
+import org.codehaus.groovy.runtime.ResourceGroovyMethods;
+import org.gradle.api.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Keeps an uncompressed copy of each base apk, keyed by the checksum of the apk.
+ * <p>
+ * Tinker unzips the old apk on every patch build. Given the stored copy, that is a plain copy instead of inflating the
+ * whole apk again. The copy is inflated once, entry by entry in parallel from the memory-mapped apk.
+ * <p>
+ * Stored copies are several times larger than their apks, so only the most recently used ones are kept, and none that
+ * went unused for a month.
+ */
+public class StoredApkCache {
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    // the stored copy of the apk at "path:length:lastModified", shared by the worker actions and the tasks of a build
+    private static final Map<String, File> PREPARED = new ConcurrentHashMap<>();
+    private static final int MAX_ENTRIES = 8;
+    private static final long MAX_AGE = TimeUnit.DAYS.toMillis(30);
+    // a copy another build is about to read is never evicted
+    private static final long MIN_AGE = TimeUnit.HOURS.toMillis(1);
+
+    private final File cacheDir;
+    private final Logger logger;
+
+    public StoredApkCache(File cacheDir, Logger logger) {
+        this.cacheDir = cacheDir;
+        this.logger = logger;
+    }
+
+    /**
+     * @return the stored copy of the apk, created if needed
+     */
+    @NotNull
+    public File get(@NotNull File apk) throws IOException {
+        final String key = apk.getAbsolutePath() + ":" + apk.length() + ":" + apk.lastModified();
+        final File prepared = PREPARED.get(key);
+        if (prepared != null && prepared.isFile()) {
+            return prepared;
+        }
+
+        final File stored = new File(cacheDir, DaemonCache.get().sha256(apk) + "/base.apk");
+        if (!stored.isFile()) {
+            final long start = System.currentTimeMillis();
+            stored.getParentFile().mkdirs();
+            final Path temp = Files.createTempFile(stored.getParentFile().toPath(), "base", ".tmp");
+            try {
+                writeStored(apk, temp.toFile());
+                Files.move(temp, stored.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            logger.quiet("TinkerMavenPublish: unpacked base apk " + apk.getName() + " (" + apk.length() + " bytes) to "
+                    + stored + " (" + stored.length() + " bytes) in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        // the modification time of the directory tells when the copy was last used
+        stored.getParentFile().setLastModified(System.currentTimeMillis());
+        evict();
+        PREPARED.put(key, stored);
+        return stored;
+    }
+
+    private void evict() {
+        final File[] entries = cacheDir.listFiles(File::isDirectory);
+        if (entries == null) {
+            return;
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified).reversed());
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < entries.length; i++) {
+            final File entry = entries[i];
+            final long unused = now - entry.lastModified();
+            if (unused > MIN_AGE && (i >= MAX_ENTRIES || unused > MAX_AGE)) {
+                logger.info("TinkerMavenPublish: evict unpacked base apk " + entry);
+                PREPARED.values().removeIf(stored -> stored.getParentFile().equals(entry));
+                ResourceGroovyMethods.deleteDir(entry);
+            }
+        }
+    }
+
+    private static void writeStored(File apk, File destination) throws IOException {
+        final int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "tinker-unpack-base");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (MappedZip zip = MappedZip.open(apk);
+             ZipOutputStream output = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(destination.toPath())))) {
+            final List<MappedZip.Entry> entries = zip.getEntries();
+            // entries are inflated ahead in a bounded window and written in their original order
+            final Deque<Future<byte[]>> window = new ArrayDeque<>();
+            int next = 0;
+            for (MappedZip.Entry entry : entries) {
+                while (next < entries.size() && window.size() < threads * 2) {
+                    final MappedZip.Entry ahead = entries.get(next++);
+                    window.add(executor.submit(() -> inflate(zip, ahead)));
+                }
+                write(output, entry, window.removeFirst().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted unpacking " + apk, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] inflate(MappedZip zip, MappedZip.Entry entry) throws IOException {
+        final byte[] raw = zip.readRaw(entry);
+        final byte[] content;
+        if (entry.getMethod() == STORED) {
+            content = raw;
+        } else if (entry.getMethod() == DEFLATED) {
+            content = new byte[(int) entry.getSize()];
+            final Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(raw);
+                int offset = 0;
+                while (offset < content.length && !inflater.finished()) {
+                    final int inflated = inflater.inflate(content, offset, content.length - offset);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new ZipException("Truncated entry " + entry.getName());
+                    }
+                    offset += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException("Corrupted entry " + entry.getName() + ": " + e.getMessage());
+            } finally {
+                inflater.end();
+            }
+        } else {
+            throw new ZipException("Unsupported compression method " + entry.getMethod() + " of " + entry.getName());
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        if (crc.getValue() != entry.getCrc()) {
+            throw new ZipException("Crc mismatch of " + entry.getName());
+        }
+        return content;
+    }
+
+    private static void write(ZipOutputStream output, MappedZip.Entry entry, byte[] content) throws IOException {
+        final ZipEntry stored = new ZipEntry(entry.getName());
+        stored.setMethod(ZipEntry.STORED);
+        stored.setSize(content.length);
+        stored.setCompressedSize(content.length);
+        stored.setCrc(entry.getCrc());
+        output.putNextEntry(stored);
+        output.write(content);
+        output.closeEntry();
+    }
+}
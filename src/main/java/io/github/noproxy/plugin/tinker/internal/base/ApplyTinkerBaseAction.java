@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.noproxy.plugin.tinker.internal.base;
+
+import org.gradle.api.Action;
+import org.gradle.api.Task;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Gives the shared tinker extensions the base of one variant while one tinker task runs, and gives them the previous
+ * values back once it's done.
+ * <p>
+ * The tinker tasks read {@code tinkerPatch} and {@code tinkerPatch.buildConfig} when they run and have no settings of
+ * their own, so this is the only way to give each variant its own base. The tasks of a project run one at a time, so
+ * no other task sees the values of the variant, unless the tinker task fails.
+ * <p>
+ * A class rather than a lambda, so the task stays cacheable.
+ */
+public class ApplyTinkerBaseAction implements Action<Task> {
+    private final Provider<RegularFile> baseFile;
+    private final List<Setting<?>> settings = new ArrayList<>();
+
+    public ApplyTinkerBaseAction(Provider<RegularFile> baseFile) {
+        this.baseFile = baseFile;
+    }
+
+    /**
+     * @param value the value for the base, or null to keep the configured one
+     */
+    @NotNull
+    public <T> ApplyTinkerBaseAction set(Supplier<T> getter, Consumer<T> setter, Function<TinkerBase, T> value) {
+        settings.add(new Setting<>(getter, setter, value));
+        return this;
+    }
+
+    @Override
+    public void execute(@NotNull Task task) {
+        final TinkerBase base = TinkerBase.read(baseFile.get().getAsFile());
+        settings.forEach(setting -> setting.apply(base));
+    }
+
+    /**
+     * @return the action giving the extensions their previous values back
+     */
+    @NotNull
+    public Action<Task> restore() {
+        return new Restore();
+    }
+
+    private class Restore implements Action<Task> {
+        @Override
+        public void execute(@NotNull Task task) {
+            settings.forEach(Setting::restore);
+        }
+    }
+
+    private static class Setting<T> {
+        private final Supplier<T> getter;
+        private final Consumer<T> setter;
+        private final Function<TinkerBase, T> value;
+        @Nullable
+        private T previous;
+        private boolean applied;
+
+        Setting(Supplier<T> getter, Consumer<T> setter, Function<TinkerBase, T> value) {
+            this.getter = getter;
+            this.setter = setter;
+            this.value = value;
+        }
+
+        void apply(TinkerBase base) {
+            final T forBase = value.apply(base);
+            if (forBase == null) {
+                return;
+            }
+            previous = getter.get();
+            applied = true;
+            setter.accept(forBase);
+        }
+
+        void restore() {
+            if (applied) {
+                setter.accept(previous);
+                applied = false;
+            }
+        }
+    }
+}
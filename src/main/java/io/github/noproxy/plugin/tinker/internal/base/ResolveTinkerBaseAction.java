@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.base;
+
+import io.github.noproxy.plugin.tinker.internal.apk.StoredApkCache;
+import io.github.noproxy.plugin.tinker.internal.mapping.MappingPruner;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Unpacks the base apk and prunes the base mapping of one variant if requested, and writes its {@link TinkerBase}.
+ * A failure to unpack only means tinkerPatch gets the original apk.
+ */
+public abstract class ResolveTinkerBaseAction implements WorkAction<ResolveTinkerBaseAction.Parameters> {
+    private static final Logger LOGGER = Logging.getLogger(ResolveTinkerBaseAction.class);
+
+    @Override
+    public void execute() {
+        final Parameters parameters = getParameters();
+        final File cacheDir = parameters.getCacheDirectory().get().getAsFile();
+
+        final File baseApk = parameters.getApk().isPresent() ? parameters.getApk().get().getAsFile() : null;
+        File apk = baseApk;
+        if (apk != null && parameters.getUnpackBase().get()) {
+            try {
+                apk = new StoredApkCache(new File(cacheDir, "unpacked-base"), LOGGER).get(baseApk);
+            } catch (IOException e) {
+                LOGGER.warn("TinkerMavenPublish: can not unpack base apk " + apk + ", tinkerPatch will use it as is: " + e.getMessage());
+            }
+        }
+
+        File mapping = parameters.getMapping().isPresent() ? parameters.getMapping().get().getAsFile() : null;
+        if (mapping != null && parameters.getPruneMapping().get()) {
+            mapping = new MappingPruner(new File(cacheDir, "pruned-mapping"), LOGGER).prune(mapping, parameters.getClasses());
+        }
+
+        final File symbol = parameters.getSymbol().isPresent() ? parameters.getSymbol().get().getAsFile() : null;
+        final File baseFile = parameters.getBaseFile().get().getAsFile();
+        try {
+            new TinkerBase(baseApk, apk, mapping, symbol).write(baseFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + baseFile, e);
+        }
+    }
+
+    public interface Parameters extends WorkParameters {
+        RegularFileProperty getApk();
+
+        RegularFileProperty getMapping();
+
+        RegularFileProperty getSymbol();
+
+        Property<Boolean> getUnpackBase();
+
+        Property<Boolean> getPruneMapping();
+
+        ConfigurableFileCollection getClasses();
+
+        DirectoryProperty getCacheDirectory();
+
+        RegularFileProperty getBaseFile();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.base;
+
+import com.android.build.gradle.api.ApplicationVariant;
+import io.github.noproxy.plugin.tinker.api.Resolver;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkerExecutor;
+import org.jetbrains.annotations.NotNull;
+
+import javax.inject.Inject;
+import java.io.File;
+
+import static org.codehaus.groovy.runtime.StringGroovyMethods.capitalize;
+
+/**
+ * Resolves the base apk, mapping.txt and R.txt of one variant and prepares them for the tinker tasks of that variant.
+ * <p>
+ * Resolving needs the project, so it happens in the task action; unpacking the apk and pruning the mapping happen in a
+ * worker action, which runs concurrently with those of the other variants. The result is written to
+ * {@link #getBaseFile()}, so the tinker tasks of each variant read their own base instead of one that another variant
+ * left in the shared tinkerPatch extension.
+ */
+public class ResolveTinkerBaseTask extends DefaultTask {
+    private final WorkerExecutor workerExecutor;
+    private final Property<Boolean> ignoreMapping;
+    private final Property<Boolean> pruneMapping;
+    private final Property<Boolean> unpackBase;
+    private final ConfigurableFileCollection classes;
+    private final DirectoryProperty cacheDirectory;
+    private final RegularFileProperty baseFile;
+    private Resolver resolver;
+    private ApplicationVariant variant;
+
+    @Inject
+    public ResolveTinkerBaseTask(WorkerExecutor workerExecutor, ObjectFactory objects) {
+        this.workerExecutor = workerExecutor;
+        this.ignoreMapping = objects.property(Boolean.class).convention(false);
+        this.pruneMapping = objects.property(Boolean.class).convention(false);
+        this.unpackBase = objects.property(Boolean.class).convention(false);
+        this.classes = objects.fileCollection();
+        this.cacheDirectory = objects.directoryProperty();
+        this.baseFile = objects.fileProperty();
+        // the base version may have been republished or become available since the last build
+        getOutputs().upToDateWhen(ignored -> false);
+    }
+
+    @NotNull
+    public static String getTaskName(String variantName) {
+        return "tinkerResolve" + capitalize((CharSequence) variantName) + "Base";
+    }
+
+    @Input
+    public Property<Boolean> getIgnoreMapping() {
+        return ignoreMapping;
+    }
+
+    @Input
+    public Property<Boolean> getPruneMapping() {
+        return pruneMapping;
+    }
+
+    @Input
+    public Property<Boolean> getUnpackBase() {
+        return unpackBase;
+    }
+
+    /**
+     * The classes of the current build the mapping is pruned to.
+     */
+    @Internal
+    public ConfigurableFileCollection getClasses() {
+        return classes;
+    }
+
+    /**
+     * Contains the unpacked-base and pruned-mapping caches.
+     */
+    @Internal
+    public DirectoryProperty getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    @OutputFile
+    public RegularFileProperty getBaseFile() {
+        return baseFile;
+    }
+
+    @Internal
+    public Resolver getResolver() {
+        return resolver;
+    }
+
+    public void setResolver(Resolver resolver) {
+        this.resolver = resolver;
+    }
+
+    @Internal
+    public ApplicationVariant getVariant() {
+        return variant;
+    }
+
+    public void setVariant(ApplicationVariant variant) {
+        this.variant = variant;
+    }
+
+    @TaskAction
+    public void resolve() {
+        final File apk = resolver.resolveApk(variant);
+
+        File mapping = null;
+        if (ignoreMapping.get()) {
+            getLogger().warn("skip resolving the mapping.txt file because ignoreMapping = true");
+        } else {
+            mapping = resolver.resolveMapping(variant);
+            if (mapping == null) {
+                getLogger().warn("Can not find the mapping.txt file in Maven Repository, continue build without mapping file.");
+            }
+        }
+
+        final File symbol = resolver.resolveSymbol(variant);
+        if (symbol == null) {
+            getLogger().warn("Can not find the R.txt file in Maven Repository, continue build without R file.");
+        }
+
+        final File resolvedMapping = mapping;
+        workerExecutor.noIsolation().submit(ResolveTinkerBaseAction.class, parameters -> {
+            parameters.getApk().set(apk);
+            parameters.getMapping().set(resolvedMapping);
+            parameters.getSymbol().set(symbol);
+            parameters.getUnpackBase().set(unpackBase);
+            parameters.getPruneMapping().set(pruneMapping);
+            parameters.getClasses().from(classes);
+            parameters.getCacheDirectory().set(cacheDirectory);
+            parameters.getBaseFile().set(baseFile);
+        });
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.base;
+
+import org.gradle.api.UncheckedIOException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * The base artifacts the tinker tasks of one variant work with, as prepared by {@link ResolveTinkerBaseTask}.
+ */
+public class TinkerBase {
+    private static final String BASE_APK = "baseApk";
+    private static final String OLD_APK = "oldApk";
+    private static final String APPLY_MAPPING = "applyMapping";
+    private static final String APPLY_RESOURCE_MAPPING = "applyResourceMapping";
+
+    @Nullable
+    private final File baseApk;
+    @Nullable
+    private final File oldApk;
+    @Nullable
+    private final File applyMapping;
+    @Nullable
+    private final File applyResourceMapping;
+
+    public TinkerBase(@Nullable File baseApk, @Nullable File oldApk, @Nullable File applyMapping, @Nullable File applyResourceMapping) {
+        this.baseApk = baseApk;
+        this.oldApk = oldApk;
+        this.applyMapping = applyMapping;
+        this.applyResourceMapping = applyResourceMapping;
+    }
+
+    @NotNull
+    public static TinkerBase read(@NotNull File file) {
+        final Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            properties.load(input);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        }
+        return new TinkerBase(toFile(properties.getProperty(BASE_APK)), toFile(properties.getProperty(OLD_APK)), toFile(properties.getProperty(APPLY_MAPPING)),
+                toFile(properties.getProperty(APPLY_RESOURCE_MAPPING)));
+    }
+
+    @Nullable
+    private static File toFile(@Nullable String path) {
+        return path == null ? null : new File(path);
+    }
+
+    public void write(@NotNull File file) throws IOException {
+        final Properties properties = new Properties();
+        if (baseApk != null) {
+            properties.setProperty(BASE_APK, baseApk.getAbsolutePath());
+        }
+        if (oldApk != null) {
+            properties.setProperty(OLD_APK, oldApk.getAbsolutePath());
+        }
+        if (applyMapping != null) {
+            properties.setProperty(APPLY_MAPPING, applyMapping.getAbsolutePath());
+        }
+        if (applyResourceMapping != null) {
+            properties.setProperty(APPLY_RESOURCE_MAPPING, applyResourceMapping.getAbsolutePath());
+        }
+
+        // without the timestamp comment, so the file only changes when the base does
+        final StringWriter content = new StringWriter();
+        properties.store(content, null);
+        final List<String> lines = new BufferedReader(new StringReader(content.toString())).lines()
+                .filter(line -> !line.startsWith("#")).sorted().collect(Collectors.toList());
+
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), lines, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * The base apk as resolved, {@link #getOldApk()} may be an unpacked copy of it.
+     */
+    @Nullable
+    public File getBaseApk() {
+        return baseApk;
+    }
+
+    @Nullable
+    public File getOldApk() {
+        return oldApk;
+    }
+
+    @Nullable
+    public File getApplyMapping() {
+        return applyMapping;
+    }
+
+    @Nullable
+    public File getApplyResourceMapping() {
+        return applyResourceMapping;
+    }
+}
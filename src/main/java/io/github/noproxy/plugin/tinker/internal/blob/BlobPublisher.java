@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.blob;
+
+import io.github.noproxy.plugin.tinker.internal.ArtifactType;
+import io.github.noproxy.plugin.tinker.internal.PrepareTinkerArtifactsTask;
+import io.github.noproxy.plugin.tinker.internal.PublishedVariant;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransport;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransports;
+import io.github.noproxy.plugin.tinker.internal.transport.ResourceMetadata;
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.Task;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uploads the blobs behind the content pointers and the chunk list of a variant before its publication, so a published
+ * pointer never names a missing blob. Blobs already in the repository, e.g. from another flavor or version, are not
+ * uploaded again.
+ */
+public class BlobPublisher implements Action<Task> {
+    private static final int PARALLELISM = 8;
+
+    private final MavenArtifactRepository repository;
+    private final PublishedVariant variant;
+
+    public BlobPublisher(MavenArtifactRepository repository, PublishedVariant variant) {
+        this.repository = repository;
+        this.variant = variant;
+    }
+
+    @Override
+    public void execute(@NotNull Task task) {
+        final RepositoryTransport transport = RepositoryTransports.create(repository);
+        if (transport == null) {
+            throw new GradleException("TinkerMavenPublish: can not store deduplicated or chunked artifacts in repository '" + repository.getName()
+                    + "', unsupported protocol: " + repository.getUrl());
+        }
+
+        try {
+            publish(transport, variant.getLocator().getModulePath(), variant.getPrepareTask().get(), task.getLogger());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to upload blobs of '" + variant.getVariantName() + "' to " + transport.getDisplayName(), e);
+        }
+    }
+
+    public static void publish(RepositoryTransport transport, String modulePath, PrepareTinkerArtifactsTask prepareTask, Logger logger) throws IOException {
+        for (ArtifactType type : ArtifactType.values()) {
+            final File pointerFile = prepareTask.getPointerFile(type).get().getAsFile();
+            if (type == ArtifactType.APK || !pointerFile.isFile()) {
+                continue;
+            }
+
+            final ContentPointer pointer = ContentPointer.read(pointerFile);
+            final String path = pointer.getBlobPath(modulePath);
+            final ResourceMetadata existing = transport.head(path);
+            if (existing != null && existing.getContentLength() == pointer.getSize()) {
+                logger.info("TinkerMavenPublish: " + type + " is already stored as " + path);
+                continue;
+            }
+
+            // a concurrent upload of the same path carries the same content
+            transport.upload(path, prepareTask.getArtifactFile(type).get().getAsFile(), existing == null ? ResourceMetadata.ABSENT_ETAG : null);
+            logger.info("TinkerMavenPublish: stored " + type + " as " + path + " in " + transport.getDisplayName());
+        }
+
+        final File chunkListFile = prepareTask.getChunkListFile().get().getAsFile();
+        if (chunkListFile.isFile()) {
+            publishChunks(transport, modulePath, ChunkList.read(chunkListFile), prepareTask.getChunkDirectory().get().getAsFile(), logger);
+        }
+    }
+
+    private static void publishChunks(RepositoryTransport transport, String modulePath, ChunkList chunkList, File chunkDir, Logger logger) throws IOException {
+        final List<ContentPointer> chunks = chunkList.getDistinctChunks();
+        final AtomicLong uploadedBytes = new AtomicLong();
+        final AtomicInteger uploaded = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(PARALLELISM, chunks.size())), runnable -> {
+            final Thread thread = new Thread(runnable, "tinker-publish-chunks");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (ContentPointer chunk : chunks) {
+                futures.add(executor.submit(() -> {
+                    final String path = chunk.getBlobPath(modulePath);
+                    final ResourceMetadata existing = transport.head(path);
+                    if (existing == null || existing.getContentLength() != chunk.getSize()) {
+                        transport.upload(path, new File(chunkDir, chunk.getSha256()), existing == null ? ResourceMetadata.ABSENT_ETAG : null);
+                        uploaded.incrementAndGet();
+                        uploadedBytes.addAndGet(chunk.getSize());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted uploading chunks to " + transport.getDisplayName(), e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.quiet("TinkerMavenPublish: stored " + uploaded.get() + " of " + chunks.size() + " chunks (" + uploadedBytes.get()
+                + " of " + chunkList.getSize() + " bytes) of the apk in " + transport.getDisplayName());
+    }
+}
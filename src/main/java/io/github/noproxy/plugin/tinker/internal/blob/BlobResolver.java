@@ -0,0 +1,253 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.blob;
+
+import io.github.noproxy.plugin.tinker.internal.Checksums;
+import io.github.noproxy.plugin.tinker.internal.transport.ArtifactDownloader;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Follows content pointers to their blobs, and reassembles chunked apks from the chunks missing locally. Blobs are
+ * immutable, so the local copy is reused as long as it's intact.
+ */
+public class BlobResolver {
+    private static final int PARALLELISM = 8;
+
+    private final File cacheDir;
+    private final Logger logger;
+
+    public BlobResolver(File cacheDir, Logger logger) {
+        this.cacheDir = cacheDir;
+        this.logger = logger;
+    }
+
+    /**
+     * @return the blob of the pointer, the apk of the chunk list, or the file itself if it's neither
+     */
+    @NotNull
+    public File resolve(@NotNull File file, @NotNull String modulePath, @NotNull ArtifactDownloader downloader) throws IOException {
+        if (ChunkList.isChunkList(file)) {
+            return assemble(file, ChunkList.read(file), modulePath, downloader);
+        }
+        if (!ContentPointer.isPointer(file)) {
+            return file;
+        }
+
+        return fetch(file, ContentPointer.read(file), modulePath, downloader);
+    }
+
+    /**
+     * Works out what {@link #resolve} would download for the file, from the local cache only.
+     *
+     * @return null if the file is neither a pointer nor a chunk list
+     */
+    @Nullable
+    public Content inspect(@NotNull File file) throws IOException {
+        if (ChunkList.isChunkList(file)) {
+            final ChunkList chunkList = ChunkList.read(file);
+            final int chunks = chunkList.getDistinctChunks().size();
+            if (isAssembled(chunkList)) {
+                return new Content(chunkList.getSize(), chunks, 0, 0);
+            }
+            final List<ContentPointer> missing = getMissingChunks(chunkList);
+            return new Content(chunkList.getSize(), chunks, missing.size(), missing.stream().mapToLong(ContentPointer::getSize).sum());
+        }
+        if (!ContentPointer.isPointer(file)) {
+            return null;
+        }
+
+        final ContentPointer pointer = ContentPointer.read(file);
+        final boolean present = isPresent(pointer);
+        return new Content(pointer.getSize(), 1, present ? 0 : 1, present ? 0 : pointer.getSize());
+    }
+
+    private File getBlobFile(ContentPointer pointer) {
+        return new File(cacheDir, pointer.getSha256().substring(0, 2) + "/" + pointer.getSha256());
+    }
+
+    private boolean isPresent(ContentPointer pointer) {
+        final File blob = getBlobFile(pointer);
+        return blob.isFile() && blob.length() == pointer.getSize();
+    }
+
+    private File getApkFile(ChunkList chunkList) {
+        return new File(cacheDir, "apk/" + chunkList.getSha256() + ".apk");
+    }
+
+    private boolean isAssembled(ChunkList chunkList) {
+        final File apk = getApkFile(chunkList);
+        return apk.isFile() && apk.length() == chunkList.getSize();
+    }
+
+    private List<ContentPointer> getMissingChunks(ChunkList chunkList) {
+        return chunkList.getDistinctChunks().stream()
+                .filter(chunk -> !isPresent(chunk))
+                .collect(Collectors.toList());
+    }
+
+    private File fetch(File referrer, ContentPointer pointer, String modulePath, ArtifactDownloader downloader) throws IOException {
+        final File blob = getBlobFile(pointer);
+        if (isPresent(pointer)) {
+            return blob;
+        }
+
+        final String path = pointer.getBlobPath(modulePath);
+        blob.getParentFile().mkdirs();
+        final File temp = Files.createTempFile(blob.getParentFile().toPath(), blob.getName(), ".part").toFile();
+        try {
+            final long start = System.currentTimeMillis();
+            if (downloader.download(path, temp) == null) {
+                throw new GradleException("TinkerMavenPublish: blob " + path + " referenced by " + referrer + " not found");
+            }
+
+            final String actual = Checksums.sha256(temp);
+            if (!actual.equals(pointer.getSha256())) {
+                throw new GradleException("TinkerMavenPublish: blob " + path + " is corrupted, its sha256 is " + actual);
+            }
+            Files.move(temp.toPath(), blob.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("TinkerMavenPublish: downloaded " + path + " in " + (System.currentTimeMillis() - start) + "ms");
+            return blob;
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private File assemble(File file, ChunkList chunkList, String modulePath, ArtifactDownloader downloader) throws IOException {
+        final File apk = getApkFile(chunkList);
+        if (isAssembled(chunkList)) {
+            return apk;
+        }
+
+        final List<ContentPointer> missing = getMissingChunks(chunkList);
+        final long start = System.currentTimeMillis();
+        fetchAll(file, missing, modulePath, downloader);
+        logger.quiet("TinkerMavenPublish: downloaded " + missing.size() + " of " + chunkList.getDistinctChunks().size() + " chunks ("
+                + missing.stream().mapToLong(ContentPointer::getSize).sum() + " of " + chunkList.getSize() + " bytes) of "
+                + file.getName() + " in " + (System.currentTimeMillis() - start) + "ms");
+
+        apk.getParentFile().mkdirs();
+        final File temp = Files.createTempFile(apk.getParentFile().toPath(), apk.getName(), ".part").toFile();
+        try {
+            final MessageDigest digest = Checksums.newSha256();
+            try (OutputStream output = new DigestOutputStream(Files.newOutputStream(temp.toPath()), digest)) {
+                for (ContentPointer chunk : chunkList.getChunks()) {
+                    Files.copy(getBlobFile(chunk).toPath(), output);
+                }
+            }
+            final String actual = Checksums.toHex(digest.digest());
+            if (!actual.equals(chunkList.getSha256())) {
+                throw new GradleException("TinkerMavenPublish: apk reassembled from " + file + " is corrupted, its sha256 is " + actual);
+            }
+            Files.move(temp.toPath(), apk.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return apk;
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private void fetchAll(File referrer, List<ContentPointer> chunks, String modulePath, ArtifactDownloader downloader) throws IOException {
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(PARALLELISM, chunks.size()), runnable -> {
+            final Thread thread = new Thread(runnable, "tinker-fetch-chunks");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<File>> futures = new ArrayList<>();
+            for (ContentPointer chunk : chunks) {
+                futures.add(executor.submit(() -> fetch(referrer, chunk, modulePath, downloader)));
+            }
+            for (Future<File> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted downloading the chunks of " + referrer, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The content behind a pointer or a chunk list, and how much of it is missing locally.
+     */
+    public static final class Content {
+        private final long size;
+        private final int chunks;
+        private final int missingChunks;
+        private final long missingBytes;
+
+        Content(long size, int chunks, int missingChunks, long missingBytes) {
+            this.size = size;
+            this.chunks = chunks;
+            this.missingChunks = missingChunks;
+            this.missingBytes = missingBytes;
+        }
+
+        /**
+         * @return the size of the blob or the reassembled apk
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the number of distinct chunks, 1 for the blob of a pointer
+         */
+        public int getChunks() {
+            return chunks;
+        }
+
+        public int getMissingChunks() {
+            return missingChunks;
+        }
+
+        public long getMissingBytes() {
+            return missingBytes;
+        }
+
+        public boolean isComplete() {
+            return missingChunks == 0;
+        }
+    }
+}
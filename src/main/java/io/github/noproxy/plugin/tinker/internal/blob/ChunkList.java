@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.blob;
+
+import org.gradle.api.GradleException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A small file published in place of an apk, listing the {@link Chunker chunks} the apk is made of in order.
+ * <p>
+ * Chunks are stored as blobs, see {@link ContentPointer#getBlobPath(String)}, so apks of different versions and
+ * flavors share the chunks they have in common.
+ */
+public final class ChunkList {
+    private static final String MAGIC = "#tinker-chunk-list v1";
+    private static final String SHA256 = "sha256=";
+    private static final String SIZE = "size=";
+    private static final String CHUNK = "chunk=";
+
+    private final String sha256;
+    private final long size;
+    private final List<ContentPointer> chunks;
+
+    private ChunkList(String sha256, long size, List<ContentPointer> chunks) {
+        this.sha256 = sha256;
+        this.size = size;
+        this.chunks = Collections.unmodifiableList(chunks);
+    }
+
+    @NotNull
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The sha256 of the whole apk.
+     */
+    @NotNull
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @NotNull
+    public List<ContentPointer> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return every chunk once, in the order of their first occurrence
+     */
+    @NotNull
+    public List<ContentPointer> getDistinctChunks() {
+        final Set<String> seen = new HashSet<>();
+        final List<ContentPointer> distinct = new ArrayList<>();
+        for (ContentPointer chunk : chunks) {
+            if (seen.add(chunk.getSha256())) {
+                distinct.add(chunk);
+            }
+        }
+        return distinct;
+    }
+
+    public static boolean isChunkList(@NotNull File file) throws IOException {
+        return ContentPointer.startsWith(file, MAGIC);
+    }
+
+    @NotNull
+    public static ChunkList read(@NotNull File file) throws IOException {
+        String sha256 = null;
+        long size = -1;
+        final List<ContentPointer> chunks = new ArrayList<>();
+        final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        for (String line : lines) {
+            if (line.startsWith(SHA256)) {
+                sha256 = line.substring(SHA256.length()).trim();
+            } else if (line.startsWith(SIZE)) {
+                size = Long.parseLong(line.substring(SIZE.length()).trim());
+            } else if (line.startsWith(CHUNK)) {
+                final String[] chunk = line.substring(CHUNK.length()).trim().split(" ");
+                chunks.add(new ContentPointer(chunk[0], Long.parseLong(chunk[1])));
+            }
+        }
+
+        final long total = chunks.stream().mapToLong(ContentPointer::getSize).sum();
+        if (lines.isEmpty() || !MAGIC.equals(lines.get(0)) || sha256 == null || sha256.length() != 64 || total != size) {
+            throw new GradleException("Malformed chunk list: " + file);
+        }
+        return new ChunkList(sha256, size, chunks);
+    }
+
+    public void write(@NotNull File file) throws IOException {
+        final StringBuilder content = new StringBuilder(MAGIC).append('\n')
+                .append(SHA256).append(sha256).append('\n')
+                .append(SIZE).append(size).append('\n');
+        for (ContentPointer chunk : chunks) {
+            content.append(CHUNK).append(chunk.getSha256()).append(' ').append(chunk.getSize()).append('\n');
+        }
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static final class Builder {
+        private final List<ContentPointer> chunks = new ArrayList<>();
+
+        void add(String sha256, long size) {
+            chunks.add(new ContentPointer(sha256, size));
+        }
+
+        ChunkList build(String sha256, long size) {
+            return new ChunkList(sha256, size, chunks);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.blob;
+
+import io.github.noproxy.plugin.tinker.internal.Checksums;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Splits a file into content-defined chunks with a gear rolling hash, so an insertion only changes the chunks around
+ * it and unchanged regions of different apks yield identical chunks.
+ * <p>
+ * Chunks are 16KB to 256KB, 64KB on average. The cut condition is stricter before the average size and looser after
+ * it, which keeps the sizes close to the average. It tests the high bits of the hash like FastCDC: the low bits of a
+ * gear hash only depend on the last few bytes, the high ones on the last 64.
+ */
+public final class Chunker {
+    static final int MIN_SIZE = 16 * 1024;
+    static final int AVERAGE_SIZE = 64 * 1024;
+    static final int MAX_SIZE = 256 * 1024;
+    private static final long MASK_SMALL = -1L << (Long.SIZE - 18);
+    private static final long MASK_LARGE = -1L << (Long.SIZE - 14);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // fixed, so publishers of any version cut identical regions at the same places and share their chunks
+        final Random random = new Random(0x74696e6b6572L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private Chunker() {
+    }
+
+    /**
+     * Writes the chunks of the file to {@code chunkDir}, named by their sha256.
+     *
+     * @return the list of the chunks of the file
+     */
+    @NotNull
+    public static ChunkList split(@NotNull File file, @NotNull File chunkDir) throws IOException {
+        chunkDir.mkdirs();
+        final MessageDigest whole = Checksums.newSha256();
+        final ChunkList.Builder chunks = ChunkList.builder();
+        final byte[] chunk = new byte[MAX_SIZE];
+        int length = 0;
+        long hash = 0;
+
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                whole.update(buffer, 0, read);
+                for (int i = 0; i < read; i++) {
+                    chunk[length++] = buffer[i];
+                    hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+                    if (length >= MIN_SIZE && (hash & (length < AVERAGE_SIZE ? MASK_SMALL : MASK_LARGE)) == 0 || length == MAX_SIZE) {
+                        chunks.add(writeChunk(chunk, length, chunkDir), length);
+                        length = 0;
+                        hash = 0;
+                    }
+                }
+            }
+        }
+        if (length > 0) {
+            chunks.add(writeChunk(chunk, length, chunkDir), length);
+        }
+        return chunks.build(Checksums.toHex(whole.digest()), file.length());
+    }
+
+    private static String writeChunk(byte[] chunk, int length, File chunkDir) throws IOException {
+        final MessageDigest digest = Checksums.newSha256();
+        digest.update(chunk, 0, length);
+        final String sha256 = Checksums.toHex(digest.digest());
+
+        final File destination = new File(chunkDir, sha256);
+        if (!destination.isFile() || destination.length() != length) {
+            final File temp = new File(chunkDir, sha256 + "." + Thread.currentThread().getId() + ".tmp");
+            try {
+                Files.write(temp.toPath(), Arrays.copyOf(chunk, length));
+                Files.move(temp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+        }
+        return sha256;
+    }
+}
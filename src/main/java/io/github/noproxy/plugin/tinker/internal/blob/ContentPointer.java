@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.blob;
+
+import org.gradle.api.GradleException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A small file published in place of a mapping.txt or R.txt, naming the content-addressed blob that holds the payload.
+ * <p>
+ * Blobs live next to the versions of a module under {@code blobs/sha256/}, so flavors with identical files share one copy.
+ */
+public final class ContentPointer {
+    private static final String MAGIC = "#tinker-content-pointer v1";
+    private static final String SHA256 = "sha256=";
+    private static final String SIZE = "size=";
+
+    private final String sha256;
+    private final long size;
+
+    public ContentPointer(@NotNull String sha256, long size) {
+        this.sha256 = sha256;
+        this.size = size;
+    }
+
+    @NotNull
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @NotNull
+    public String getBlobPath(@NotNull String modulePath) {
+        return modulePath + "/blobs/sha256/" + sha256.substring(0, 2) + "/" + sha256;
+    }
+
+    public static boolean isPointer(@NotNull File file) throws IOException {
+        return startsWith(file, MAGIC);
+    }
+
+    static boolean startsWith(File file, String prefix) throws IOException {
+        final byte[] magic = prefix.getBytes(StandardCharsets.UTF_8);
+        if (file.length() < magic.length) {
+            return false;
+        }
+
+        final byte[] head = new byte[magic.length];
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            int offset = 0;
+            while (offset < head.length) {
+                final int read = input.read(head, offset, head.length - offset);
+                if (read == -1) {
+                    return false;
+                }
+                offset += read;
+            }
+        }
+        return Arrays.equals(head, magic);
+    }
+
+    @NotNull
+    public static ContentPointer read(@NotNull File file) throws IOException {
+        String sha256 = null;
+        long size = -1;
+        final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        for (String line : lines) {
+            if (line.startsWith(SHA256)) {
+                sha256 = line.substring(SHA256.length()).trim();
+            } else if (line.startsWith(SIZE)) {
+                size = Long.parseLong(line.substring(SIZE.length()).trim());
+            }
+        }
+
+        if (lines.isEmpty() || !MAGIC.equals(lines.get(0)) || sha256 == null || sha256.length() != 64 || size < 0) {
+            throw new GradleException("Malformed content pointer: " + file);
+        }
+        return new ContentPointer(sha256, size);
+    }
+
+    public void write(@NotNull File file) throws IOException {
+        Files.write(file.toPath(), (MAGIC + "\n" + SHA256 + sha256 + "\n" + SIZE + size + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
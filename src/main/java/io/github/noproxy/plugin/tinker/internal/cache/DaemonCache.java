@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.github.noproxy.plugin.tinker.internal.Checksums;
+import org.gradle.api.UncheckedIOException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Keeps checksums, resolved files and parsed base artifacts in memory for as long as the Gradle daemon lives.
+ * <p>
+ * Every entry belongs to a file and is only returned while the size, modification time and file key of that file are
+ * unchanged. A resolved file whose attributes changed is still returned if its content has the same checksum. The
+ * cache holds at most {@link #MAX_WEIGHT} estimated bytes and evicts the least recently used entries beyond that.
+ */
+public final class DaemonCache {
+    static final long MAX_WEIGHT = 64 * 1024 * 1024;
+    private static final DaemonCache INSTANCE = new DaemonCache(MAX_WEIGHT);
+
+    private final Cache<String, Entry> entries;
+
+    DaemonCache(long maxWeight) {
+        this.entries = CacheBuilder.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String key, Entry entry) -> (int) Math.min(Integer.MAX_VALUE, 2L * key.length() + entry.weight))
+                .build();
+    }
+
+    @NotNull
+    public static DaemonCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Same as {@link Checksums#sha256(File)}, computed once per version of the file.
+     */
+    @NotNull
+    public String sha256(@NotNull File file) {
+        return parse("sha256", file, Checksums::sha256, sha256 -> (long) sha256.length() * 2);
+    }
+
+    /**
+     * @param kind   what the file is parsed into, so one file can be parsed in several ways
+     * @param weight estimated size of the parsed value in bytes
+     * @return the value parsed from the current version of the file
+     */
+    @NotNull
+    public <T> T parse(@NotNull String kind, @NotNull File file, @NotNull Function<File, T> parser, @NotNull Function<T, Long> weight) {
+        final String key = kind + ":" + file.getAbsolutePath();
+        final FileKey fileKey = FileKey.of(file);
+        final Entry cached = entries.getIfPresent(key);
+        if (cached != null && fileKey != null && fileKey.equals(cached.fileKey)) {
+            //noinspection unchecked
+            return (T) cached.value;
+        }
+
+        final T value = parser.apply(file);
+        if (fileKey != null && fileKey.equals(FileKey.of(file))) {
+            entries.put(key, new Entry(value, file, fileKey, null, weight.apply(value)));
+        }
+        return value;
+    }
+
+    /**
+     * @return the file that was resolved for the key, if it still has the content it had when it was resolved
+     */
+    @Nullable
+    public File getResolved(@NotNull String key) {
+        final Entry cached = entries.getIfPresent("resolved:" + key);
+        if (cached == null) {
+            return null;
+        }
+
+        final FileKey fileKey = FileKey.of(cached.file);
+        if (fileKey == null) {
+            entries.invalidate("resolved:" + key);
+            return null;
+        }
+        if (!fileKey.equals(cached.fileKey)) {
+            if (!cached.sha256.equals(sha256(cached.file))) {
+                entries.invalidate("resolved:" + key);
+                return null;
+            }
+            entries.put("resolved:" + key, new Entry(cached.file, cached.file, fileKey, cached.sha256, cached.weight));
+        }
+        return cached.file;
+    }
+
+    public void putResolved(@NotNull String key, @NotNull File file) {
+        final FileKey fileKey = FileKey.of(file);
+        if (fileKey != null) {
+            entries.put("resolved:" + key, new Entry(file, file, fileKey, sha256(file), 2L * file.getPath().length()));
+        }
+    }
+
+    /**
+     * The weight of a collection of strings, e.g. class names.
+     */
+    public static long weigh(@NotNull Collection<String> strings) {
+        long weight = 0;
+        for (String string : strings) {
+            weight += 40 + 2L * string.length();
+        }
+        return weight;
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final File file;
+        private final FileKey fileKey;
+        private final String sha256;
+        private final long weight;
+
+        Entry(Object value, File file, FileKey fileKey, @Nullable String sha256, long weight) {
+            this.value = value;
+            this.file = file;
+            this.fileKey = fileKey;
+            this.sha256 = sha256;
+            this.weight = weight;
+        }
+    }
+
+    private static final class FileKey {
+        private final long size;
+        private final long lastModified;
+        @Nullable
+        private final Object key;
+
+        private FileKey(long size, long lastModified, @Nullable Object key) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.key = key;
+        }
+
+        @Nullable
+        static FileKey of(File file) {
+            try {
+                final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                return attributes.isRegularFile()
+                        ? new FileKey(attributes.size(), attributes.lastModifiedTime().toMillis(), attributes.fileKey()) : null;
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read the attributes of " + file, e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final FileKey fileKey = (FileKey) o;
+            return size == fileKey.size && lastModified == fileKey.lastModified && Objects.equals(key, fileKey.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModified, key);
+        }
+    }
+}
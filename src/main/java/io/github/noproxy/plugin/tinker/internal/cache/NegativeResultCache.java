@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.cache;
+
+import org.gradle.api.UncheckedIOException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Remembers across builds which optional artifacts could not be resolved.
+ * <p>
+ * An entry expires after the ttl, or as soon as the fingerprint of the version it belongs to changes, e.g. because
+ * the base version index was updated.
+ */
+public class NegativeResultCache {
+    private static final String NO_FINGERPRINT = "-";
+
+    private final File file;
+    private final long ttlMillis;
+
+    public NegativeResultCache(File file, long ttlMillis) {
+        this.file = file;
+        this.ttlMillis = ttlMillis;
+    }
+
+    private static String value(long timestamp, @Nullable String fingerprint) {
+        return timestamp + "," + (fingerprint == null ? NO_FINGERPRINT : fingerprint);
+    }
+
+    public boolean isMissing(@NotNull String key, @Nullable String fingerprint) {
+        if (ttlMillis <= 0) {
+            return false;
+        }
+
+        final String entry = locked(properties -> properties.getProperty(key));
+        if (entry == null) {
+            return false;
+        }
+
+        final String[] parts = entry.split(",", 2);
+        final long timestamp = Long.parseLong(parts[0]);
+        return System.currentTimeMillis() - timestamp < ttlMillis
+                && Objects.equals(parts[1], fingerprint == null ? NO_FINGERPRINT : fingerprint);
+    }
+
+    public void recordMissing(@NotNull String key, @Nullable String fingerprint) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+
+        locked(properties -> {
+            final long now = System.currentTimeMillis();
+            properties.stringPropertyNames().stream()
+                    .filter(name -> now - Long.parseLong(properties.getProperty(name).split(",", 2)[0]) >= ttlMillis)
+                    .forEach(properties::remove);
+            properties.setProperty(key, value(now, fingerprint));
+            store(properties);
+            return null;
+        });
+    }
+
+    public void recordFound(@NotNull String key) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+
+        locked(properties -> {
+            if (properties.remove(key) != null) {
+                store(properties);
+            }
+            return null;
+        });
+    }
+
+    private <T> T locked(PropertiesAction<T> action) {
+        file.getParentFile().mkdirs();
+        final File lockFile = new File(file.getParentFile(), file.getName() + ".lock");
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            final Properties properties = new Properties();
+            if (file.isFile()) {
+                try (InputStream input = Files.newInputStream(file.toPath())) {
+                    properties.load(input);
+                }
+            }
+            return action.execute(properties);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to access negative result cache " + file, e);
+        }
+    }
+
+    private void store(Properties properties) throws IOException {
+        final File temp = new File(file.getParentFile(), file.getName() + ".part");
+        try (OutputStream output = Files.newOutputStream(temp.toPath())) {
+            properties.store(output, null);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private interface PropertiesAction<T> {
+        T execute(Properties properties) throws IOException;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.index;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.github.noproxy.plugin.tinker.internal.ArtifactType;
+import org.gradle.api.UncheckedIOException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index of all base versions published for one {@code groupId:artifactId}, stored next to its maven-metadata.xml.
+ * <p>
+ * Maps every published maven version (with flavor and buildType suffix) to the artifacts it contains.
+ */
+public class BaseVersionIndex {
+    public static final String FILE_NAME = "tinker-index.json";
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private int formatVersion = 1;
+    private boolean complete;
+    private Map<String, VersionEntry> versions = new TreeMap<>();
+
+    @NotNull
+    public static String getIndexPath(@NotNull String modulePath) {
+        return modulePath + "/" + FILE_NAME;
+    }
+
+    @NotNull
+    public static String key(@NotNull String version, @NotNull ArtifactType type) {
+        return version + ":" + type.name();
+    }
+
+    @NotNull
+    public static BaseVersionIndex read(@NotNull File file) {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            final BaseVersionIndex index = GSON.fromJson(reader, BaseVersionIndex.class);
+            if (index == null) {
+                return new BaseVersionIndex();
+            }
+            if (index.versions == null) {
+                index.versions = new TreeMap<>();
+            }
+            return index;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read index " + file, e);
+        }
+    }
+
+    public void write(@NotNull File file) {
+        file.getParentFile().mkdirs();
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(this, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write index " + file, e);
+        }
+    }
+
+    /**
+     * @return whether the index listed every version of the maven-metadata.xml when it was last updated, so a version
+     * it doesn't list was not published
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    @NotNull
+    public Map<String, VersionEntry> getVersions() {
+        return versions;
+    }
+
+    @Nullable
+    public VersionEntry getVersion(@NotNull String version) {
+        return versions.get(version);
+    }
+
+    public void putVersion(@NotNull String version, @NotNull VersionEntry entry) {
+        versions.put(version, entry);
+    }
+
+    @Nullable
+    public ArtifactEntry getArtifact(@NotNull String version, @NotNull ArtifactType type) {
+        final VersionEntry entry = versions.get(version);
+        return entry == null ? null : entry.getArtifacts().get(type.name());
+    }
+
+    public boolean contains(@NotNull String version, @NotNull ArtifactType type) {
+        return getArtifact(version, type) != null;
+    }
+
+    @NotNull
+    public List<String> keys() {
+        final List<String> keys = new ArrayList<>();
+        versions.forEach((version, entry) -> entry.getArtifacts().keySet()
+                .forEach(type -> keys.add(key(version, ArtifactType.valueOf(type)))));
+        return keys;
+    }
+
+    public static class VersionEntry {
+        private String variant;
+        private String flavor;
+        private String buildType;
+        private Map<String, ArtifactEntry> artifacts = new LinkedHashMap<>();
+
+        public VersionEntry(String variant, String flavor, String buildType) {
+            this.variant = variant;
+            this.flavor = flavor;
+            this.buildType = buildType;
+        }
+
+        public String getVariant() {
+            return variant;
+        }
+
+        public String getFlavor() {
+            return flavor;
+        }
+
+        public String getBuildType() {
+            return buildType;
+        }
+
+        @NotNull
+        public Map<String, ArtifactEntry> getArtifacts() {
+            if (artifacts == null) {
+                artifacts = new LinkedHashMap<>();
+            }
+            return artifacts;
+        }
+
+        public void putArtifact(@NotNull ArtifactType type, @NotNull ArtifactEntry entry) {
+            getArtifacts().put(type.name(), entry);
+        }
+    }
+
+    public static class ArtifactEntry {
+        @Nullable
+        private String classifier;
+        private String extension;
+        private long size;
+        private String sha256;
+
+        public ArtifactEntry(@Nullable String classifier, String extension, long size, String sha256) {
+            this.classifier = classifier;
+            this.extension = extension;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+
+        @Nullable
+        public String getClassifier() {
+            return classifier;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+    }
+}
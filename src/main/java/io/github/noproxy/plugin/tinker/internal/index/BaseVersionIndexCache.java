@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.index;
+
+import io.github.noproxy.plugin.tinker.internal.Checksums;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransport;
+import io.github.noproxy.plugin.tinker.internal.transport.ResourceMetadata;
+import org.gradle.api.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps local copies of remote {@link BaseVersionIndex} files.
+ * <p>
+ * Each index is revalidated at most once per instance with a conditional request, offline builds use the cached copy
+ * as is.
+ */
+public class BaseVersionIndexCache {
+    private static final String ETAG_FILE_NAME = "tinker-index.etag";
+    private static final String FILTER_FILE_NAME = "tinker-index.bloom";
+
+    private final File cacheDir;
+    private final boolean offline;
+    private final Logger logger;
+    private final Map<String, Optional<CachedBaseVersionIndex>> loaded = new HashMap<>();
+
+    public BaseVersionIndexCache(File cacheDir, boolean offline, Logger logger) {
+        this.cacheDir = cacheDir;
+        this.offline = offline;
+        this.logger = logger;
+    }
+
+    private static String readQuietly(File file) {
+        try {
+            return file.isFile() ? new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the index of the module in the repository, or null if the repository has no index for it
+     */
+    @Nullable
+    public synchronized CachedBaseVersionIndex get(@NotNull RepositoryTransport transport, @NotNull String modulePath) {
+        final String key = transport.getDisplayName() + modulePath;
+        return loaded.computeIfAbsent(key, ignored -> Optional.ofNullable(refresh(transport, modulePath, key))).orElse(null);
+    }
+
+    @Nullable
+    private CachedBaseVersionIndex refresh(RepositoryTransport transport, String modulePath, String key) {
+        final File dir = new File(cacheDir, Checksums.toHex(Checksums.newSha256().digest(key.getBytes(StandardCharsets.UTF_8))).substring(0, 32));
+        final File indexFile = new File(dir, BaseVersionIndex.FILE_NAME);
+        final File etagFile = new File(dir, ETAG_FILE_NAME);
+        final File filterFile = new File(dir, FILTER_FILE_NAME);
+
+        boolean fresh = false;
+        if (!offline) {
+            try {
+                final ResourceMetadata metadata = transport.download(BaseVersionIndex.getIndexPath(modulePath), indexFile, readQuietly(etagFile));
+                if (metadata == null) {
+                    logger.info("TinkerMavenPublish: no base version index for " + modulePath + " in " + transport.getDisplayName());
+                    indexFile.delete();
+                    etagFile.delete();
+                    filterFile.delete();
+                    return null;
+                }
+                if (metadata.isModified()) {
+                    filterFile.delete();
+                    if (metadata.getEtag() != null) {
+                        Files.write(etagFile.toPath(), metadata.getEtag().getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        etagFile.delete();
+                    }
+                }
+                fresh = true;
+            } catch (IOException e) {
+                logger.warn("TinkerMavenPublish: failed to refresh base version index from " + transport.getDisplayName()
+                        + ", use cached copy if any: " + e.getMessage());
+            }
+        }
+
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        return CachedBaseVersionIndex.load(indexFile, filterFile, Checksums.sha256(indexFile), fresh);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.index;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.github.noproxy.plugin.tinker.internal.ArtifactType;
+import org.gradle.api.UncheckedIOException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Locally cached copy of a remote {@link BaseVersionIndex}.
+ * <p>
+ * Lookups go through a bloom filter first, so a coordinate that was never published is rejected without parsing the
+ * index at all.
+ * <p>
+ * A copy that could not be revalidated in this build is not fresh, it may predate the latest publish.
+ */
+public class CachedBaseVersionIndex {
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private final File indexFile;
+    private final BloomFilter<CharSequence> filter;
+    private final String checksum;
+    private final boolean fresh;
+    @Nullable
+    private BaseVersionIndex index;
+
+    private CachedBaseVersionIndex(File indexFile, BloomFilter<CharSequence> filter, String checksum, boolean fresh) {
+        this.indexFile = indexFile;
+        this.filter = filter;
+        this.checksum = checksum;
+        this.fresh = fresh;
+    }
+
+    @NotNull
+    static CachedBaseVersionIndex load(@NotNull File indexFile, @NotNull File filterFile, @NotNull String checksum, boolean fresh) {
+        if (filterFile.isFile()) {
+            try (InputStream input = Files.newInputStream(filterFile.toPath())) {
+                return new CachedBaseVersionIndex(indexFile, BloomFilter.readFrom(input, Funnels.stringFunnel(StandardCharsets.UTF_8)), checksum, fresh);
+            } catch (IOException ignored) {
+                // rebuild below
+            }
+        }
+
+        final BaseVersionIndex index = BaseVersionIndex.read(indexFile);
+        final CachedBaseVersionIndex cached = new CachedBaseVersionIndex(indexFile, createFilter(index), checksum, fresh);
+        cached.index = index;
+        cached.writeFilter(filterFile);
+        return cached;
+    }
+
+    private static BloomFilter<CharSequence> createFilter(BaseVersionIndex index) {
+        final List<String> keys = index.keys();
+        final BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                Math.max(keys.size(), 16), FALSE_POSITIVE_PROBABILITY);
+        keys.forEach(filter::put);
+        return filter;
+    }
+
+    private void writeFilter(File filterFile) {
+        try (OutputStream output = Files.newOutputStream(filterFile.toPath())) {
+            filter.writeTo(output);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + filterFile, e);
+        }
+    }
+
+    /**
+     * @return the sha256 of the index file, it changes whenever the remote index changes
+     */
+    @NotNull
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return whether the index was revalidated against the repository in this build
+     */
+    public boolean isFresh() {
+        return fresh;
+    }
+
+    public boolean containsVersion(@NotNull String version) {
+        for (ArtifactType type : ArtifactType.values()) {
+            if (filter.mightContain(BaseVersionIndex.key(version, type))) {
+                return getIndex().getVersion(version) != null;
+            }
+        }
+        return false;
+    }
+
+    public boolean isComplete() {
+        return getIndex().isComplete();
+    }
+
+    public boolean contains(@NotNull String version, @NotNull ArtifactType type) {
+        return filter.mightContain(BaseVersionIndex.key(version, type)) && getIndex().contains(version, type);
+    }
+
+    @NotNull
+    public synchronized BaseVersionIndex getIndex() {
+        if (index == null) {
+            index = BaseVersionIndex.read(indexFile);
+        }
+        return index;
+    }
+}
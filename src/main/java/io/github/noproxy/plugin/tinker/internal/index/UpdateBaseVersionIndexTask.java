@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.index;
+
+import io.github.noproxy.plugin.tinker.internal.ArtifactType;
+import io.github.noproxy.plugin.tinker.internal.Checksums;
+import io.github.noproxy.plugin.tinker.internal.MavenVariantArtifactsLocator;
+import io.github.noproxy.plugin.tinker.internal.PublishedVariant;
+import io.github.noproxy.plugin.tinker.internal.publish.MavenMetadata;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransport;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransports;
+import io.github.noproxy.plugin.tinker.internal.transport.ResourceMetadata;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.Task;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.codehaus.groovy.runtime.StringGroovyMethods.capitalize;
+
+/**
+ * Merges the variants published to one repository in this build into the {@link BaseVersionIndex} of their module.
+ * <p>
+ * The merged index replaces the remote one in a single conditional upload, a concurrent update makes us re-read and
+ * merge again.
+ */
+public class UpdateBaseVersionIndexTask extends DefaultTask {
+    private static final int MAX_ATTEMPTS = 5;
+
+    private MavenArtifactRepository repository;
+    private Collection<PublishedVariant> publishedVariants = Collections.emptyList();
+
+    @NotNull
+    public static String getTaskName(String repositoryName) {
+        return "tinkerUpdate" + capitalize((CharSequence) repositoryName) + "Index";
+    }
+
+    @Internal
+    public MavenArtifactRepository getRepository() {
+        return repository;
+    }
+
+    public void setRepository(MavenArtifactRepository repository) {
+        this.repository = repository;
+    }
+
+    @Internal
+    public Collection<PublishedVariant> getPublishedVariants() {
+        return publishedVariants;
+    }
+
+    public void setPublishedVariants(Collection<PublishedVariant> publishedVariants) {
+        this.publishedVariants = publishedVariants;
+    }
+
+    @NotNull
+    public static BaseVersionIndex.VersionEntry createEntry(PublishedVariant published) {
+        final MavenVariantArtifactsLocator locator = published.getLocator();
+        final BaseVersionIndex.VersionEntry entry = new BaseVersionIndex.VersionEntry(published.getVariantName(),
+                published.getFlavorName(), published.getBuildTypeName());
+        for (ArtifactType type : ArtifactType.values()) {
+            final File artifact = published.getArtifactFile(type);
+            if (artifact != null) {
+                entry.putArtifact(type, new BaseVersionIndex.ArtifactEntry(locator.getClassifier(type), locator.getExtension(type),
+                        artifact.length(), readChecksum(artifact, published.getPrepareTask().get().getChecksumFile(type).get().getAsFile())));
+            }
+        }
+        return entry;
+    }
+
+    private static String readChecksum(File artifact, File checksumFile) {
+        if (!checksumFile.isFile()) {
+            return Checksums.sha256(artifact);
+        }
+        try {
+            return new String(Files.readAllBytes(checksumFile.toPath()), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + checksumFile, e);
+        }
+    }
+
+    private boolean isPublished(PublishedVariant published) {
+        final Set<Task> tasks = getProject().getTasksByName(published.getPublishTaskName(repository.getName()), false);
+        return tasks.stream().anyMatch(task -> task.getState().getExecuted() && task.getState().getFailure() == null
+                && task.getState().getDidWork());
+    }
+
+    @TaskAction
+    public void update() throws IOException {
+        final RepositoryTransport transport = RepositoryTransports.create(repository);
+        if (transport == null) {
+            getLogger().warn("TinkerMavenPublish: can not update base version index of repository '" + repository.getName()
+                    + "', unsupported url: " + repository.getUrl());
+            return;
+        }
+
+        final Map<String, List<PublishedVariant>> modules = new LinkedHashMap<>();
+        for (PublishedVariant published : publishedVariants) {
+            if (isPublished(published)) {
+                modules.computeIfAbsent(published.getLocator().getModulePath(), ignored -> new ArrayList<>()).add(published);
+            }
+        }
+
+        for (Map.Entry<String, List<PublishedVariant>> module : modules.entrySet()) {
+            final Map<String, BaseVersionIndex.VersionEntry> entries = new LinkedHashMap<>();
+            module.getValue().forEach(published -> entries.put(published.getLocator().getVersion(), createEntry(published)));
+            updateModule(transport, module.getKey(), entries, getTemporaryDir(), getLogger());
+        }
+    }
+
+    /**
+     * Merges the entries into the index of the module with conditional uploads, a null entry removes the version.
+     * <p>
+     * Repositories ignoring the preconditions, like Nexus and Artifactory, would silently drop the entries of a concurrent
+     * update, so the index is not updated there at all.
+     *
+     * @return the entries the versions had before, to revert the update with
+     */
+    public static Map<String, BaseVersionIndex.VersionEntry> updateModule(RepositoryTransport transport, String modulePath, Map<String, BaseVersionIndex.VersionEntry> entries,
+                                    File temporaryDir, Logger logger) throws IOException {
+        if (!transport.supportsConditionalUpload(modulePath)) {
+            throw new GradleException("TinkerMavenPublish: " + transport.getDisplayName() + " ignores conditional uploads, concurrent"
+                    + " publishes could drop each other's entries of " + BaseVersionIndex.getIndexPath(modulePath)
+                    + ", disable publishIndex for it");
+        }
+
+        final File current = new File(temporaryDir, "current-" + BaseVersionIndex.FILE_NAME);
+        final File merged = new File(temporaryDir, BaseVersionIndex.FILE_NAME);
+        final String path = BaseVersionIndex.getIndexPath(modulePath);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            current.delete();
+            final ResourceMetadata metadata = transport.download(path, current);
+            final BaseVersionIndex index = metadata == null ? new BaseVersionIndex() : BaseVersionIndex.read(current);
+            final Map<String, BaseVersionIndex.VersionEntry> previous = new LinkedHashMap<>();
+            entries.forEach((version, entry) -> {
+                previous.put(version, index.getVersion(version));
+                if (entry == null) {
+                    index.getVersions().remove(version);
+                } else {
+                    index.putVersion(version, entry);
+                }
+            });
+            index.setComplete(listsAllVersions(transport, modulePath, index, temporaryDir));
+            index.write(merged);
+
+            if (transport.upload(path, merged, metadata == null ? ResourceMetadata.ABSENT_ETAG : metadata.getEtag())) {
+                logger.info("TinkerMavenPublish: updated " + path + " in " + transport.getDisplayName() + " with " + entries.keySet());
+                return previous;
+            }
+            logger.info("TinkerMavenPublish: " + path + " changed concurrently, merge again");
+        }
+        throw new GradleException("Failed to update " + path + " in " + transport.getDisplayName() + " after " + MAX_ATTEMPTS + " attempts");
+    }
+
+    // versions published before the index or without publishIndex are only in the maven-metadata.xml
+    private static boolean listsAllVersions(RepositoryTransport transport, String modulePath, BaseVersionIndex index, File temporaryDir) throws IOException {
+        final File metadataFile = new File(temporaryDir, MavenMetadata.FILE_NAME);
+        metadataFile.delete();
+        if (transport.download(MavenMetadata.getPath(modulePath), metadataFile) == null) {
+            return false;
+        }
+        return index.getVersions().keySet().containsAll(MavenMetadata.read(metadataFile, null, null).getVersions());
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.mapping;
+
+import io.github.noproxy.plugin.tinker.internal.Checksums;
+import io.github.noproxy.plugin.tinker.internal.cache.DaemonCache;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Shrinks a base mapping.txt to the classes that still exist in the current build before it's used as apply-mapping.
+ * <p>
+ * Mappings of deleted classes only slow the obfuscator down. A class is kept if it, or the top level class it is
+ * nested in or synthesized for, is among the inputs; all members of a kept class are kept. Classes the inputs can't
+ * rule out are kept as well: R classes, which come from the R.jar, and classes in packages without any input, which
+ * bytecode transforms may generate. The result is cached by the checksums of the base mapping and of the class names
+ * of the inputs.
+ */
+public class MappingPruner {
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final File cacheDir;
+    private final Logger logger;
+
+    public MappingPruner(File cacheDir, Logger logger) {
+        this.cacheDir = cacheDir;
+        this.logger = logger;
+    }
+
+    /**
+     * @param inputs class directories and jars of the current build
+     */
+    @NotNull
+    public File prune(@NotNull File mapping, @NotNull Iterable<File> inputs) {
+        final Set<String> classNames = collectClassNames(inputs);
+        final MessageDigest digest = Checksums.newSha256();
+        classNames.forEach(name -> digest.update((name + "\n").getBytes(StandardCharsets.UTF_8)));
+        final String key = DaemonCache.get().sha256(mapping).substring(0, 32) + "-" + Checksums.toHex(digest.digest()).substring(0, 32);
+
+        final File pruned = new File(cacheDir, key + ".txt");
+        if (pruned.isFile()) {
+            logger.info("TinkerMavenPublish: reuse pruned mapping " + pruned);
+            return pruned;
+        }
+
+        Path temp = null;
+        try {
+            cacheDir.mkdirs();
+            temp = Files.createTempFile(cacheDir.toPath(), key, ".tmp");
+            final long start = System.currentTimeMillis();
+            final int[] classes = prune(mapping, classNames, temp.toFile());
+            Files.move(temp, pruned.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.quiet("TinkerMavenPublish: pruned mapping from " + classes[0] + " to " + classes[1] + " classes, "
+                    + mapping.length() + " to " + pruned.length() + " bytes in " + (System.currentTimeMillis() - start) + "ms");
+            return pruned;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prune " + mapping, e);
+        } finally {
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+        }
+    }
+
+    /**
+     * @return the number of classes before and after pruning
+     */
+    private static int[] prune(File mapping, Set<String> classNames, File output) throws IOException {
+        final Set<String> packages = new HashSet<>();
+        classNames.forEach(name -> packages.add(getPackage(name)));
+        int total = 0;
+        int kept = 0;
+        boolean keeping = true;
+        try (BufferedReader reader = Files.newBufferedReader(mapping.toPath(), StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // "original.Name -> obfuscated:" starts a class, indented lines are its members and comments,
+                // the header comments before the first class are always kept
+                if (!line.isEmpty() && !Character.isWhitespace(line.charAt(0)) && line.charAt(0) != '#') {
+                    final int arrow = line.indexOf(" -> ");
+                    if (arrow > 0) {
+                        total++;
+                        keeping = isPresent(line.substring(0, arrow), classNames, packages);
+                        if (keeping) {
+                            kept++;
+                        }
+                    }
+                }
+
+                if (keeping) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+        }
+        return new int[]{total, kept};
+    }
+
+    private static boolean isPresent(String className, Set<String> classNames, Set<String> packages) {
+        if (classNames.contains(className)) {
+            return true;
+        }
+
+        final int simpleName = className.lastIndexOf('.') + 1;
+        // classes synthesized by the dexer, e.g. "-$$Lambda$Foo$1", have no input of their own
+        if (className.startsWith("-", simpleName) || className.startsWith("$", simpleName)) {
+            return true;
+        }
+        if (className.equals(className.substring(0, simpleName) + "R") || className.startsWith("R$", simpleName)
+                || !packages.contains(getPackage(className))) {
+            return true;
+        }
+
+        final int nested = className.indexOf('$', simpleName);
+        return nested > 0 && classNames.contains(className.substring(0, nested));
+    }
+
+    private static String getPackage(String className) {
+        return className.substring(0, Math.max(0, className.lastIndexOf('.')));
+    }
+
+    @NotNull
+    static Set<String> collectClassNames(Iterable<File> inputs) {
+        final Set<String> classNames = new TreeSet<>();
+        for (File input : inputs) {
+            try {
+                if (input.isDirectory()) {
+                    final Path root = input.toPath();
+                    try (Stream<Path> files = Files.walk(root)) {
+                        files.map(root::relativize).map(Path::toString).filter(name -> name.endsWith(CLASS_SUFFIX))
+                                .forEach(name -> classNames.add(toClassName(name.replace(File.separatorChar, '/'))));
+                    }
+                } else if (input.isFile() && input.getName().endsWith(".jar")) {
+                    // jars of dependencies rarely change between patch builds
+                    classNames.addAll(DaemonCache.get().parse("jar-classes", input, MappingPruner::listClassNames, DaemonCache::weigh));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to list classes of " + input, e);
+            }
+        }
+        return classNames;
+    }
+
+    private static List<String> listClassNames(File jar) {
+        final List<String> classNames = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(jar)) {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final String name = entries.nextElement().getName();
+                if (name.endsWith(CLASS_SUFFIX)) {
+                    classNames.add(toClassName(name));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list classes of " + jar, e);
+        }
+        return Collections.unmodifiableList(classNames);
+    }
+
+    private static String toClassName(String entryName) {
+        return entryName.substring(0, entryName.length() - CLASS_SUFFIX.length()).replace('/', '.');
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.patch;
+
+import io.github.noproxy.plugin.tinker.internal.apk.ApkDiff;
+import io.github.noproxy.plugin.tinker.internal.base.TinkerBase;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.plugins.ExtensionAware;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.jetbrains.annotations.NotNull;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.codehaus.groovy.runtime.StringGroovyMethods.capitalize;
+
+/**
+ * Compares the central directories of the base apk and the new apk of a variant before tinkerPatch runs, and reports
+ * which dex, resource and native entries changed, as told apart by the patterns of tinkerPatch.
+ */
+public class CheckTinkerPatchTask extends DefaultTask {
+    private final RegularFileProperty baseFile;
+    private final RegularFileProperty apk;
+    private final RegularFileProperty reportFile;
+    private final ListProperty<String> dexPatterns;
+    private final ListProperty<String> libPatterns;
+    private final ListProperty<String> resPatterns;
+    private final ListProperty<String> resIgnoreChange;
+
+    @Inject
+    public CheckTinkerPatchTask(ObjectFactory objects) {
+        this.baseFile = objects.fileProperty();
+        this.apk = objects.fileProperty();
+        this.reportFile = objects.fileProperty();
+        this.dexPatterns = objects.listProperty(String.class);
+        this.libPatterns = objects.listProperty(String.class);
+        this.resPatterns = objects.listProperty(String.class);
+        this.resIgnoreChange = objects.listProperty(String.class);
+    }
+
+    /**
+     * @return the patterns of the extension of tinkerPatch, e.g. {@code tinkerPatch.dex.pattern}, empty if it's not set
+     */
+    @NotNull
+    public static List<String> getTinkerPatterns(@NotNull Object tinkerPatch, @NotNull String extension, @NotNull String property) {
+        final Object nested = ((ExtensionAware) tinkerPatch).getExtensions().findByName(extension);
+        final Object patterns = nested == null ? null : InvokerHelper.getProperty(nested, property);
+        final List<String> result = new ArrayList<>();
+        if (patterns instanceof Iterable) {
+            ((Iterable<?>) patterns).forEach(pattern -> result.add(String.valueOf(pattern)));
+        }
+        return result;
+    }
+
+    @NotNull
+    public static String getTaskName(String variantName) {
+        return "tinkerCheck" + capitalize((CharSequence) variantName) + "Patch";
+    }
+
+    /**
+     * @return whether the report of the task says a patch would change anything
+     */
+    public static boolean isPatchable(@NotNull File reportFile) {
+        return ApkDiff.read(reportFile).isPatchable();
+    }
+
+    /**
+     * The {@link TinkerBase} of the variant.
+     */
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public RegularFileProperty getBaseFile() {
+        return baseFile;
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public RegularFileProperty getApk() {
+        return apk;
+    }
+
+    @OutputFile
+    public RegularFileProperty getReportFile() {
+        return reportFile;
+    }
+
+    /**
+     * {@code tinkerPatch.dex.pattern}, the dex entries.
+     */
+    @Input
+    public ListProperty<String> getDexPatterns() {
+        return dexPatterns;
+    }
+
+    /**
+     * {@code tinkerPatch.lib.pattern}, the native entries.
+     */
+    @Input
+    public ListProperty<String> getLibPatterns() {
+        return libPatterns;
+    }
+
+    /**
+     * {@code tinkerPatch.res.pattern}, the resource entries.
+     */
+    @Input
+    public ListProperty<String> getResPatterns() {
+        return resPatterns;
+    }
+
+    /**
+     * {@code tinkerPatch.res.ignoreChange}, the resource entries whose changes are not patched.
+     */
+    @Input
+    public ListProperty<String> getResIgnoreChange() {
+        return resIgnoreChange;
+    }
+
+    @TaskAction
+    public void check() throws IOException {
+        final File base = TinkerBase.read(baseFile.get().getAsFile()).getOldApk();
+        if (base == null) {
+            throw new GradleException("Cannot find base apk file in Maven repository");
+        }
+
+        final ApkDiff diff = ApkDiff.compare(base, apk.get().getAsFile(),
+                new ApkDiff.Patterns(dexPatterns.get(), libPatterns.get(), resPatterns.get(), resIgnoreChange.get()));
+        for (ApkDiff.Entry entry : diff.getEntries()) {
+            getLogger().info(String.format("%-8s %-8s %10d  %s", entry.getCategory(), entry.getChange(), entry.getSize(), entry.getName()));
+        }
+        diff.write(reportFile.get().getAsFile());
+
+        if (diff.isPatchable()) {
+            getLogger().quiet("TinkerMavenPublish: changed entries since the base " + diff.countByCategory()
+                    + ", estimated patch size at most " + diff.getEstimatedPatchSize() + " bytes");
+        } else {
+            getLogger().quiet("TinkerMavenPublish: nothing patchable changed since the base");
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.patch;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.gradle.api.UncheckedIOException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Index of the patches built against one base apk, stored in the directory of its patches.
+ * <p>
+ * Patches of a base live under {@code <module>/patches/<sha256 of the base apk>/}, so a patch server that knows the
+ * checksum of an installed apk finds its latest patch with a single fetch of this file.
+ */
+public class PatchIndex {
+    public static final String FILE_NAME = "tinker-patches.json";
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private int formatVersion = 1;
+    private Base base;
+    private int latest;
+    private List<PatchEntry> patches = new ArrayList<>();
+
+    public PatchIndex(Base base) {
+        this.base = base;
+    }
+
+    @NotNull
+    public static String getPatchesPath(@NotNull String modulePath, @NotNull String baseSha256) {
+        return modulePath + "/patches/" + baseSha256;
+    }
+
+    @NotNull
+    public static String getIndexPath(@NotNull String modulePath, @NotNull String baseSha256) {
+        return getPatchesPath(modulePath, baseSha256) + "/" + FILE_NAME;
+    }
+
+    @NotNull
+    public static String getPatchFileName(int number, @NotNull String extension) {
+        return "patch-" + number + "." + extension;
+    }
+
+    @NotNull
+    public static PatchIndex read(@NotNull File file, @NotNull Base base) {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            final PatchIndex index = GSON.fromJson(reader, PatchIndex.class);
+            if (index == null) {
+                return new PatchIndex(base);
+            }
+            if (index.patches == null) {
+                index.patches = new ArrayList<>();
+            }
+            return index;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read patch index " + file, e);
+        }
+    }
+
+    public void write(@NotNull File file) {
+        file.getParentFile().mkdirs();
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(this, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write patch index " + file, e);
+        }
+    }
+
+    public Base getBase() {
+        return base;
+    }
+
+    public int getLatest() {
+        return latest;
+    }
+
+    @NotNull
+    public List<PatchEntry> getPatches() {
+        return patches;
+    }
+
+    @Nullable
+    public PatchEntry findBySha256(@NotNull String sha256) {
+        return patches.stream().filter(patch -> sha256.equals(patch.getSha256())).findFirst().orElse(null);
+    }
+
+    public void putPatch(@NotNull PatchEntry entry) {
+        patches.removeIf(patch -> patch.getNumber() == entry.getNumber());
+        patches.add(entry);
+        patches.sort(Comparator.comparingInt(PatchEntry::getNumber));
+        latest = Math.max(latest, entry.getNumber());
+    }
+
+    public static class Base {
+        private String groupId;
+        private String artifactId;
+        private String version;
+        private String variant;
+        private String sha256;
+
+        public Base(String groupId, String artifactId, String version, String variant, String sha256) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.variant = variant;
+            this.sha256 = sha256;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getVariant() {
+            return variant;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+    }
+
+    public static class PatchEntry {
+        private int number;
+        private String file;
+        private long size;
+        private String sha256;
+        private long timestamp;
+
+        public PatchEntry(int number, String file, long size, String sha256, long timestamp) {
+            this.number = number;
+            this.file = file;
+            this.size = size;
+            this.sha256 = sha256;
+            this.timestamp = timestamp;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
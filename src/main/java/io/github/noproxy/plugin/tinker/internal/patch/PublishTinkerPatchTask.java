@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.patch;
+
+import io.github.noproxy.plugin.tinker.internal.Checksums;
+import io.github.noproxy.plugin.tinker.internal.cache.DaemonCache;
+import io.github.noproxy.plugin.tinker.internal.DefaultS3Repository;
+import io.github.noproxy.plugin.tinker.internal.MavenVariantArtifactsLocator;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransport;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransports;
+import io.github.noproxy.plugin.tinker.internal.transport.ResourceMetadata;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.codehaus.groovy.runtime.StringGroovyMethods.capitalize;
+
+/**
+ * Publishes the patch built by tinkerPatch next to the base it was built against, and records it in the
+ * {@link PatchIndex} of that base.
+ * <p>
+ * Patch numbers are claimed by a conditional upload of the patch file, the index is then merged with conditional
+ * uploads like the base version index, so concurrent builds never overwrite each other's patches. Repositories that
+ * ignore the conditions are refused, and a claimed patch file is deleted again if the index can't be updated.
+ */
+public class PublishTinkerPatchTask extends DefaultTask {
+    private static final int MAX_ATTEMPTS = 5;
+    private static final String[] PATCH_FILE_NAMES = {"patch_signed_7zip.apk", "patch_signed.apk", "patch_unsigned.apk"};
+
+    private final DirectoryProperty patchDirectory;
+    private final RegularFileProperty baseApk;
+    private MavenVariantArtifactsLocator locator;
+    private String variantName;
+    private Collection<MavenArtifactRepository> repositories = Collections.emptyList();
+    private DefaultS3Repository s3;
+
+    @Inject
+    public PublishTinkerPatchTask(ObjectFactory objects) {
+        this.patchDirectory = objects.directoryProperty();
+        this.baseApk = objects.fileProperty();
+    }
+
+    @NotNull
+    public static String getTaskName(String variantName) {
+        return "publishTinkerPatch" + capitalize((CharSequence) variantName);
+    }
+
+    @Internal
+    public DirectoryProperty getPatchDirectory() {
+        return patchDirectory;
+    }
+
+    /**
+     * The base apk the patch was built against, its checksum is the key of the patch.
+     */
+    @Internal
+    public RegularFileProperty getBaseApk() {
+        return baseApk;
+    }
+
+    @Internal
+    public MavenVariantArtifactsLocator getLocator() {
+        return locator;
+    }
+
+    public void setLocator(MavenVariantArtifactsLocator locator) {
+        this.locator = locator;
+    }
+
+    @Internal
+    public String getVariantName() {
+        return variantName;
+    }
+
+    public void setVariantName(String variantName) {
+        this.variantName = variantName;
+    }
+
+    @Internal
+    public Collection<MavenArtifactRepository> getRepositories() {
+        return repositories;
+    }
+
+    public void setRepositories(Collection<MavenArtifactRepository> repositories) {
+        this.repositories = repositories;
+    }
+
+    @Internal
+    @Nullable
+    public DefaultS3Repository getS3() {
+        return s3;
+    }
+
+    public void setS3(@Nullable DefaultS3Repository s3) {
+        this.s3 = s3;
+    }
+
+    @NotNull
+    private File findPatch() {
+        final File directory = patchDirectory.get().getAsFile();
+        for (String name : PATCH_FILE_NAMES) {
+            final File patch = new File(directory, name);
+            if (patch.isFile()) {
+                return patch;
+            }
+        }
+        throw new GradleException("TinkerMavenPublish: no patch of '" + variantName + "' found in " + directory);
+    }
+
+    @TaskAction
+    public void publish() throws IOException {
+        final File patch = findPatch();
+        final File base = baseApk.get().getAsFile();
+        final String baseSha256 = DaemonCache.get().sha256(base);
+        final PatchIndex.Base baseEntry = new PatchIndex.Base(locator.getGroupId(), locator.getArtifactId(), locator.getVersion(),
+                variantName, baseSha256);
+
+        final List<RepositoryTransport> transports = new ArrayList<>();
+        for (MavenArtifactRepository repository : repositories) {
+            final RepositoryTransport transport = RepositoryTransports.create(repository);
+            if (transport == null) {
+                getLogger().warn("TinkerMavenPublish: can not publish patch to repository '" + repository.getName()
+                        + "', unsupported url: " + repository.getUrl());
+                continue;
+            }
+            transports.add(transport);
+        }
+        if (s3 != null) {
+            transports.add(s3.createTransport());
+        }
+
+        final String sha256 = Checksums.sha256(patch);
+        for (RepositoryTransport transport : transports) {
+            publish(transport, patch, sha256, baseEntry);
+        }
+    }
+
+    private void publish(RepositoryTransport transport, File patch, String sha256, PatchIndex.Base base) throws IOException {
+        final String patchesPath = PatchIndex.getPatchesPath(locator.getModulePath(), base.getSha256());
+        final String indexPath = PatchIndex.getIndexPath(locator.getModulePath(), base.getSha256());
+        final File current = new File(getTemporaryDir(), "current-" + PatchIndex.FILE_NAME);
+        final File merged = new File(getTemporaryDir(), PatchIndex.FILE_NAME);
+
+        PatchIndex.PatchEntry entry = null;
+        boolean published = false;
+        try {
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                current.delete();
+                final ResourceMetadata metadata = transport.download(indexPath, current);
+                final PatchIndex index = metadata == null ? new PatchIndex(base) : PatchIndex.read(current, base);
+
+                final PatchIndex.PatchEntry existing = index.findBySha256(sha256);
+                if (existing != null) {
+                    getLogger().quiet("TinkerMavenPublish: patch of '" + variantName + "' is already published as "
+                            + patchesPath + "/" + existing.getFile() + " in " + transport.getDisplayName());
+                    published = entry == null || entry.getFile().equals(existing.getFile());
+                    return;
+                }
+
+                if (entry == null) {
+                    if (!transport.supportsConditionalUpload(patchesPath)) {
+                        throw new GradleException("TinkerMavenPublish: " + transport.getDisplayName() + " ignores conditional uploads,"
+                                + " concurrent builds could overwrite each other's patches there");
+                    }
+                    entry = claimPatchNumber(transport, patchesPath, index.getLatest() + 1, patch, sha256);
+                }
+                index.putPatch(entry);
+                index.write(merged);
+
+                final String expected = metadata == null ? ResourceMetadata.ABSENT_ETAG : metadata.getEtag();
+                if (transport.upload(indexPath, merged, expected)) {
+                    published = true;
+                    getLogger().quiet("TinkerMavenPublish: published patch of '" + variantName + "' as " + patchesPath + "/"
+                            + entry.getFile() + " in " + transport.getDisplayName());
+                    return;
+                }
+                getLogger().info("TinkerMavenPublish: " + indexPath + " changed concurrently, merge again");
+            }
+            throw new GradleException("Failed to update " + indexPath + " in " + transport.getDisplayName() + " after " + MAX_ATTEMPTS + " attempts");
+        } finally {
+            // no index lists the claimed number, so it would be taken forever
+            if (!published && entry != null) {
+                releaseClaimedPatch(transport, indexPath, patchesPath, base, entry);
+            }
+        }
+    }
+
+    private void releaseClaimedPatch(RepositoryTransport transport, String indexPath, String patchesPath, PatchIndex.Base base,
+                                     PatchIndex.PatchEntry entry) {
+        final String path = patchesPath + "/" + entry.getFile();
+        try {
+            // an upload failing with an I/O error may still have been stored
+            final File current = new File(getTemporaryDir(), "released-" + PatchIndex.FILE_NAME);
+            current.delete();
+            if (transport.download(indexPath, current) != null) {
+                final PatchIndex.PatchEntry listed = PatchIndex.read(current, base).findBySha256(entry.getSha256());
+                if (listed != null && listed.getFile().equals(entry.getFile())) {
+                    return;
+                }
+            }
+            transport.delete(path);
+        } catch (IOException | RuntimeException e) {
+            getLogger().warn("TinkerMavenPublish: failed to delete unused " + path + " in " + transport.getDisplayName(), e);
+        }
+    }
+
+    private PatchIndex.PatchEntry claimPatchNumber(RepositoryTransport transport, String patchesPath, int first, File patch, String sha256) throws IOException {
+        for (int number = first; number < first + MAX_ATTEMPTS; number++) {
+            final String fileName = PatchIndex.getPatchFileName(number, "apk");
+            if (transport.upload(patchesPath + "/" + fileName, patch, ResourceMetadata.ABSENT_ETAG)) {
+                return new PatchIndex.PatchEntry(number, fileName, patch.length(), sha256, System.currentTimeMillis());
+            }
+            getLogger().info("TinkerMavenPublish: " + patchesPath + "/" + fileName + " is taken, try the next number");
+        }
+        throw new GradleException("Failed to claim a patch number in " + patchesPath + " of " + transport.getDisplayName());
+    }
+}
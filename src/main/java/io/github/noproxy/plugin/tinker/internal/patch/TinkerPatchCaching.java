@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.patch;
+
+import com.android.builder.model.SigningConfig;
+import com.tencent.tinker.build.gradle.task.TinkerPatchSchemaTask;
+import io.github.noproxy.plugin.tinker.internal.base.TinkerBase;
+import org.codehaus.groovy.runtime.DefaultGroovyMethods;
+import org.gradle.api.Task;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.plugins.ExtensionAware;
+import org.gradle.api.plugins.ExtensionsSchema;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.PathSensitivity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Declares what a tinkerPatch task depends on, so its patch can be stored in and loaded from the build cache.
+ * <p>
+ * The key is made of the contents of the resolved base apk, the applied mapping.txt and R.txt and the new apk, plus
+ * the settings of the tinkerPatch extension, the signing config the patch is signed with and the version of the tinker
+ * plugin. Paths are made relative to the root project, or cut to the file name outside of it, so the patch can be shared
+ * between machines. Passwords are left out, they can't change without the keystore changing.
+ */
+public final class TinkerPatchCaching {
+    // covered by the contents of the base
+    private static final Set<String> IGNORED_PROPERTIES = new HashSet<>(Arrays.asList("class", "metaClass", "oldApk",
+            "applyMapping", "applyResourceMapping", "project", "extensions", "convention", "asDynamicObject", "conventionMapping"));
+
+    private TinkerPatchCaching() {
+    }
+
+    public static void configure(@NotNull Task tinkerPatchTask, @NotNull Provider<RegularFile> baseFile, @NotNull Provider<File> newApk,
+                                 @NotNull Object tinkerPatch, @Nullable SigningConfig signingConfig, @NotNull Provider<Directory> patchDirectory,
+                                 @NotNull Provider<Boolean> cachePatch) {
+        final Provider<TinkerBase> base = baseFile.map(file -> TinkerBase.read(file.getAsFile()));
+        tinkerPatchTask.getInputs().file(base.map(TinkerBase::getBaseApk))
+                .withPropertyName("tinkerBaseApk").withPathSensitivity(PathSensitivity.NONE);
+        tinkerPatchTask.getInputs().files(base.map(it -> listOf(it.getApplyMapping())))
+                .withPropertyName("tinkerApplyMapping").withPathSensitivity(PathSensitivity.NONE);
+        tinkerPatchTask.getInputs().files(base.map(it -> listOf(it.getApplyResourceMapping())))
+                .withPropertyName("tinkerApplyResourceMapping").withPathSensitivity(PathSensitivity.NONE);
+        tinkerPatchTask.getInputs().file(newApk).withPropertyName("tinkerNewApk").withPathSensitivity(PathSensitivity.NONE);
+        final File rootDir = tinkerPatchTask.getProject().getRootDir();
+        tinkerPatchTask.getInputs().property("tinkerConfig", tinkerPatchTask.getProject().provider(() -> describe(tinkerPatch, rootDir)));
+        tinkerPatchTask.getInputs().files(tinkerPatchTask.getProject().provider(() -> listOf(signingConfig == null ? null : signingConfig.getStoreFile())))
+                .withPropertyName("tinkerSigningStoreFile").withPathSensitivity(PathSensitivity.NONE);
+        tinkerPatchTask.getInputs().property("tinkerSigningConfig", tinkerPatchTask.getProject().provider(() -> describe(signingConfig)));
+        tinkerPatchTask.getInputs().property("tinkerPluginVersion", getTinkerPluginVersion());
+        tinkerPatchTask.getOutputs().dir(patchDirectory).withPropertyName("tinkerPatchDirectory");
+        tinkerPatchTask.getOutputs().cacheIf("tinkerResolver.cachePatch is enabled", ignored -> cachePatch.get());
+    }
+
+    @NotNull
+    static String describe(@Nullable SigningConfig signingConfig) {
+        if (signingConfig == null) {
+            return "unsigned";
+        }
+        return "keyAlias=" + signingConfig.getKeyAlias() + ", storeType=" + signingConfig.getStoreType()
+                + ", v1=" + signingConfig.isV1SigningEnabled() + ", v2=" + signingConfig.isV2SigningEnabled();
+    }
+
+    // the manifest version if there is one, the jar name carries it otherwise
+    @NotNull
+    private static String getTinkerPluginVersion() {
+        final Class<?> type = TinkerPatchSchemaTask.class;
+        final String version = type.getPackage() == null ? null : type.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        final CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        return codeSource == null || codeSource.getLocation() == null ? "unknown" : new File(codeSource.getLocation().getPath()).getName();
+    }
+
+    private static List<File> listOf(File file) {
+        return file == null ? Collections.emptyList() : Collections.singletonList(file);
+    }
+
+    /**
+     * @return the simple properties of the extension and the extensions nested in it, sorted by name
+     */
+    @NotNull
+    static String describe(@NotNull Object extension, @NotNull File rootDir) {
+        final Map<String, String> values = new TreeMap<>();
+        describe("", extension, rootDir, values);
+        return values.toString();
+    }
+
+    private static void describe(String prefix, Object extension, File rootDir, Map<String, String> values) {
+        final Map<?, ?> properties = DefaultGroovyMethods.getProperties(extension);
+        for (Map.Entry<?, ?> property : properties.entrySet()) {
+            final String name = String.valueOf(property.getKey());
+            final Object value = property.getValue();
+            if (IGNORED_PROPERTIES.contains(name)) {
+                continue;
+            }
+            if (value instanceof CharSequence) {
+                values.put(prefix + name, normalize(value.toString(), rootDir));
+            } else if (value == null || value instanceof Number || value instanceof Boolean || value instanceof Enum
+                    || value instanceof Collection || value instanceof Map) {
+                values.put(prefix + name, String.valueOf(value));
+            }
+        }
+
+        if (extension instanceof ExtensionAware) {
+            for (ExtensionsSchema.ExtensionSchema schema : ((ExtensionAware) extension).getExtensions().getExtensionsSchema().getElements()) {
+                if (!schema.getName().equals("ext")) {
+                    describe(prefix + schema.getName() + ".", ((ExtensionAware) extension).getExtensions().getByName(schema.getName()), rootDir, values);
+                }
+            }
+        }
+    }
+
+    // absolute paths differ between machines, like the sevenZip.path of a local 7za
+    private static String normalize(String value, File rootDir) {
+        final File file = new File(value);
+        if (!file.isAbsolute()) {
+            return value;
+        }
+        final Path root = rootDir.toPath().toAbsolutePath().normalize();
+        final Path path = file.toPath().normalize();
+        return path.startsWith(root) ? root.relativize(path).toString().replace(File.separatorChar, '/') : file.getName();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.publish;
+
+import org.gradle.api.UncheckedIOException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The module level maven-metadata.xml, listing the versions of one {@code groupId:artifactId}.
+ */
+public class MavenMetadata {
+    public static final String FILE_NAME = "maven-metadata.xml";
+    private static final DateTimeFormatter LAST_UPDATED = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final String groupId;
+    private final String artifactId;
+    private final Set<String> versions = new LinkedHashSet<>();
+    private String latest;
+    private String release;
+
+    public MavenMetadata(String groupId, String artifactId) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+    }
+
+    @NotNull
+    public static String getPath(@NotNull String modulePath) {
+        return modulePath + "/" + FILE_NAME;
+    }
+
+    @NotNull
+    public static MavenMetadata read(@NotNull File file, String groupId, String artifactId) {
+        final MavenMetadata metadata = new MavenMetadata(groupId, artifactId);
+        try {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setExpandEntityReferences(false);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            final Document document = factory.newDocumentBuilder().parse(file);
+            final NodeList versions = document.getElementsByTagName("version");
+            for (int i = 0; i < versions.getLength(); i++) {
+                // the <version> directly under <metadata> is for snapshots only
+                if ("versions".equals(versions.item(i).getParentNode().getNodeName())) {
+                    metadata.versions.add(versions.item(i).getTextContent().trim());
+                }
+            }
+            metadata.latest = text(document, "latest");
+            metadata.release = text(document, "release");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException("Malformed maven metadata " + file, e);
+        }
+        return metadata;
+    }
+
+    private static String text(Document document, String tag) {
+        final NodeList nodes = document.getElementsByTagName(tag);
+        return nodes.getLength() == 0 ? null : ((Element) nodes.item(0)).getTextContent().trim();
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    @NotNull
+    public Set<String> getVersions() {
+        return versions;
+    }
+
+    public void addVersion(@NotNull String version) {
+        versions.add(version);
+        latest = max(latest, version);
+        if (!version.endsWith("-SNAPSHOT")) {
+            release = max(release, version);
+        }
+    }
+
+    public void removeVersion(@NotNull String version) {
+        if (!versions.remove(version)) {
+            return;
+        }
+        if (version.equals(latest) || version.equals(release)) {
+            latest = null;
+            release = null;
+            new ArrayList<>(versions).forEach(this::addVersion);
+        }
+    }
+
+    @Nullable
+    public String getLatest() {
+        return latest;
+    }
+
+    @Nullable
+    public String getRelease() {
+        return release;
+    }
+
+    private static String max(@Nullable String current, String candidate) {
+        return current == null || compareVersions(candidate, current) > 0 ? candidate : current;
+    }
+
+    /**
+     * Orders versions the way Gradle does: numeric parts numerically and above qualifiers, qualifiers alphabetically,
+     * and an extra qualifier makes a version lower, so {@code 1.10 > 1.9 > 1.9-rc1}.
+     */
+    static int compareVersions(String left, String right) {
+        final List<String> leftParts = parseVersion(left);
+        final List<String> rightParts = parseVersion(right);
+        for (int i = 0; i < Math.min(leftParts.size(), rightParts.size()); i++) {
+            final String leftPart = leftParts.get(i);
+            final String rightPart = rightParts.get(i);
+            final boolean leftNumeric = Character.isDigit(leftPart.charAt(0));
+            final boolean rightNumeric = Character.isDigit(rightPart.charAt(0));
+            final int result;
+            if (leftNumeric && rightNumeric) {
+                result = new BigInteger(leftPart).compareTo(new BigInteger(rightPart));
+            } else if (leftNumeric != rightNumeric) {
+                result = leftNumeric ? 1 : -1;
+            } else {
+                result = leftPart.compareToIgnoreCase(rightPart);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        if (leftParts.size() == rightParts.size()) {
+            return 0;
+        }
+        final boolean leftLonger = leftParts.size() > rightParts.size();
+        final String extra = leftLonger ? leftParts.get(rightParts.size()) : rightParts.get(leftParts.size());
+        return Character.isDigit(extra.charAt(0)) == leftLonger ? 1 : -1;
+    }
+
+    private static List<String> parseVersion(String version) {
+        final List<String> parts = new ArrayList<>();
+        final StringBuilder part = new StringBuilder();
+        for (char c : version.toCharArray()) {
+            final boolean separator = c == '.' || c == '-' || c == '_' || c == '+';
+            if (separator || part.length() > 0 && Character.isDigit(c) != Character.isDigit(part.charAt(0))) {
+                if (part.length() > 0) {
+                    parts.add(part.toString());
+                    part.setLength(0);
+                }
+            }
+            if (!separator) {
+                part.append(c);
+            }
+        }
+        if (part.length() > 0) {
+            parts.add(part.toString());
+        }
+        return parts;
+    }
+
+    public void write(@NotNull File file) {
+        file.getParentFile().mkdirs();
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<metadata>\n");
+            writer.write("  <groupId>" + escape(groupId) + "</groupId>\n");
+            writer.write("  <artifactId>" + escape(artifactId) + "</artifactId>\n");
+            writer.write("  <versioning>\n");
+            if (latest != null) {
+                writer.write("    <latest>" + escape(latest) + "</latest>\n");
+            }
+            if (release != null) {
+                writer.write("    <release>" + escape(release) + "</release>\n");
+            }
+            writer.write("    <versions>\n");
+            for (String version : versions) {
+                writer.write("      <version>" + escape(version) + "</version>\n");
+            }
+            writer.write("    </versions>\n");
+            writer.write("    <lastUpdated>" + LAST_UPDATED.format(ZonedDateTime.now(ZoneOffset.UTC)) + "</lastUpdated>\n");
+            writer.write("  </versioning>\n");
+            writer.write("</metadata>\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + file, e);
+        }
+    }
+}
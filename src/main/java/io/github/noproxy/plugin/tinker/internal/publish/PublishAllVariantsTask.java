@@ -0,0 +1,424 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.publish;
+
+import io.github.noproxy.plugin.tinker.internal.ArtifactType;
+import io.github.noproxy.plugin.tinker.internal.Checksums;
+import io.github.noproxy.plugin.tinker.internal.MavenVariantArtifactsLocator;
+import io.github.noproxy.plugin.tinker.internal.PrepareTinkerArtifactsTask;
+import io.github.noproxy.plugin.tinker.internal.PublishedVariant;
+import io.github.noproxy.plugin.tinker.internal.blob.BlobPublisher;
+import io.github.noproxy.plugin.tinker.internal.index.BaseVersionIndex;
+import io.github.noproxy.plugin.tinker.internal.index.UpdateBaseVersionIndexTask;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransport;
+import io.github.noproxy.plugin.tinker.internal.transport.RepositoryTransports;
+import io.github.noproxy.plugin.tinker.internal.transport.ResourceMetadata;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+import org.jetbrains.annotations.NotNull;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.codehaus.groovy.runtime.StringGroovyMethods.capitalize;
+
+/**
+ * Publishes the base versions of all variants to one repository at once.
+ * <p>
+ * Everything is validated before the first upload, the artifacts of all variants are then uploaded concurrently with
+ * the poms last, and the base version index and maven-metadata.xml are updated once per module. If an upload or update
+ * fails, the versions are removed from the maven-metadata.xml and index again and the files uploaded so far are deleted,
+ * so either all variants are published or none. With {@code --overwrite} the files being replaced are downloaded first,
+ * and restored instead of deleted.
+ */
+public class PublishAllVariantsTask extends DefaultTask {
+    private static final int MAX_ATTEMPTS = 5;
+    private static final ArtifactType[] ARTIFACT_TYPES = {ArtifactType.APK, ArtifactType.MAPPING, ArtifactType.SYMBOL};
+    private static final String[] CHECKSUM_ALGORITHMS = {"MD5", "SHA-1", "SHA-256", "SHA-512"};
+
+    private final Property<Boolean> publishIndex;
+    private MavenArtifactRepository repository;
+    private Collection<PublishedVariant> publishedVariants = Collections.emptyList();
+    private int parallelism = 8;
+    private boolean overwrite = false;
+
+    @Inject
+    public PublishAllVariantsTask(ObjectFactory objects) {
+        this.publishIndex = objects.property(Boolean.class).convention(false);
+    }
+
+    @NotNull
+    public static String getTaskName(String repositoryName) {
+        return "publishAllTinkerVariantsTo" + capitalize((CharSequence) repositoryName) + "Repository";
+    }
+
+    @Internal
+    public Property<Boolean> getPublishIndex() {
+        return publishIndex;
+    }
+
+    @Internal
+    public MavenArtifactRepository getRepository() {
+        return repository;
+    }
+
+    public void setRepository(MavenArtifactRepository repository) {
+        this.repository = repository;
+    }
+
+    @Internal
+    public Collection<PublishedVariant> getPublishedVariants() {
+        return publishedVariants;
+    }
+
+    public void setPublishedVariants(Collection<PublishedVariant> publishedVariants) {
+        this.publishedVariants = publishedVariants;
+    }
+
+    @Internal
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    @Internal
+    public boolean isOverwrite() {
+        return overwrite;
+    }
+
+    @Option(option = "overwrite", description = "Replace versions that were already published.")
+    public void setOverwrite(boolean overwrite) {
+        this.overwrite = overwrite;
+    }
+
+    @TaskAction
+    public void publish() throws IOException {
+        final RepositoryTransport transport = RepositoryTransports.create(repository);
+        if (transport == null) {
+            throw new GradleException("TinkerMavenPublish: can not publish to repository '" + repository.getName()
+                    + "' at once, unsupported url: " + repository.getUrl() + ", use the publish tasks of the variants instead");
+        }
+
+        final List<Upload> artifacts = new ArrayList<>();
+        final List<Upload> poms = new ArrayList<>();
+        final Map<MavenVariantArtifactsLocator, List<PublishedVariant>> modules = new LinkedHashMap<>();
+        for (PublishedVariant published : publishedVariants) {
+            final MavenVariantArtifactsLocator module = modules.keySet().stream()
+                    .filter(locator -> locator.getModulePath().equals(published.getLocator().getModulePath()))
+                    .findFirst().orElse(published.getLocator());
+            modules.computeIfAbsent(module, ignored -> new ArrayList<>()).add(published);
+        }
+        final boolean conditional = validate(transport, modules.keySet(), artifacts, poms);
+
+        final long start = System.currentTimeMillis();
+        for (PublishedVariant published : publishedVariants) {
+            // blobs are content-addressed, so they are never rolled back
+            BlobPublisher.publish(transport, published.getLocator().getModulePath(), published.getPrepareTask().get(), getLogger());
+        }
+
+        final ConcurrentLinkedQueue<String> uploaded = new ConcurrentLinkedQueue<>();
+        final Map<String, File> backups = new ConcurrentHashMap<>();
+        final Map<MavenVariantArtifactsLocator, Set<String>> addedVersions = new LinkedHashMap<>();
+        final Map<String, Map<String, BaseVersionIndex.VersionEntry>> replacedEntries = new LinkedHashMap<>();
+        try {
+            uploadAll(transport, artifacts, uploaded, backups);
+            uploadAll(transport, poms, uploaded, backups);
+            getLogger().quiet("TinkerMavenPublish: uploaded " + uploaded.size() + " files of " + publishedVariants.size() + " variants to "
+                    + transport.getDisplayName() + " in " + (System.currentTimeMillis() - start) + "ms");
+
+            // the maven-metadata.xml goes last, the index listing a version that isn't in it yet does no harm
+            for (Map.Entry<MavenVariantArtifactsLocator, List<PublishedVariant>> module : modules.entrySet()) {
+                if (publishIndex.get()) {
+                    final Map<String, BaseVersionIndex.VersionEntry> entries = new LinkedHashMap<>();
+                    module.getValue().forEach(published -> entries.put(published.getLocator().getVersion(), UpdateBaseVersionIndexTask.createEntry(published)));
+                    final String modulePath = module.getKey().getModulePath();
+                    replacedEntries.put(modulePath, UpdateBaseVersionIndexTask.updateModule(transport, modulePath, entries, getTemporaryDir(), getLogger()));
+                }
+                final List<String> versions = new ArrayList<>();
+                module.getValue().forEach(published -> versions.add(published.getLocator().getVersion()));
+                addedVersions.put(module.getKey(), updateMetadata(transport, module.getKey(), versions, Collections.emptyList(), conditional));
+            }
+        } catch (IOException | RuntimeException e) {
+            revertMetadata(transport, addedVersions, replacedEntries, conditional, e);
+            rollback(transport, uploaded, backups, e);
+            throw e;
+        }
+    }
+
+    // returns whether the repository honors conditional uploads, without them concurrent publishes may drop each other's versions
+    private boolean validate(RepositoryTransport transport, Collection<MavenVariantArtifactsLocator> modules, List<Upload> artifacts,
+                             List<Upload> poms) throws IOException {
+        final List<String> problems = new ArrayList<>();
+        boolean conditional = true;
+        for (MavenVariantArtifactsLocator module : modules) {
+            conditional &= transport.supportsConditionalUpload(module.getModulePath());
+        }
+        if (!conditional && publishIndex.get()) {
+            problems.add(transport.getDisplayName() + " ignores conditional uploads, the base version index can't be updated safely");
+        }
+        for (PublishedVariant published : publishedVariants) {
+            final MavenVariantArtifactsLocator locator = published.getLocator();
+            final PrepareTinkerArtifactsTask prepareTask = published.getPrepareTask().get();
+            if (locator.getBareVersion().endsWith("-SNAPSHOT")) {
+                problems.add(published.getVariantName() + ": snapshot version " + locator.getVersion() + " is not supported");
+                continue;
+            }
+
+            for (ArtifactType type : ARTIFACT_TYPES) {
+                final File file = prepareTask.getPublishedFile(type).get().getAsFile();
+                if (file.isFile()) {
+                    artifacts.addAll(withChecksums(locator.getArtifactPath(type), file));
+                } else if (type == ArtifactType.APK) {
+                    problems.add(published.getVariantName() + ": apk was not prepared");
+                }
+            }
+
+            final String pomPath = getPomPath(locator);
+            if (!overwrite && transport.head(pomPath) != null) {
+                problems.add(published.getVariantName() + ": version " + locator.getVersion() + " is already published");
+            }
+            poms.addAll(withChecksums(pomPath, writePom(locator)));
+        }
+
+        if (!problems.isEmpty()) {
+            throw new GradleException("TinkerMavenPublish: nothing was published to '" + repository.getName() + "':\n  "
+                    + String.join("\n  ", problems));
+        }
+        if (!conditional) {
+            getLogger().warn("TinkerMavenPublish: " + transport.getDisplayName() + " ignores conditional uploads, a concurrent"
+                    + " publish may drop the versions of this one from maven-metadata.xml");
+        }
+        return conditional;
+    }
+
+    private static String getPomPath(MavenVariantArtifactsLocator locator) {
+        return locator.getModulePath() + "/" + locator.getVersion() + "/" + locator.getArtifactId() + "-" + locator.getVersion() + ".pom";
+    }
+
+    private File writePom(MavenVariantArtifactsLocator locator) throws IOException {
+        final String packaging = locator.getClassifier(ArtifactType.APK) == null ? locator.getExtension(ArtifactType.APK) : "pom";
+        final File pom = new File(getTemporaryDir(), locator.getVersion() + "/" + locator.getArtifactId() + ".pom");
+        pom.getParentFile().mkdirs();
+        Files.write(pom.toPath(), ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                + " xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd\">\n"
+                + "  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <groupId>" + locator.getGroupId() + "</groupId>\n"
+                + "  <artifactId>" + locator.getArtifactId() + "</artifactId>\n"
+                + "  <version>" + locator.getVersion() + "</version>\n"
+                + "  <packaging>" + packaging + "</packaging>\n"
+                + "</project>\n").getBytes(StandardCharsets.UTF_8));
+        return pom;
+    }
+
+    // the file followed by the checksum files maven repositories expect next to it
+    private List<Upload> withChecksums(String path, File file) throws IOException {
+        final List<Upload> uploads = new ArrayList<>();
+        uploads.add(new Upload(path, file));
+
+        final List<MessageDigest> digests = new ArrayList<>();
+        try {
+            for (String algorithm : CHECKSUM_ALGORITHMS) {
+                digests.add(algorithm.equals("SHA-256") ? Checksums.newSha256() : MessageDigest.getInstance(algorithm));
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                for (MessageDigest digest : digests) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+
+        final File checksumDir = new File(getTemporaryDir(), "checksums/" + path);
+        checksumDir.mkdirs();
+        for (MessageDigest digest : digests) {
+            final String extension = digest.getAlgorithm().replace("-", "").toLowerCase();
+            final File checksum = new File(checksumDir, extension);
+            Files.write(checksum.toPath(), Checksums.toHex(digest.digest()).getBytes(StandardCharsets.UTF_8));
+            uploads.add(new Upload(path + "." + extension, checksum));
+        }
+        return uploads;
+    }
+
+    private void uploadAll(RepositoryTransport transport, List<Upload> uploads, Collection<String> uploaded, Map<String, File> backups) throws IOException {
+        if (uploads.isEmpty()) {
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, uploads.size())), runnable -> {
+            final Thread thread = new Thread(runnable, "tinker-publish-all");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (Upload upload : uploads) {
+                futures.add(executor.submit(() -> {
+                    if (overwrite) {
+                        backup(transport, upload.path, backups);
+                    }
+                    transport.upload(upload.path, upload.file);
+                    uploaded.add(upload.path);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted publishing to " + transport.getDisplayName(), e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void backup(RepositoryTransport transport, String path, Map<String, File> backups) throws IOException {
+        final File backup = new File(getTemporaryDir(), "backup/" + path);
+        backup.getParentFile().mkdirs();
+        backup.delete();
+        if (transport.download(path, backup) != null) {
+            backups.put(path, backup);
+        }
+    }
+
+    private void rollback(RepositoryTransport transport, Collection<String> uploaded, Map<String, File> backups, Exception cause) {
+        getLogger().warn("TinkerMavenPublish: publishing to '" + repository.getName() + "' failed, deleting " + uploaded.size()
+                + " uploaded files and restoring " + backups.size() + " overwritten files");
+        for (String path : uploaded) {
+            if (backups.containsKey(path)) {
+                continue;
+            }
+            try {
+                transport.delete(path);
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+        }
+        // a failed upload may have replaced the file partially, so restore every file that was backed up
+        for (Map.Entry<String, File> backup : backups.entrySet()) {
+            try {
+                transport.upload(backup.getKey(), backup.getValue());
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+        }
+    }
+
+    // reverted in the opposite order: the maven-metadata.xml first, so the index is no longer complete while it still lists the version
+    private void revertMetadata(RepositoryTransport transport, Map<MavenVariantArtifactsLocator, Set<String>> addedVersions,
+                                Map<String, Map<String, BaseVersionIndex.VersionEntry>> replacedEntries, boolean conditional, Exception cause) {
+        for (Map.Entry<MavenVariantArtifactsLocator, Set<String>> added : addedVersions.entrySet()) {
+            try {
+                updateMetadata(transport, added.getKey(), Collections.emptyList(), added.getValue(), conditional);
+            } catch (IOException | RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+        }
+        for (Map.Entry<String, Map<String, BaseVersionIndex.VersionEntry>> replaced : replacedEntries.entrySet()) {
+            try {
+                UpdateBaseVersionIndexTask.updateModule(transport, replaced.getKey(), replaced.getValue(), getTemporaryDir(), getLogger());
+            } catch (IOException | RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * @return the versions that were not listed before
+     */
+    private Set<String> updateMetadata(RepositoryTransport transport, MavenVariantArtifactsLocator module, Collection<String> added,
+                                       Collection<String> removed, boolean conditional) throws IOException {
+        final String path = MavenMetadata.getPath(module.getModulePath());
+        final File current = new File(getTemporaryDir(), "current-" + MavenMetadata.FILE_NAME);
+        final File merged = new File(getTemporaryDir(), MavenMetadata.FILE_NAME);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            current.delete();
+            final ResourceMetadata metadata = transport.download(path, current);
+            final MavenMetadata mavenMetadata = metadata == null ? new MavenMetadata(module.getGroupId(), module.getArtifactId())
+                    : MavenMetadata.read(current, module.getGroupId(), module.getArtifactId());
+            final Set<String> newVersions = new LinkedHashSet<>(added);
+            newVersions.removeAll(mavenMetadata.getVersions());
+            added.forEach(mavenMetadata::addVersion);
+            removed.forEach(mavenMetadata::removeVersion);
+            mavenMetadata.write(merged);
+
+            final boolean uploaded;
+            if (conditional) {
+                uploaded = transport.upload(path, merged, metadata == null ? ResourceMetadata.ABSENT_ETAG : metadata.getEtag());
+            } else {
+                transport.upload(path, merged);
+                uploaded = true;
+            }
+            if (uploaded) {
+                for (Upload checksum : withChecksums(path, merged).subList(1, CHECKSUM_ALGORITHMS.length + 1)) {
+                    transport.upload(checksum.path, checksum.file);
+                }
+                getLogger().info("TinkerMavenPublish: updated " + path + " in " + transport.getDisplayName() + " once for " + (added.size() + removed.size()) + " versions");
+                return newVersions;
+            }
+            getLogger().info("TinkerMavenPublish: " + path + " changed concurrently, merge again");
+        }
+        throw new GradleException("Failed to update " + path + " in " + transport.getDisplayName() + " after " + MAX_ATTEMPTS + " attempts");
+    }
+
+    private static class Upload {
+        private final String path;
+        private final File file;
+
+        Upload(String path, File file) {
+            this.path = path;
+            this.file = file;
+        }
+    }
+}
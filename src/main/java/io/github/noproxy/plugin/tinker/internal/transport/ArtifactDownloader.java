@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+public interface ArtifactDownloader {
+    @NotNull
+    String getDisplayName();
+
+    /**
+     * @return the metadata of the file without downloading it, or null if it doesn't exist
+     */
+    @Nullable
+    ResourceMetadata head(@NotNull String path) throws IOException;
+
+    /**
+     * @return the metadata of the downloaded file, or null if it doesn't exist
+     */
+    @Nullable
+    ResourceMetadata download(@NotNull String path, @NotNull File destination) throws IOException;
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import io.github.noproxy.plugin.tinker.internal.Checksums;
+import org.jetbrains.annotations.NotNull;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Signs S3 requests with AWS Signature Version 4, the payload is left unsigned so bodies can be streamed.
+ */
+class AwsSignatureV4 {
+    static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final String accessKey;
+    private final String secretKey;
+    private final String region;
+
+    AwsSignatureV4(String accessKey, String secretKey, String region) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+    }
+
+    static String encode(String value, boolean keepSlash) {
+        final StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            final char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (keepSlash && c == '/')) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit((c >> 4) & 0xF, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+        return encoded.toString();
+    }
+
+    static String canonicalQuery(SortedMap<String, String> query) {
+        return query.entrySet().stream()
+                .map(entry -> encode(entry.getKey(), false) + "=" + encode(entry.getValue(), false))
+                .collect(Collectors.joining("&"));
+    }
+
+    /**
+     * @return the host header HttpURLConnection sends, without the port if it's the default one of the scheme
+     */
+    static String canonicalHost(URI url) {
+        final int port = url.getPort();
+        final boolean defaultPort = port == -1 || ("http".equalsIgnoreCase(url.getScheme()) && port == 80)
+                || ("https".equalsIgnoreCase(url.getScheme()) && port == 443);
+        final String host = url.getHost();
+        return defaultPort ? host : host + ":" + port;
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            final Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param url     the request url, its raw path must already be encoded with {@link #encode(String, boolean)}
+     * @param headers extra headers to sign, the signing headers are added to it
+     */
+    @NotNull
+    Map<String, String> sign(String method, URI url, SortedMap<String, String> query, Map<String, String> headers) {
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        final String dateTime = DATE_TIME.format(now);
+        final String scope = DATE.format(now) + "/" + region + "/s3/aws4_request";
+
+        final SortedMap<String, String> signed = new TreeMap<>();
+        headers.forEach((name, value) -> signed.put(name.toLowerCase(), value.trim()));
+        signed.put("host", canonicalHost(url));
+        signed.put("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        signed.put("x-amz-date", dateTime);
+
+        final String signedHeaders = String.join(";", signed.keySet());
+        final String canonicalRequest = method + "\n"
+                + url.getRawPath() + "\n"
+                + canonicalQuery(query) + "\n"
+                + signed.entrySet().stream().map(entry -> entry.getKey() + ":" + entry.getValue() + "\n").collect(Collectors.joining()) + "\n"
+                + signedHeaders + "\n"
+                + UNSIGNED_PAYLOAD;
+        final String stringToSign = "AWS4-HMAC-SHA256\n" + dateTime + "\n" + scope + "\n"
+                + Checksums.toHex(Checksums.newSha256().digest(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), DATE.format(now));
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        final String signature = Checksums.toHex(hmac(key, stringToSign));
+
+        final Map<String, String> result = new TreeMap<>(headers);
+        result.put("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        result.put("x-amz-date", dateTime);
+        result.put("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+        return result;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+
+/**
+ * Observes a download, lets {@link HedgedDownloader} measure the time to first byte and abort the losers.
+ */
+public interface DownloadListener {
+    DownloadListener NONE = abort -> {
+    };
+
+    /**
+     * Called once the repository answered, before the content is read.
+     *
+     * @param abort closes the connections of the download, failing the reads blocked on them
+     */
+    void responded(@NotNull Closeable abort);
+}
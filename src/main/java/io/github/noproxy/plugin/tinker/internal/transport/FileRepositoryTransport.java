@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import io.github.noproxy.plugin.tinker.internal.Checksums;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+public class FileRepositoryTransport implements RepositoryTransport {
+    // one lock file per repository instead of one beside every artifact, file locks are held per JVM so threads queue first
+    private static final String LOCK_FILE_NAME = ".tinker-upload.lock";
+    private static final Object JVM_LOCK = new Object();
+    private final File root;
+
+    public FileRepositoryTransport(File root) {
+        this.root = root;
+    }
+
+    // the modification time has a coarse resolution on many file systems, two writes within it would look unchanged
+    private static String etagOf(File file) {
+        return Checksums.sha256(file);
+    }
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return root.toURI().toString();
+    }
+
+    @Nullable
+    @Override
+    public ResourceMetadata head(@NotNull String path) {
+        final File file = new File(root, path);
+        if (!file.isFile()) {
+            return null;
+        }
+        return new ResourceMetadata(file.length(), etagOf(file), true);
+    }
+
+    @Nullable
+    @Override
+    public ResourceMetadata download(@NotNull String path, @NotNull File destination, @Nullable String ifNoneMatch) throws IOException {
+        final File file = new File(root, path);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        final String etag = etagOf(file);
+        if (etag.equals(ifNoneMatch) && destination.isFile()) {
+            return new ResourceMetadata(file.length(), etag, false);
+        }
+
+        destination.getParentFile().mkdirs();
+        Files.copy(file.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return new ResourceMetadata(file.length(), etag, true);
+    }
+
+    @Override
+    public boolean upload(@NotNull String path, @NotNull File source, @Nullable String ifMatch) throws IOException {
+        final File target = new File(root, path);
+        target.getParentFile().mkdirs();
+
+        final Path temp = Files.createTempFile(target.getParentFile().toPath(), target.getName(), ".part");
+        try {
+            Files.copy(source.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (JVM_LOCK) {
+                try (FileChannel channel = FileChannel.open(new File(root, LOCK_FILE_NAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                     FileLock ignored = channel.lock()) {
+                    if (ifMatch != null) {
+                        final String current = target.isFile() ? etagOf(target) : ResourceMetadata.ABSENT_ETAG;
+                        if (!Objects.equals(current, ifMatch)) {
+                            return false;
+                        }
+                    }
+                    Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    return true;
+                }
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // uploads check the etag under a file lock
+    @Override
+    public boolean supportsConditionalUpload(@NotNull String directory) {
+        return true;
+    }
+
+    @Override
+    public void delete(@NotNull String path) throws IOException {
+        Files.deleteIfExists(new File(root, path).toPath());
+    }
+}
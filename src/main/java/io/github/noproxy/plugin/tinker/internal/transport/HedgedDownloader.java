@@ -0,0 +1,299 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Downloads a file from the first of several mirrors to answer.
+ * <p>
+ * The request goes to the historically fastest mirror first. If it hasn't completed after the hedge delay, or failed,
+ * the next mirror is asked as well, and so on. The first complete download wins and the connections of the others are
+ * closed. Times to first byte are remembered for the lifetime of the daemon to order later requests.
+ */
+public class HedgedDownloader implements ArtifactDownloader {
+    private static final Map<String, MirrorStats> STATS = new ConcurrentHashMap<>();
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "tinker-hedged-download-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<RepositoryTransport> mirrors;
+    private final long hedgeDelayMillis;
+    private final long timeoutMillis;
+
+    public HedgedDownloader(List<RepositoryTransport> mirrors, long hedgeDelayMillis, long timeoutMillis) {
+        this.mirrors = mirrors;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @NotNull
+    public static MirrorStats getStats(RepositoryTransport mirror) {
+        return STATS.computeIfAbsent(mirror.getDisplayName(), ignored -> new MirrorStats());
+    }
+
+    @NotNull
+    public List<RepositoryTransport> getOrderedMirrors() {
+        final List<RepositoryTransport> ordered = new ArrayList<>(mirrors);
+        ordered.sort(Comparator.comparingDouble(mirror -> getStats(mirror).getScore()));
+        return ordered;
+    }
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return mirrors.stream().map(RepositoryTransport::getDisplayName).collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    /**
+     * Asks the mirrors one after another, fastest first, metadata requests are too cheap to hedge.
+     */
+    @Nullable
+    @Override
+    public ResourceMetadata head(@NotNull String path) throws IOException {
+        IOException failure = null;
+        for (RepositoryTransport mirror : getOrderedMirrors()) {
+            try {
+                final ResourceMetadata metadata = mirror.head(path);
+                if (metadata != null) {
+                    return metadata;
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure == null) {
+            return null;
+        }
+        throw failure;
+    }
+
+    /**
+     * @return the metadata of the downloaded file, or null if no mirror has it
+     * @throws IOException if every mirror failed or the timeout elapsed before any of them had an answer
+     */
+    @Nullable
+    @Override
+    public ResourceMetadata download(@NotNull String path, @NotNull File destination) throws IOException {
+        final List<RepositoryTransport> ordered = getOrderedMirrors();
+        if (ordered.isEmpty()) {
+            return null;
+        }
+        final CompletionService<Attempt> completionService = new ExecutorCompletionService<>(EXECUTOR);
+        final List<Future<Attempt>> futures = new ArrayList<>();
+        final List<Attempt> attempts = new ArrayList<>();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        int started = 0;
+        int finished = 0;
+        IOException failure = null;
+        try {
+            started = submit(completionService, futures, attempts, ordered, path, destination, started);
+            while (finished < ordered.size()) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IOException("Timed out after " + timeoutMillis + "ms downloading " + path + " from " + ordered.stream()
+                            .map(RepositoryTransport::getDisplayName).collect(Collectors.toList()));
+                }
+
+                final boolean canHedge = started < ordered.size();
+                final Future<Attempt> done = completionService.poll(canHedge ? Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(hedgeDelayMillis)) : remaining,
+                        TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    if (canHedge) {
+                        started = submit(completionService, futures, attempts, ordered, path, destination, started);
+                    }
+                    continue;
+                }
+
+                finished++;
+                try {
+                    final Attempt attempt = done.get();
+                    if (attempt.result != null) {
+                        Files.move(attempt.temp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        return attempt.result;
+                    }
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+
+                // fail over without waiting for the hedge delay
+                if (started < ordered.size()) {
+                    started = submit(completionService, futures, attempts, ordered, path, destination, started);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted downloading " + path, e);
+        } finally {
+            // losers blocked in a read only notice once their connection is closed
+            attempts.forEach(Attempt::cancel);
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        // a mirror that failed may have had the file, so only report it missing if every mirror said so
+        if (failure == null) {
+            return null;
+        }
+        throw failure;
+    }
+
+    private static int submit(CompletionService<Attempt> completionService, List<Future<Attempt>> futures, List<Attempt> attempts,
+                              List<RepositoryTransport> ordered, String path, File destination, int index) throws IOException {
+        destination.getParentFile().mkdirs();
+        final File temp = Files.createTempFile(destination.getParentFile().toPath(), destination.getName(), ".hedge").toFile();
+        final Attempt attempt = new Attempt(ordered.get(index), path, temp);
+        attempts.add(attempt);
+        futures.add(completionService.submit(attempt));
+        return index + 1;
+    }
+
+    public static class MirrorStats {
+        private static final double WEIGHT = 0.3;
+        private static final long FAILURE_PENALTY_MILLIS = 10_000;
+
+        private double averageLatencyMillis = 0;
+        private int samples = 0;
+
+        synchronized void record(long latencyMillis) {
+            averageLatencyMillis = samples == 0 ? latencyMillis : WEIGHT * latencyMillis + (1 - WEIGHT) * averageLatencyMillis;
+            samples++;
+        }
+
+        synchronized void recordFailure() {
+            record(FAILURE_PENALTY_MILLIS);
+        }
+
+        /**
+         * @return the moving average latency, lower is better, unknown mirrors are tried first
+         */
+        public synchronized double getScore() {
+            return averageLatencyMillis;
+        }
+
+        public synchronized int getSamples() {
+            return samples;
+        }
+    }
+
+    private static class Attempt implements Callable<Attempt>, DownloadListener {
+        private final RepositoryTransport mirror;
+        private final String path;
+        private final File temp;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+        private volatile long start;
+        private volatile boolean cancelled;
+        @Nullable
+        private volatile Closeable abort;
+        @Nullable
+        private ResourceMetadata result;
+
+        Attempt(RepositoryTransport mirror, String path, File temp) {
+            this.mirror = mirror;
+            this.path = path;
+            this.temp = temp;
+        }
+
+        @Override
+        public Attempt call() throws IOException {
+            start = System.nanoTime();
+            try {
+                result = mirror.download(path, temp, null, this);
+                if (recorded.compareAndSet(false, true)) {
+                    getStats(mirror).record(getElapsedMillis());
+                }
+                return this;
+            } catch (IOException e) {
+                if (!cancelled && !Thread.currentThread().isInterrupted() && recorded.compareAndSet(false, true)) {
+                    getStats(mirror).recordFailure();
+                }
+                temp.delete();
+                throw e;
+            } finally {
+                // the download may still have written the file after the winner was picked
+                if (cancelled) {
+                    temp.delete();
+                }
+            }
+        }
+
+        @Override
+        public void responded(@NotNull Closeable abort) {
+            this.abort = abort;
+            if (recorded.compareAndSet(false, true)) {
+                getStats(mirror).record(getElapsedMillis());
+            }
+            if (cancelled) {
+                close(abort);
+            }
+        }
+
+        /**
+         * Closes the connection of the attempt and deletes its file, unless it won and the file was moved already.
+         * Without an answer yet, records the time waited so far, or a slow mirror would stay first forever.
+         */
+        void cancel() {
+            cancelled = true;
+            if (start != 0 && recorded.compareAndSet(false, true)) {
+                getStats(mirror).record(getElapsedMillis());
+            }
+            final Closeable current = abort;
+            if (current != null) {
+                close(current);
+            }
+            temp.delete();
+        }
+
+        private static void close(Closeable abort) {
+            try {
+                abort.close();
+            } catch (IOException ignored) {
+                // the download fails either way
+            }
+        }
+
+        private long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+
+public class HttpRepositoryTransport implements RepositoryTransport {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final URI root;
+    @Nullable
+    private final String authorizationHeader;
+    @Nullable
+    private final String authorization;
+    private int connectTimeoutMillis = 30_000;
+    private int readTimeoutMillis = 60_000;
+
+    public HttpRepositoryTransport(URI root, @Nullable String username, @Nullable String password) {
+        this(username == null ? null : "Authorization", username == null ? null
+                : "Basic " + Base64.getEncoder().encodeToString((username + ":" + (password == null ? "" : password)).getBytes(StandardCharsets.UTF_8)), root);
+    }
+
+    private HttpRepositoryTransport(@Nullable String authorizationHeader, @Nullable String authorization, URI root) {
+        final String url = root.toString();
+        this.root = URI.create(url.endsWith("/") ? url : url + "/");
+        this.authorizationHeader = authorizationHeader;
+        this.authorization = authorization;
+    }
+
+    /**
+     * @return a transport sending the header with every request, as configured by {@code HttpHeaderCredentials}
+     */
+    @NotNull
+    public static HttpRepositoryTransport withHeader(URI root, @Nullable String name, @Nullable String value) {
+        return new HttpRepositoryTransport(name == null || value == null ? null : name, value, root);
+    }
+
+    public void setTimeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return root.toString();
+    }
+
+    protected HttpURLConnection open(String method, String path) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) root.resolve(path).toURL().openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setInstanceFollowRedirects(true);
+        if (authorizationHeader != null) {
+            connection.setRequestProperty(authorizationHeader, authorization);
+        }
+        return connection;
+    }
+
+    protected static IOException unexpectedResponse(HttpURLConnection connection) throws IOException {
+        return new IOException("Unexpected response " + connection.getResponseCode() + " "
+                + connection.getResponseMessage() + " for " + connection.getRequestMethod() + " " + connection.getURL());
+    }
+
+    @Nullable
+    @Override
+    public ResourceMetadata head(@NotNull String path) throws IOException {
+        final HttpURLConnection connection = open("HEAD", path);
+        try {
+            final int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            if (code / 100 != 2) {
+                throw unexpectedResponse(connection);
+            }
+            return new ResourceMetadata(connection.getContentLengthLong(), connection.getHeaderField("ETag"), true);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Nullable
+    @Override
+    public ResourceMetadata download(@NotNull String path, @NotNull File destination, @Nullable String ifNoneMatch) throws IOException {
+        return download(path, destination, ifNoneMatch, DownloadListener.NONE);
+    }
+
+    @Nullable
+    @Override
+    public ResourceMetadata download(@NotNull String path, @NotNull File destination, @Nullable String ifNoneMatch,
+                                     @NotNull DownloadListener listener) throws IOException {
+        final HttpURLConnection connection = open("GET", path);
+        if (ifNoneMatch != null && destination.isFile()) {
+            connection.setRequestProperty("If-None-Match", ifNoneMatch);
+        }
+        try {
+            final int code = connection.getResponseCode();
+            listener.responded(connection::disconnect);
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return new ResourceMetadata(destination.length(), ifNoneMatch, false);
+            }
+            if (code / 100 != 2) {
+                throw unexpectedResponse(connection);
+            }
+
+            destination.getParentFile().mkdirs();
+            final File temp = new File(destination.getParentFile(), destination.getName() + ".part");
+            try {
+                try (InputStream input = connection.getInputStream(); OutputStream output = Files.newOutputStream(temp.toPath())) {
+                    final byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = input.read(buffer)) != -1) {
+                        // lets hedged downloads cancel the losers
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedIOException("Download of " + connection.getURL() + " cancelled");
+                        }
+                        output.write(buffer, 0, read);
+                    }
+                }
+                Files.move(temp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+            return new ResourceMetadata(destination.length(), connection.getHeaderField("ETag"), true);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public boolean upload(@NotNull String path, @NotNull File source, @Nullable String ifMatch) throws IOException {
+        final HttpURLConnection connection = open("PUT", path);
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(source.length());
+        if (ResourceMetadata.ABSENT_ETAG.equals(ifMatch)) {
+            connection.setRequestProperty("If-None-Match", "*");
+        } else if (ifMatch != null) {
+            connection.setRequestProperty("If-Match", ifMatch);
+        }
+        try {
+            try (OutputStream output = connection.getOutputStream(); InputStream input = Files.newInputStream(source.toPath())) {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+            }
+
+            final int code = connection.getResponseCode();
+            // a conditional write on a missing key answers 404, and a concurrent conditional write 409
+            if (code == HttpURLConnection.HTTP_PRECON_FAILED
+                    || ifMatch != null && (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_CONFLICT)) {
+                return false;
+            }
+            if (code / 100 != 2) {
+                throw unexpectedResponse(connection);
+            }
+            return true;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public void delete(@NotNull String path) throws IOException {
+        final HttpURLConnection connection = open("DELETE", path);
+        try {
+            final int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_NOT_FOUND && code / 100 != 2) {
+                throw unexpectedResponse(connection);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
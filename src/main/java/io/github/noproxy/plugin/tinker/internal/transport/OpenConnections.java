@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The connections of a download split into several requests, disconnected all at once when the download is aborted.
+ */
+class OpenConnections implements Closeable {
+    private final Set<HttpURLConnection> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    HttpURLConnection register(HttpURLConnection connection) throws InterruptedIOException {
+        connections.add(connection);
+        if (closed) {
+            connection.disconnect();
+            throw new InterruptedIOException("Download of " + connection.getURL() + " aborted");
+        }
+        return connection;
+    }
+
+    void unregister(HttpURLConnection connection) {
+        connections.remove(connection);
+        connection.disconnect();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        connections.forEach(HttpURLConnection::disconnect);
+    }
+}
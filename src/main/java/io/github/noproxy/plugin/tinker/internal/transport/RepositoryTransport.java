@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Minimal access to the files of a repository, addressed by paths relative to the repository root.
+ */
+public interface RepositoryTransport extends ArtifactDownloader {
+    @NotNull
+    @Override
+    String getDisplayName();
+
+    /**
+     * @return the metadata of the resource, or null if it doesn't exist
+     */
+    @Nullable
+    @Override
+    ResourceMetadata head(@NotNull String path) throws IOException;
+
+    /**
+     * Downloads the resource unless its etag still equals {@code ifNoneMatch}.
+     *
+     * @return the metadata of the resource, or null if it doesn't exist
+     */
+    @Nullable
+    ResourceMetadata download(@NotNull String path, @NotNull File destination, @Nullable String ifNoneMatch) throws IOException;
+
+    /**
+     * Downloads the resource, telling the listener when the repository answered. Transports reading over the network
+     * override it to let the listener abort the download.
+     */
+    @Nullable
+    default ResourceMetadata download(@NotNull String path, @NotNull File destination, @Nullable String ifNoneMatch,
+                                      @NotNull DownloadListener listener) throws IOException {
+        listener.responded(() -> {
+        });
+        return download(path, destination, ifNoneMatch);
+    }
+
+    @Nullable
+    @Override
+    default ResourceMetadata download(@NotNull String path, @NotNull File destination) throws IOException {
+        return download(path, destination, null);
+    }
+
+    /**
+     * Replaces the resource as a whole, readers either see the previous or the new content.
+     *
+     * @param ifMatch if not null, upload only when the current etag equals it, use {@link ResourceMetadata#ABSENT_ETAG}
+     *                to require the resource doesn't exist yet
+     * @return false if the precondition failed or a concurrent conditional upload conflicted, reading the resource
+     * again and retrying may succeed
+     */
+    boolean upload(@NotNull String path, @NotNull File source, @Nullable String ifMatch) throws IOException;
+
+    default void upload(@NotNull String path, @NotNull File source) throws IOException {
+        upload(path, source, null);
+    }
+
+    /**
+     * Checks that the preconditions of {@link #upload(String, File, String)} are honored, by uploading a probe file into
+     * {@code directory} and then uploading it again on condition that it doesn't exist. Nexus, Artifactory and plain
+     * HTTP file servers ignore the precondition and overwrite the resource instead.
+     */
+    default boolean supportsConditionalUpload(@NotNull String directory) throws IOException {
+        final File probe = File.createTempFile("tinker-probe", ".tmp");
+        final String path = directory + "/.tinker-probe-" + UUID.randomUUID();
+        try {
+            upload(path, probe);
+            return !upload(path, probe, ResourceMetadata.ABSENT_ETAG);
+        } finally {
+            probe.delete();
+            delete(path);
+        }
+    }
+
+    /**
+     * Removes the resource, a missing resource is not an error.
+     */
+    void delete(@NotNull String path) throws IOException;
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.credentials.HttpHeaderCredentials;
+import org.gradle.api.artifacts.repositories.PasswordCredentials;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.net.URI;
+
+public final class RepositoryTransports {
+    private RepositoryTransports() {
+    }
+
+    /**
+     * @return the transport of the repository, or null if its protocol or credentials aren't supported
+     */
+    @Nullable
+    public static RepositoryTransport create(MavenArtifactRepository repository) {
+        final URI url = repository.getUrl();
+        final String scheme = url.getScheme();
+        if ("file".equals(scheme)) {
+            return new FileRepositoryTransport(new File(url));
+        }
+        if ("http".equals(scheme) || "https".equals(scheme)) {
+            // Gradle only tells the type of the credentials by failing to return another one
+            try {
+                final PasswordCredentials credentials = repository.getCredentials(PasswordCredentials.class);
+                return new HttpRepositoryTransport(url, credentials.getUsername(), credentials.getPassword());
+            } catch (IllegalArgumentException | IllegalStateException notPassword) {
+                try {
+                    final HttpHeaderCredentials credentials = repository.getCredentials(HttpHeaderCredentials.class);
+                    return HttpRepositoryTransport.withHeader(url, credentials.getName(), credentials.getValue());
+                } catch (IllegalArgumentException | IllegalStateException notHeader) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the transport of the url, credentials may be given as user info, or null if its protocol isn't supported
+     */
+    @Nullable
+    public static RepositoryTransport create(URI url) {
+        final String scheme = url.getScheme();
+        if ("file".equals(scheme)) {
+            return new FileRepositoryTransport(new File(url));
+        }
+        if ("http".equals(scheme) || "https".equals(scheme)) {
+            final String userInfo = url.getUserInfo();
+            if (userInfo == null) {
+                return new HttpRepositoryTransport(url, null, null);
+            }
+
+            final String[] credentials = userInfo.split(":", 2);
+            final URI withoutUserInfo = URI.create(url.toString().replace(url.getRawUserInfo() + "@", ""));
+            return new HttpRepositoryTransport(withoutUserInfo, credentials[0], credentials.length > 1 ? credentials[1] : null);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import org.jetbrains.annotations.Nullable;
+
+public class ResourceMetadata {
+    public static final String ABSENT_ETAG = "";
+
+    private final long contentLength;
+    @Nullable
+    private final String etag;
+    private final boolean modified;
+
+    public ResourceMetadata(long contentLength, @Nullable String etag, boolean modified) {
+        this.contentLength = contentLength;
+        this.etag = etag;
+        this.modified = modified;
+    }
+
+    /**
+     * @return length in bytes, or -1 if unknown
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    @Nullable
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * @return false if a conditional download found the local copy still up to date
+     */
+    public boolean isModified() {
+        return modified;
+    }
+}
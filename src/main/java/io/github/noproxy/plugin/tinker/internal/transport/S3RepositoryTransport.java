@@ -0,0 +1,475 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stores repository files as objects of an S3-compatible bucket.
+ * <p>
+ * Files larger than the part size are uploaded with parallel multipart uploads and downloaded with parallel ranged
+ * requests. Conditional uploads always use a single PUT, which is limited to 5 GiB: S3-compatible stores don't
+ * all honor preconditions on completing a multipart upload.
+ */
+public class S3RepositoryTransport implements RepositoryTransport {
+    /**
+     * S3 rejects smaller parts except for the last one.
+     */
+    public static final long MIN_PART_SIZE = 5 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>(.+?)</UploadId>");
+
+    private final URI endpoint;
+    private final String bucket;
+    private final String prefix;
+    private final boolean pathStyle;
+    private final long partSize;
+    private final int parallelism;
+    private final AwsSignatureV4 signer;
+
+    public S3RepositoryTransport(URI endpoint, String bucket, @Nullable String prefix, String region,
+                                 String accessKey, String secretKey, boolean pathStyle, long partSize, int parallelism) {
+        final String url = endpoint.toString();
+        this.endpoint = URI.create(url.endsWith("/") ? url.substring(0, url.length() - 1) : url);
+        this.bucket = bucket;
+        this.prefix = prefix == null ? "" : prefix.replaceAll("^/+|/+$", "");
+        this.pathStyle = pathStyle;
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("The part size of S3 uploads must be at least " + MIN_PART_SIZE + " bytes, got " + partSize);
+        }
+        this.partSize = partSize;
+        this.parallelism = Math.max(1, parallelism);
+        this.signer = new AwsSignatureV4(accessKey, secretKey, region);
+    }
+
+    private static String readBody(HttpURLConnection connection) throws IOException {
+        final InputStream stream = connection.getResponseCode() / 100 == 2 ? connection.getInputStream() : connection.getErrorStream();
+        if (stream == null) {
+            return "";
+        }
+        try (InputStream input = stream) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static IOException unexpectedResponse(HttpURLConnection connection) throws IOException {
+        return new IOException("Unexpected response " + connection.getResponseCode() + " for "
+                + connection.getRequestMethod() + " " + connection.getURL() + ": " + readBody(connection));
+    }
+
+    private static void copy(InputStream input, OutputStream output, long length) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = length;
+        while (remaining > 0) {
+            final int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new IOException("Unexpected end of stream, " + remaining + " bytes missing");
+            }
+            output.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return "s3://" + bucket + "/" + prefix + " at " + endpoint;
+    }
+
+    @NotNull
+    URI getObjectUrl(String path) {
+        final String key = AwsSignatureV4.encode(prefix.isEmpty() ? path : prefix + "/" + path, true);
+        if (pathStyle) {
+            return URI.create(endpoint + "/" + bucket + "/" + key);
+        }
+        return URI.create(endpoint.getScheme() + "://" + bucket + "." + endpoint.getRawAuthority() + "/" + key);
+    }
+
+    private HttpURLConnection open(String method, String path, SortedMap<String, String> query, Map<String, String> headers) throws IOException {
+        final URI url = getObjectUrl(path);
+        final String canonicalQuery = AwsSignatureV4.canonicalQuery(query);
+        final HttpURLConnection connection = (HttpURLConnection) URI.create(url + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery))
+                .toURL().openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(30_000);
+        connection.setReadTimeout(60_000);
+        signer.sign(method, url, query, headers).forEach(connection::setRequestProperty);
+        return connection;
+    }
+
+    private HttpURLConnection open(String method, String path) throws IOException {
+        return open(method, path, new TreeMap<>(), Collections.emptyMap());
+    }
+
+    @Nullable
+    @Override
+    public ResourceMetadata head(@NotNull String path) throws IOException {
+        final HttpURLConnection connection = open("HEAD", path);
+        try {
+            final int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            if (code / 100 != 2) {
+                throw unexpectedResponse(connection);
+            }
+            return new ResourceMetadata(connection.getContentLengthLong(), connection.getHeaderField("ETag"), true);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Nullable
+    @Override
+    public ResourceMetadata download(@NotNull String path, @NotNull File destination, @Nullable String ifNoneMatch) throws IOException {
+        return download(path, destination, ifNoneMatch, DownloadListener.NONE);
+    }
+
+    @Nullable
+    @Override
+    public ResourceMetadata download(@NotNull String path, @NotNull File destination, @Nullable String ifNoneMatch,
+                                     @NotNull DownloadListener listener) throws IOException {
+        final OpenConnections connections = new OpenConnections();
+        final boolean conditional = ifNoneMatch != null && destination.isFile();
+        if (!conditional) {
+            final ResourceMetadata metadata = head(path);
+            listener.responded(connections);
+            if (metadata == null) {
+                return null;
+            }
+            if (metadata.getContentLength() > partSize) {
+                downloadRanges(path, destination, metadata, connections);
+                return metadata;
+            }
+        }
+
+        final Map<String, String> headers = new HashMap<>();
+        if (conditional) {
+            headers.put("If-None-Match", ifNoneMatch);
+        }
+        final HttpURLConnection connection = connections.register(open("GET", path, new TreeMap<>(), headers));
+        try {
+            final int code = connection.getResponseCode();
+            if (conditional) {
+                listener.responded(connections);
+            }
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return new ResourceMetadata(destination.length(), ifNoneMatch, false);
+            }
+            if (code / 100 != 2) {
+                throw unexpectedResponse(connection);
+            }
+
+            destination.getParentFile().mkdirs();
+            final File temp = new File(destination.getParentFile(), destination.getName() + ".part");
+            try {
+                try (InputStream input = connection.getInputStream()) {
+                    Files.copy(input, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+            return new ResourceMetadata(destination.length(), connection.getHeaderField("ETag"), true);
+        } finally {
+            connections.unregister(connection);
+        }
+    }
+
+    private void downloadRanges(String path, File destination, ResourceMetadata metadata, OpenConnections connections) throws IOException {
+        destination.getParentFile().mkdirs();
+        final File temp = new File(destination.getParentFile(), destination.getName() + ".part");
+        final long size = metadata.getContentLength();
+        try {
+            try (RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+                file.setLength(size);
+            }
+
+            final List<Transfer> parts = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += partSize) {
+                final long start = offset;
+                final long end = Math.min(offset + partSize, size) - 1;
+                parts.add(() -> {
+                    final Map<String, String> headers = new HashMap<>();
+                    headers.put("Range", "bytes=" + start + "-" + end);
+                    // fail instead of mixing two versions of the object
+                    if (metadata.getEtag() != null) {
+                        headers.put("If-Match", metadata.getEtag());
+                    }
+                    final HttpURLConnection connection = connections.register(open("GET", path, new TreeMap<>(), headers));
+                    try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                        if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                            throw unexpectedResponse(connection);
+                        }
+                        channel.position(start);
+                        try (InputStream input = connection.getInputStream()) {
+                            final byte[] buffer = new byte[BUFFER_SIZE];
+                            long remaining = end - start + 1;
+                            while (remaining > 0) {
+                                final int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                                if (read == -1) {
+                                    throw new IOException("Unexpected end of range " + start + "-" + end + " of " + path);
+                                }
+                                channel.write(ByteBuffer.wrap(buffer, 0, read));
+                                remaining -= read;
+                            }
+                        }
+                        return null;
+                    } catch (IOException | RuntimeException e) {
+                        // the other parts are useless now, stop them instead of waiting for them
+                        connections.close();
+                        throw e;
+                    } finally {
+                        connections.unregister(connection);
+                    }
+                });
+            }
+
+            runAll(parts);
+            Files.move(temp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    @Override
+    public boolean upload(@NotNull String path, @NotNull File source, @Nullable String ifMatch) throws IOException {
+        // conditional uploads fall back to a single PUT, see the class doc
+        if (source.length() > partSize && ifMatch == null) {
+            uploadMultipart(path, source);
+            return true;
+        }
+
+        final Map<String, String> headers = new HashMap<>();
+        if (ResourceMetadata.ABSENT_ETAG.equals(ifMatch)) {
+            headers.put("If-None-Match", "*");
+        } else if (ifMatch != null) {
+            headers.put("If-Match", ifMatch);
+        }
+        final HttpURLConnection connection = open("PUT", path, new TreeMap<>(), headers);
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(source.length());
+        try {
+            try (OutputStream output = connection.getOutputStream(); InputStream input = Files.newInputStream(source.toPath())) {
+                copy(input, output, source.length());
+            }
+            final int code = connection.getResponseCode();
+            // a conditional write on a missing key answers 404, and a concurrent conditional write 409
+            if (code == HttpURLConnection.HTTP_PRECON_FAILED
+                    || ifMatch != null && (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_CONFLICT)) {
+                return false;
+            }
+            if (code / 100 != 2) {
+                throw unexpectedResponse(connection);
+            }
+            return true;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private String post(String path, SortedMap<String, String> query, @Nullable String body) throws IOException {
+        final HttpURLConnection connection = open("POST", path, query, Collections.emptyMap());
+        try {
+            final byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(bytes.length);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(bytes);
+            }
+            if (connection.getResponseCode() / 100 != 2) {
+                throw unexpectedResponse(connection);
+            }
+            final String response = readBody(connection);
+            // S3 may report a failed CompleteMultipartUpload with status 200
+            if (response.contains("<Error>")) {
+                throw new IOException("S3 error for POST " + connection.getURL() + ": " + response);
+            }
+            return response;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void uploadMultipart(String path, File source) throws IOException {
+        final SortedMap<String, String> initiate = new TreeMap<>();
+        initiate.put("uploads", "");
+        final Matcher matcher = UPLOAD_ID.matcher(post(path, initiate, null));
+        if (!matcher.find()) {
+            throw new IOException("No UploadId in response of multipart upload of " + path);
+        }
+        final String uploadId = matcher.group(1);
+
+        try {
+            final long size = source.length();
+            final List<Transfer> parts = new ArrayList<>();
+            final String[] etags = new String[(int) ((size + partSize - 1) / partSize)];
+            for (int index = 0; index < etags.length; index++) {
+                final int partNumber = index + 1;
+                final long offset = index * partSize;
+                final long length = Math.min(partSize, size - offset);
+                parts.add(() -> {
+                    etags[partNumber - 1] = uploadPart(path, uploadId, partNumber, source, offset, length);
+                    return null;
+                });
+            }
+            runAll(parts);
+
+            final StringBuilder complete = new StringBuilder("<CompleteMultipartUpload>");
+            for (int index = 0; index < etags.length; index++) {
+                complete.append("<Part><PartNumber>").append(index + 1).append("</PartNumber><ETag>")
+                        .append(etags[index]).append("</ETag></Part>");
+            }
+            complete.append("</CompleteMultipartUpload>");
+            final SortedMap<String, String> query = new TreeMap<>();
+            query.put("uploadId", uploadId);
+            post(path, query, complete.toString());
+        } catch (IOException | RuntimeException e) {
+            abortMultipart(path, uploadId, e);
+            throw e;
+        }
+    }
+
+    private String uploadPart(String path, String uploadId, int partNumber, File source, long offset, long length) throws IOException {
+        final SortedMap<String, String> query = new TreeMap<>();
+        query.put("partNumber", String.valueOf(partNumber));
+        query.put("uploadId", uploadId);
+        final HttpURLConnection connection = open("PUT", path, query, Collections.emptyMap());
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(length);
+        try {
+            try (OutputStream output = connection.getOutputStream(); FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+                channel.position(offset);
+                copy(Channels.newInputStream(channel), output, length);
+            }
+            if (connection.getResponseCode() / 100 != 2) {
+                throw unexpectedResponse(connection);
+            }
+            final String etag = connection.getHeaderField("ETag");
+            if (etag == null) {
+                throw new IOException("No ETag in response of part " + partNumber + " of " + path);
+            }
+            return etag;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public void delete(@NotNull String path) throws IOException {
+        final HttpURLConnection connection = open("DELETE", path);
+        try {
+            final int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_NOT_FOUND && code / 100 != 2) {
+                throw unexpectedResponse(connection);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void abortMultipart(String path, String uploadId, Exception cause) {
+        final SortedMap<String, String> query = new TreeMap<>();
+        query.put("uploadId", uploadId);
+        try {
+            final HttpURLConnection connection = open("DELETE", path, query, Collections.emptyMap());
+            connection.getResponseCode();
+            connection.disconnect();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void runAll(List<Transfer> tasks) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()), runnable -> {
+            final Thread thread = new Thread(runnable, "tinker-s3-transfer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            tasks.forEach(task -> futures.add(executor.submit(task::call)));
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted transferring with " + getDisplayName(), e);
+        } finally {
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    // after a failure, the parts still running are waited for so they don't write on into a deleted file
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface Transfer {
+        Void call() throws IOException;
+    }
+}
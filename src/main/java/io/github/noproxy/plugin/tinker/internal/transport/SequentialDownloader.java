@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.noproxy.plugin.tinker.internal.transport;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Looks a file up in several repositories in order, like Gradle does for the repositories of a project.
+ */
+public class SequentialDownloader implements ArtifactDownloader {
+    private final List<RepositoryTransport> repositories;
+
+    public SequentialDownloader(List<RepositoryTransport> repositories) {
+        this.repositories = repositories;
+    }
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return repositories.stream().map(RepositoryTransport::getDisplayName).collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    @Nullable
+    @Override
+    public ResourceMetadata head(@NotNull String path) throws IOException {
+        for (RepositoryTransport repository : repositories) {
+            final ResourceMetadata metadata = repository.head(path);
+            if (metadata != null) {
+                return metadata;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public ResourceMetadata download(@NotNull String path, @NotNull File destination) throws IOException {
+        for (RepositoryTransport repository : repositories) {
+            final ResourceMetadata metadata = repository.download(path, destination);
+            if (metadata != null) {
+                return metadata;
+            }
+        }
+        return null;
+    }
+}